@@ -104,7 +104,9 @@ const Dashboard: React.FC<DashboardProps> = ({ user, onLogout }) => {
         ticket.ticketId,
         ticket.position,
         currentUserEmail,
-        true
+        true,
+        ticket.customerPhone,
+        ticket.smsNotificationEnabled ?? false
       );
       message.success(`Joined successfully! Your position: ${ticket.position}`);
       showTicketModal(ticket, eta);
@@ -67,7 +67,9 @@ export const queueService = {
     ticketId: string,
     position: number,
     customerEmail: string,
-    force: boolean = false
+    force: boolean = false,
+    customerPhone?: string,
+    smsNotificationEnabled: boolean = false
   ): Promise<EtaResponse> {
     const cacheKey = cacheKeyFor(ticketId);
     if (!force) {
@@ -79,7 +81,10 @@ export const queueService = {
       }
     }
 
-    const params = { queueId, ticketId, position, customerEmail };
+    // The ETA service only texts the phone when the ticket opted in to SMS
+    const params = smsNotificationEnabled && customerPhone
+      ? { queueId, ticketId, position, customerEmail, customerPhone, smsNotificationEnabled }
+      : { queueId, ticketId, position, customerEmail };
     const response = await etaApi.get('/eta/track', { params });
 
     const eta: CachedEta = {
@@ -39,6 +39,9 @@ export interface Ticket {
   position: number;
   joinedAt: string;
   estimatedWaitMinutes?: number;
+  // Set on the join response: the phone to text, present only when the ticket opted in to SMS
+  customerPhone?: string;
+  smsNotificationEnabled?: boolean;
 }
 
 export interface EtaResponse {
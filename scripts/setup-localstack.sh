@@ -29,6 +29,11 @@ aws dynamodb create-table \
     --billing-mode PAY_PER_REQUEST \
     --endpoint-url http://localhost:4566
 
+aws dynamodb update-time-to-live \
+    --table-name smartqueue-tickets \
+    --time-to-live-specification Enabled=true,AttributeName=expiresAt \
+    --endpoint-url http://localhost:4566
+
 # Create queues table
 aws dynamodb create-table \
     --table-name smartqueue-queues \
@@ -39,6 +44,29 @@ aws dynamodb create-table \
     --billing-mode PAY_PER_REQUEST \
     --endpoint-url http://localhost:4566
 
+# Create queue event outbox table (events and relay cursors, ordered per queue)
+aws dynamodb create-table \
+    --table-name smartqueue-queue-outbox \
+    --attribute-definitions \
+        AttributeName=queueId,AttributeType=S \
+        AttributeName=sequence,AttributeType=S \
+    --key-schema \
+        AttributeName=queueId,KeyType=HASH \
+        AttributeName=sequence,KeyType=RANGE \
+    --billing-mode PAY_PER_REQUEST \
+    --endpoint-url http://localhost:4566
+
+aws dynamodb update-time-to-live \
+    --table-name smartqueue-queue-outbox \
+    --time-to-live-specification Enabled=true,AttributeName=expiresAt \
+    --endpoint-url http://localhost:4566
+
+# Create SNS topic used for batched SMS notifications
+echo "📨 Creating SNS topic..."
+aws sns create-topic \
+    --name SmartQueueNotifications \
+    --endpoint-url http://localhost:4566
+
 # List tables to verify
 echo "✅ Created tables:"
 aws dynamodb list-tables --endpoint-url http://localhost:4566
@@ -0,0 +1,71 @@
+package com.smartqueue.aws.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+// Per-ETA cost of the time-of-day factors: the compiled minute-of-week lookup against evaluating the
+// same default rules on a LocalDateTime per request, which is what EtaService did before the tables.
+// Run with: mvn -Pjmh test-compile exec:exec
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EtaMultiplierTableBenchmark {
+
+    private final ZoneId zone = ZoneId.of("Asia/Ho_Chi_Minh");
+    private EtaMultiplierTable table;
+
+    @Setup
+    public void setUp() {
+        table = new EtaMultiplierTable(new StandardEnvironment(), zone.getId());
+    }
+
+    @Benchmark
+    public double table() {
+        EtaMultiplierTable.Multipliers multipliers = table.forQueue("queue-1");
+        int slot = table.currentSlot();
+        return multipliers.rateMultiplier(slot) * multipliers.etaFactor(slot);
+    }
+
+    @Benchmark
+    public double perRequestRules() {
+        LocalDateTime now = LocalDateTime.now(zone);
+        LocalTime time = now.toLocalTime();
+        DayOfWeek day = now.getDayOfWeek();
+
+        double rate = 1.0;
+        if (between(time, 9, 0, 11, 0) || between(time, 14, 0, 16, 0)) rate *= 0.7;
+        if (between(time, 12, 0, 13, 30)) rate *= 0.5;
+        if (day == DayOfWeek.SATURDAY || day == DayOfWeek.SUNDAY) rate *= 0.8;
+        if (between(time, 18, 0, 20, 0)) rate *= 1.2;
+
+        double eta = switch (day) {
+            case MONDAY -> 1.15;
+            case FRIDAY -> 1.1;
+            case SATURDAY, SUNDAY -> 0.9;
+            default -> 1.0;
+        };
+        return rate * eta * 1.05;
+    }
+
+    private static boolean between(LocalTime time, int fromHour, int fromMinute, int toHour, int toMinute) {
+        return time.isAfter(LocalTime.of(fromHour, fromMinute)) && time.isBefore(LocalTime.of(toHour, toMinute));
+    }
+}
@@ -3,11 +3,14 @@ package com.smartqueue.aws;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import reactor.core.publisher.Hooks;
 
 @SpringBootApplication
 @EnableScheduling
 public class EtaNotificationApplication {
     public static void main(String[] args) {
+        // Restores the trace context (and log MDC) on whichever thread a reactive operator runs
+        Hooks.enableAutomaticContextPropagation();
         SpringApplication.run(EtaNotificationApplication.class, args);
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.smartqueue.aws.config;
 
+import io.micrometer.observation.ObservationRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -10,8 +11,11 @@ import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClientBuilder;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClientBuilder;
 import software.amazon.awssdk.services.ses.SesClient;
@@ -31,6 +35,9 @@ public class AwsConfig {
     @Value("${aws.dynamodb.endpoint:}")
     private String dynamodbEndpoint;
 
+    @Value("${aws.dynamodb.async.max-concurrency:100}")
+    private int dynamodbAsyncMaxConcurrency;
+
     @Value("${aws.ses.endpoint:}")
     private String sesEndpoint;
 
@@ -50,13 +57,18 @@ public class AwsConfig {
     // === DYNAMODB CLIENT ===
     @Bean
     @ConditionalOnProperty(name = "aws.dynamodb.enabled", havingValue = "true", matchIfMissing = true)
-    public DynamoDbClient dynamoDbClient(AwsCredentialsProvider credentialsProvider) {
+    public DynamoDbClient dynamoDbClient(AwsCredentialsProvider credentialsProvider,
+                                         AwsSdkTracingInterceptor tracingInterceptor,
+                                         DynamoDbCapacityInterceptor capacityInterceptor) {
         try {
             log.info("Initializing DynamoDB client in region: {}", region);
 
             DynamoDbClientBuilder builder = DynamoDbClient.builder()
                     .region(Region.of(region))
                     .credentialsProvider(credentialsProvider)
+                    .overrideConfiguration(c -> c
+                            .addExecutionInterceptor(tracingInterceptor)
+                            .addExecutionInterceptor(capacityInterceptor))
                     .httpClient(UrlConnectionHttpClient.builder().build());
 
             if (dynamodbEndpoint != null && !dynamodbEndpoint.isBlank()) {
@@ -72,16 +84,55 @@ public class AwsConfig {
         }
     }
 
+    // === DYNAMODB ASYNC CLIENT (reactive endpoints) ===
+    @Bean
+    @ConditionalOnProperty(name = "aws.dynamodb.enabled", havingValue = "true", matchIfMissing = true)
+    public DynamoDbAsyncClient dynamoDbAsyncClient(AwsCredentialsProvider credentialsProvider,
+                                                   AwsSdkTracingInterceptor tracingInterceptor,
+                                                   DynamoDbCapacityInterceptor capacityInterceptor) {
+        try {
+            log.info("Initializing DynamoDB async client in region: {}", region);
+
+            DynamoDbAsyncClientBuilder builder = DynamoDbAsyncClient.builder()
+                    .region(Region.of(region))
+                    .credentialsProvider(credentialsProvider)
+                    .overrideConfiguration(c -> c
+                            .addExecutionInterceptor(tracingInterceptor)
+                            .addExecutionInterceptor(capacityInterceptor))
+                    .httpClient(NettyNioAsyncHttpClient.builder()
+                            .maxConcurrency(dynamodbAsyncMaxConcurrency)
+                            .build());
+
+            if (dynamodbEndpoint != null && !dynamodbEndpoint.isBlank()) {
+                builder.endpointOverride(URI.create(dynamodbEndpoint));
+            }
+
+            return builder.build();
+
+        } catch (Exception e) {
+            log.error("Failed to create DynamoDB async client", e);
+            throw new RuntimeException("DynamoDB async initialization failed", e);
+        }
+    }
+
+    @Bean
+    public DynamoDbCapacityInterceptor dynamoDbCapacityInterceptor(ObservationRegistry observationRegistry,
+                                                                   DynamoDbMetrics dynamoDbMetrics) {
+        return new DynamoDbCapacityInterceptor(observationRegistry, dynamoDbMetrics);
+    }
+
     // === SES CLIENT ===
     @Bean
     @ConditionalOnProperty(name = "aws.ses.enabled", havingValue = "true", matchIfMissing = true)
-    public SesClient sesClient(AwsCredentialsProvider credentialsProvider) {
+    public SesClient sesClient(AwsCredentialsProvider credentialsProvider,
+                               AwsSdkTracingInterceptor tracingInterceptor) {
         try {
             log.info("Initializing SES client in region: {}", region);
 
             SesClientBuilder builder = SesClient.builder()
                     .region(Region.of(region))
                     .credentialsProvider(credentialsProvider)
+                    .overrideConfiguration(c -> c.addExecutionInterceptor(tracingInterceptor))
                     .httpClient(UrlConnectionHttpClient.builder().build());
 
             if (sesEndpoint != null && !sesEndpoint.isBlank()) {
@@ -100,13 +151,15 @@ public class AwsConfig {
     // === SNS CLIENT ===
     @Bean
     @ConditionalOnProperty(name = "aws.sns.enabled", havingValue = "true", matchIfMissing = true)
-    public SnsClient snsClient(AwsCredentialsProvider credentialsProvider) {
+    public SnsClient snsClient(AwsCredentialsProvider credentialsProvider,
+                               AwsSdkTracingInterceptor tracingInterceptor) {
         try {
             log.info("Initializing SNS client in region: {}", region);
 
             SnsClientBuilder builder = SnsClient.builder()
                     .region(Region.of(region))
                     .credentialsProvider(credentialsProvider)
+                    .overrideConfiguration(c -> c.addExecutionInterceptor(tracingInterceptor))
                     .httpClient(UrlConnectionHttpClient.builder().build());
 
             if (snsEndpoint != null && !snsEndpoint.isBlank()) {
@@ -0,0 +1,16 @@
+package com.smartqueue.aws.config;
+
+import org.springframework.boot.rsocket.messaging.RSocketStrategiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class RSocketServerConfig {
+
+    // Exposes the caller's trace context metadata entry to the handlers as a message header
+    @Bean
+    public RSocketStrategiesCustomizer traceContextMetadata() {
+        return strategies -> strategies.metadataExtractorRegistry(registry -> registry.metadataToExtract(
+                RSocketTracing.TRACE_CONTEXT, String.class, RSocketTracing.TRACE_CONTEXT_HEADER));
+    }
+}
@@ -1,19 +1,32 @@
 package com.smartqueue.aws.controller;
 
+import com.smartqueue.aws.config.HotPathLogFilter;
+import com.smartqueue.aws.contract.QueueEventAck;
+import com.smartqueue.aws.contract.RateSnapshot;
+import com.smartqueue.aws.dto.request.BatchEtaRequest;
+import com.smartqueue.aws.dto.request.BatchStatsRequest;
 import com.smartqueue.aws.dto.request.NotificationRequest;
+import com.smartqueue.aws.dto.request.QueueEventBatchRequest;
 import com.smartqueue.aws.dto.request.UpdateStatsRequest;
 import com.smartqueue.aws.dto.response.EtaResponse;
 import com.smartqueue.aws.dto.response.NotificationResponse;
+import com.smartqueue.aws.model.NotificationLog;
+import com.smartqueue.aws.repository.NotificationRepository;
 import com.smartqueue.aws.service.EtaService;
 import com.smartqueue.aws.service.NotificationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
+import java.util.List;
 import java.util.Map;
 
 @Slf4j
@@ -21,96 +34,171 @@ import java.util.Map;
 @RequiredArgsConstructor
 @Validated
 public class EtaController {
-    
+
     private final EtaService etaService;
     private final NotificationService notificationService;
-    
+    private final NotificationRepository notificationRepository;
+
     @GetMapping("/eta")
-    public ResponseEntity<EtaResponse> getEta(
+    public Mono<ResponseEntity<EtaResponse>> getEta(
             @RequestParam @NotBlank String queueId,
             @RequestParam @NotBlank String ticketId,
             @RequestParam(required = false) Integer position) {
         
-        log.info("ETA request received for queueId: {}, ticketId: {}, position: {}", queueId, ticketId, position);
+        log.info(HotPathLogFilter.HOT_PATH, "ETA request received for queueId: {}, ticketId: {}, position: {}", queueId, ticketId, position);
         
-        try {
-            EtaResponse response = etaService.calculateEta(queueId, ticketId, position);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            log.error("Error calculating ETA", e);
-            return ResponseEntity.badRequest().body(
-                EtaResponse.builder()
-                    .queueId(queueId)
-                    .ticketId(ticketId)
-                    .estimatedWaitMinutes(10) // Fallback
-                    .build()
-            );
-        }
+        return etaService.calculateEta(queueId, ticketId, position)
+                .map(ResponseEntity::ok)
+                .onErrorResume(e -> {
+                    log.error("Error calculating ETA", e);
+                    return Mono.just(ResponseEntity.badRequest().body(
+                        EtaResponse.builder()
+                            .queueId(queueId)
+                            .ticketId(ticketId)
+                            .estimatedWaitMinutes(10) // Fallback
+                            .build()
+                    ));
+                });
     }
-    
+
+    // Streams one EtaResponse per ticket (NDJSON when requested, JSON array otherwise)
+    @PostMapping(value = "/eta/batch",
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public Flux<EtaResponse> getEtaBatch(@RequestBody @Valid BatchEtaRequest request) {
+        log.info(HotPathLogFilter.HOT_PATH, "Batch ETA request received for {} tickets", request.getTickets().size());
+        return etaService.calculateEtaBatch(request.getTickets().stream()
+                .map(BatchEtaRequest.EtaQuery::toContract)
+                .toList());
+    }
+
+    // Current per-queue rate snapshots (the queue service polls this when it is not on RSocket)
+    @GetMapping("/rates")
+    public Flux<RateSnapshot> getRateSnapshots() {
+        return etaService.rateSnapshots();
+    }
+
     @PostMapping("/notify")
-    public ResponseEntity<NotificationResponse> sendNotification(
+    public Mono<ResponseEntity<NotificationResponse>> sendNotification(
             @RequestBody @Valid NotificationRequest request) {
         
         log.info("Notification request received for ticketId: {}, channel: {}", 
                 request.getTicketId(), request.getChannel());
         
-        try {
-            NotificationResponse response = notificationService.scheduleNotification(request);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            log.error("Error scheduling notification", e);
-            return ResponseEntity.badRequest().body(
-                NotificationResponse.builder()
-                    .ticketId(request.getTicketId())
-                    .scheduled(false)
-                    .status("FAILED")
-                    .message("Failed to schedule notification: " + e.getMessage())
-                    .build()
-            );
-        }
+        // Enqueue only; the dedupe claim is a blocking DynamoDB write, so keep it off the event loop
+        return Mono.fromCallable(() -> notificationService.scheduleNotification(request))
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(ResponseEntity::ok)
+                .onErrorResume(e -> {
+                    log.error("Error scheduling notification", e);
+                    return Mono.just(ResponseEntity.badRequest().body(
+                        NotificationResponse.builder()
+                            .ticketId(request.getTicketId())
+                            .scheduled(false)
+                            .status("FAILED")
+                            .message("Failed to schedule notification: " + e.getMessage())
+                            .build()
+                    ));
+                });
     }
-    
+
     @PostMapping("/stats/served")
-    public ResponseEntity<?> updateServedStats(
+    public Mono<ResponseEntity<Map<String, Object>>> updateServedStats(
             @RequestBody @Valid UpdateStatsRequest request) {
         
         log.info("Update stats request received for queueId: {}, count: {}", 
                 request.getQueueId(), request.getCount());
         
-        try {
-            etaService.updateServiceStats(request.getQueueId(), request.getCount(), request.getWindowSec());
-            
-            return ResponseEntity.ok(Map.of(
-                "message", "Stats updated successfully",
-                "queueId", request.getQueueId(),
-                "servedCount", request.getCount()
-            ));
-            
-        } catch (Exception e) {
-            log.error("Error updating stats", e);
-            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
-        }
+        return etaService.updateServiceStats(request.getQueueId(), request.getCount(), request.getWindowSec(), request.getWindowEnd())
+                .then(Mono.fromSupplier(() -> ResponseEntity.ok(Map.<String, Object>of(
+                    "message", "Stats updated successfully",
+                    "queueId", request.getQueueId(),
+                    "servedCount", request.getCount()
+                ))))
+                .onErrorResume(e -> {
+                    log.error("Error updating stats", e);
+                    return Mono.just(ResponseEntity.badRequest().body(Map.<String, Object>of("error", String.valueOf(e.getMessage()))));
+                });
+    }
+
+    // Coalesced served-count windows from the queue service; entries are applied in order, once per batchId
+    @PostMapping("/stats/served/batch")
+    public Mono<ResponseEntity<Map<String, Object>>> updateServedStatsBatch(
+            @RequestBody @Valid BatchStatsRequest request) {
+
+        log.info("Batch stats update received with {} entries", request.getEntries().size());
+
+        return etaService.applyServedBatch(request.getBatchId(), request.getEntries().stream()
+                        .map(UpdateStatsRequest::toServedWindow)
+                        .toList())
+                .map(ack -> ResponseEntity.ok(Map.<String, Object>of(
+                    "message", ack.duplicate() ? "Batch already applied" : "Stats updated successfully",
+                    "entries", request.getEntries().size(),
+                    "applied", ack.applied(),
+                    "duplicate", ack.duplicate()
+                )))
+                .onErrorResume(e -> {
+                    log.error("Error updating batch stats", e);
+                    return Mono.just(ResponseEntity.internalServerError().body(Map.<String, Object>of("error", String.valueOf(e.getMessage()))));
+                });
+    }
+
+    // Outbox relay from the queue service; a non-2xx reply makes it redeliver the whole batch
+    @PostMapping("/events/batch")
+    public Mono<ResponseEntity<QueueEventAck>> applyQueueEvents(@RequestBody @Valid QueueEventBatchRequest request) {
+        log.info("Queue event batch received with {} events", request.getEvents().size());
+
+        // Tickets held by other replicas are finished with blocking DynamoDB writes
+        return Mono.fromCallable(() -> etaService.applyQueueEvents(request.getEvents().stream()
+                        .map(QueueEventBatchRequest.QueueEvent::toContract)
+                        .toList()))
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(ResponseEntity::ok)
+                .onErrorResume(e -> {
+                    log.error("Error applying queue events", e);
+                    return Mono.just(ResponseEntity.internalServerError().build());
+                });
     }
 
 // Thêm vào EtaController
 
     @GetMapping("/eta/track")
-    public ResponseEntity<EtaResponse> getEtaWithTracking(
+    public Mono<ResponseEntity<EtaResponse>> getEtaWithTracking(
             @RequestParam @NotBlank String queueId,
             @RequestParam @NotBlank String ticketId,
             @RequestParam @NotBlank String customerEmail,
+            @RequestParam(required = false) String customerPhone,
+            @RequestParam(defaultValue = "false") boolean smsNotificationEnabled,
             @RequestParam(required = false) Integer position) {
 
         log.info("ETA tracking request for ticketId: {}, email: {}", ticketId, customerEmail);
 
-        try {
-            EtaResponse response = etaService.calculateAndTrackEta(queueId, ticketId, customerEmail, position);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            log.error("Error in ETA tracking", e);
-            return ResponseEntity.status(500).build();
+        // The phone is only kept, and texted, when the customer opted in to SMS on their ticket
+        String phone = smsNotificationEnabled && customerPhone != null && !customerPhone.isBlank() ? customerPhone : null;
+        return etaService.calculateAndTrackEta(queueId, ticketId, customerEmail, phone, position)
+                .map(ResponseEntity::ok)
+                .onErrorResume(e -> {
+                    log.error("Error in ETA tracking", e);
+                    return Mono.just(ResponseEntity.status(500).<EtaResponse>build());
+                });
+    }
+
+    @GetMapping("/notifications")
+    public ResponseEntity<?> getNotifications(
+            @RequestParam(required = false) String ticketId,
+            @RequestParam(required = false) NotificationLog.NotificationStatus status,
+            @RequestParam(defaultValue = "100") int limit) {
+
+        if (ticketId != null && !ticketId.isBlank()) {
+            return ResponseEntity.ok(notificationRepository.findByTicketId(ticketId));
+        }
+        if (status != null) {
+            List<NotificationLog> logs = notificationRepository.findByStatus(status, Math.max(1, limit));
+            return ResponseEntity.ok(logs);
         }
+        return ResponseEntity.ok(Map.of(
+            "total", notificationRepository.size(),
+            "byStatus", notificationRepository.countByStatus()
+        ));
     }
 
-}
\ No newline at end of file
+}
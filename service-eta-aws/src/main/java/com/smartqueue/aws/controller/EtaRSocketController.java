@@ -0,0 +1,113 @@
+package com.smartqueue.aws.controller;
+
+import com.smartqueue.aws.config.RSocketTracing;
+import com.smartqueue.aws.contract.EtaEstimate;
+import com.smartqueue.aws.contract.EtaQuery;
+import com.smartqueue.aws.contract.EtaQueryBatch;
+import com.smartqueue.aws.contract.QueueEventAck;
+import com.smartqueue.aws.contract.QueueEventBatch;
+import com.smartqueue.aws.contract.RateSnapshot;
+import com.smartqueue.aws.contract.ServedBatchAck;
+import com.smartqueue.aws.contract.ServedWindowBatch;
+import com.smartqueue.aws.dto.response.EtaResponse;
+import com.smartqueue.aws.service.EtaService;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.stereotype.Controller;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+
+// Internal RPC for the queue service: RSocket over one long-lived TCP connection (spring.rsocket.server.port),
+// CBOR-encoded records from com.smartqueue.aws.contract (smartqueue-common), which the queue service sends with.
+// The JSON endpoints in EtaController stay for external clients. Routes:
+//   eta                 request-response  EtaQuery -> EtaEstimate
+//   eta.batch           request-stream    EtaQueryBatch -> EtaEstimate per ticket
+//   eta.stream          request-channel   EtaQuery stream -> EtaEstimate stream, micro-batched per queue
+//   stats.served.batch  request-response  ServedWindowBatch -> ServedBatchAck
+//   events.batch        request-response  QueueEventBatch -> QueueEventAck
+//   rates.stream        request-stream    RateSnapshot for every known queue, now and every push interval
+// Request-response and request-stream handlers are timed as eta.rsocket.server (tag route) and continue the
+// caller's trace from the trace context metadata (RSocketTracing); the long-lived eta.stream and rates.stream are not.
+@Slf4j
+@Controller
+@RequiredArgsConstructor
+public class EtaRSocketController {
+
+    private final EtaService etaService;
+    private final ObservationRegistry observationRegistry;
+
+    @Value("${eta.rsocket.stream-batch-size:100}")
+    private int streamBatchSize;
+
+    @Value("${eta.rsocket.stream-batch-window-ms:20}")
+    private long streamBatchWindowMs;
+
+    @Value("${eta.rates.push-interval-ms:15000}")
+    private long ratesPushIntervalMs;
+
+    @MessageMapping("eta")
+    public Mono<EtaEstimate> eta(EtaQuery query,
+                                 @Header(name = RSocketTracing.TRACE_CONTEXT_HEADER, required = false) String traceContext) {
+        return RSocketTracing.respond(observationRegistry, "eta.rsocket.server", "eta", traceContext,
+                () -> etaService.calculateEta(query.queueId(), query.ticketId(), query.position())
+                        .map(EtaRSocketController::toEstimate));
+    }
+
+    @MessageMapping("eta.batch")
+    public Flux<EtaEstimate> etaBatch(EtaQueryBatch request,
+                                      @Header(name = RSocketTracing.TRACE_CONTEXT_HEADER, required = false) String traceContext) {
+        List<EtaQuery> tickets = request.tickets();
+        if (tickets == null || tickets.isEmpty()) return Flux.empty();
+        log.debug("RSocket batch ETA request for {} tickets", tickets.size());
+        return RSocketTracing.respondMany(observationRegistry, "eta.rsocket.server", "eta.batch", traceContext,
+                () -> etaService.calculateEtaBatch(tickets)
+                        .map(EtaRSocketController::toEstimate));
+    }
+
+    @MessageMapping("eta.stream")
+    public Flux<EtaEstimate> etaStream(Flux<EtaQuery> queries) {
+        return queries
+                .bufferTimeout(streamBatchSize, Duration.ofMillis(streamBatchWindowMs))
+                .concatMap(etaService::calculateEtaBatch)
+                .map(EtaRSocketController::toEstimate);
+    }
+
+    @MessageMapping("stats.served.batch")
+    public Mono<ServedBatchAck> servedStatsBatch(ServedWindowBatch request,
+                                                 @Header(name = RSocketTracing.TRACE_CONTEXT_HEADER, required = false) String traceContext) {
+        if (request.entries() == null || request.entries().isEmpty()) return Mono.just(new ServedBatchAck(0, false));
+        return RSocketTracing.respond(observationRegistry, "eta.rsocket.server", "stats.served.batch", traceContext,
+                () -> etaService.applyServedBatch(request.batchId(), request.entries()));
+    }
+
+    @MessageMapping("events.batch")
+    public Mono<QueueEventAck> queueEvents(QueueEventBatch request,
+                                           @Header(name = RSocketTracing.TRACE_CONTEXT_HEADER, required = false) String traceContext) {
+        if (request.events() == null || request.events().isEmpty()) return Mono.just(new QueueEventAck(0, 0, 0, 0));
+        return RSocketTracing.respond(observationRegistry, "eta.rsocket.server", "events.batch", traceContext,
+                () -> Mono.fromSupplier(() -> etaService.applyQueueEvents(request.events()))
+                        .subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    // A slow subscriber skips ticks instead of buffering stale snapshots
+    @MessageMapping("rates.stream")
+    public Flux<RateSnapshot> rateSnapshots() {
+        return Flux.interval(Duration.ZERO, Duration.ofMillis(ratesPushIntervalMs))
+                .onBackpressureDrop()
+                .concatMap(tick -> etaService.rateSnapshots(), 1);
+    }
+
+    private static EtaEstimate toEstimate(EtaResponse response) {
+        return new EtaEstimate(response.getQueueId(), response.getTicketId(), response.getEstimatedWaitMinutes(),
+                response.getP90WaitMinutes(), response.getP50WaitMinutes(), response.getServiceRate(),
+                response.getUpdatedAt(), response.getRemainingMinutes());
+    }
+}
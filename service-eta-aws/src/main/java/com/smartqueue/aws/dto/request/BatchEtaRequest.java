@@ -0,0 +1,46 @@
+package com.smartqueue.aws.dto.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchEtaRequest {
+
+    @NotEmpty(message = "At least one ticket is required")
+    @Size(max = 1000, message = "At most 1000 tickets per batch")
+    private List<@Valid EtaQuery> tickets;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class EtaQuery {
+
+        @NotBlank(message = "Queue ID is required")
+        private String queueId;
+
+        @NotBlank(message = "Ticket ID is required")
+        private String ticketId;
+
+        @NotNull(message = "Position is required")
+        @Min(value = 1, message = "Position must be at least 1")
+        private Integer position;
+
+        public com.smartqueue.aws.contract.EtaQuery toContract() {
+            return new com.smartqueue.aws.contract.EtaQuery(queueId, ticketId, position);
+        }
+    }
+}
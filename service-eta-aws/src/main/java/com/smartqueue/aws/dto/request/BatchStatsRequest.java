@@ -0,0 +1,25 @@
+package com.smartqueue.aws.dto.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchStatsRequest {
+
+    // Sender-chosen, kept across retries; a batch id seen before is not applied again
+    private String batchId;
+
+    @NotEmpty(message = "At least one entry is required")
+    @Size(max = 1000, message = "At most 1000 entries per batch")
+    private List<@Valid UpdateStatsRequest> entries;
+}
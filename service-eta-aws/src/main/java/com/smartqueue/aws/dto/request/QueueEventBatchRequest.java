@@ -0,0 +1,54 @@
+package com.smartqueue.aws.dto.request;
+
+import com.smartqueue.aws.contract.QueueEventType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import java.time.Instant;
+import java.util.List;
+
+// JSON form of the events.batch message (QueueEventBatch), validated for the HTTP endpoint
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueueEventBatchRequest {
+
+    @NotEmpty(message = "At least one event is required")
+    @Size(max = 1000, message = "At most 1000 events per batch")
+    private List<@Valid QueueEvent> events;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class QueueEvent {
+
+        @NotBlank(message = "Event ID is required")
+        private String eventId;
+
+        @NotNull(message = "Event type is required")
+        private QueueEventType type;
+
+        @NotBlank(message = "Queue ID is required")
+        private String queueId;
+
+        @NotBlank(message = "Ticket ID is required")
+        private String ticketId;
+
+        private Integer position;
+
+        private Instant occurredAt;
+
+        public com.smartqueue.aws.contract.QueueEvent toContract() {
+            return new com.smartqueue.aws.contract.QueueEvent(eventId, type, queueId, ticketId, position, occurredAt);
+        }
+    }
+}
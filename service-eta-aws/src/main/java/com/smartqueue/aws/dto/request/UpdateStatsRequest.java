@@ -1,5 +1,6 @@
 package com.smartqueue.aws.dto.request;
 
+import com.smartqueue.aws.contract.ServedWindow;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -25,4 +26,11 @@ public class UpdateStatsRequest {
     @NotNull(message = "Window size is required")
     @Min(value = 1, message = "Window size must be at least 1")
     private Integer windowSec;
+
+    // Epoch millis the window closed; absent means it closed when the request arrived
+    private Long windowEnd;
+
+    public ServedWindow toServedWindow() {
+        return new ServedWindow(queueId, count, windowSec, windowEnd);
+    }
 }
\ No newline at end of file
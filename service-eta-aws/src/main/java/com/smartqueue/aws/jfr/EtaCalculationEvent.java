@@ -0,0 +1,21 @@
+package com.smartqueue.aws.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.smartqueue.eta.EtaCalculation")
+@Label("ETA Calculation")
+@Category({"SmartQueue", "ETA Service"})
+@Description("ETA computed for one or more tickets of a queue, stats read included")
+@StackTrace(false)
+public class EtaCalculationEvent extends OutcomeEvent {
+
+    @Label("Queue Id")
+    public String queueId;
+
+    @Label("Tickets")
+    public int tickets;
+}
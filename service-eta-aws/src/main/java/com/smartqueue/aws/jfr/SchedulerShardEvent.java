@@ -0,0 +1,25 @@
+package com.smartqueue.aws.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.smartqueue.eta.SchedulerShard")
+@Label("Scheduler Shard")
+@Category({"SmartQueue", "ETA Service"})
+@Description("Due tickets of one queue processed by the ETA scheduler")
+@StackTrace(false)
+public class SchedulerShardEvent extends OutcomeEvent {
+
+    @Label("Queue Id")
+    public String queueId;
+
+    @Label("Tickets")
+    public int tickets;
+
+    @Label("Carried Over")
+    @Description("Tickets left for the next batch because the deadline passed")
+    public int carriedOver;
+}
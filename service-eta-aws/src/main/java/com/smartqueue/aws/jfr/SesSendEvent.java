@@ -0,0 +1,21 @@
+package com.smartqueue.aws.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.smartqueue.eta.SesSend")
+@Label("SES Send")
+@Category({"SmartQueue", "ETA Service"})
+@Description("One email sent through SES")
+@StackTrace(false)
+public class SesSendEvent extends OutcomeEvent {
+
+    @Label("Format")
+    public String format;
+
+    @Label("Recipients")
+    public int recipients;
+}
@@ -19,10 +19,12 @@ public class NotificationLog {
     private NotificationType channel;
     private String recipient;
     private NotificationStatus status;
+    private String subject;
     private String message;
     private Instant sentAt;
     private Instant scheduledAt;
     private String errorMessage;
+    private int attempts;
     
     public enum NotificationType {
         EMAIL,
@@ -34,6 +36,7 @@ public class NotificationLog {
         PENDING,
         SENT,
         FAILED,
-        CANCELLED
+        CANCELLED,
+        DEAD_LETTER
     }
 }
\ No newline at end of file
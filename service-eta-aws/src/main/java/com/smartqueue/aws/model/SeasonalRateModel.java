@@ -0,0 +1,92 @@
+package com.smartqueue.aws.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Per-queue service rate (customers/minute) learned for each of the 168 hour-of-week buckets.
+// Each bucket keeps additive counters: customers served, seconds observed and windows seen; the rate
+// is served per observed minute. Counters only ever grow, so replicas add their own observations to
+// the shared row with an atomic ADD and merge the totals they read back by taking the larger count,
+// and no replica can overwrite another's samples. Observations not yet flushed are held as pending
+// deltas on top of the totals last read.
+public class SeasonalRateModel {
+
+    public static final int BUCKETS = 7 * 24;
+
+    private final String queueId;
+    // Totals as last read from the table
+    private final double[] served = new double[BUCKETS];
+    private final long[] seconds = new long[BUCKETS];
+    private final long[] samples = new long[BUCKETS];
+    // Observed on this replica since the last flush
+    private final double[] pendingServed = new double[BUCKETS];
+    private final long[] pendingSeconds = new long[BUCKETS];
+    private final long[] pendingSamples = new long[BUCKETS];
+    private volatile boolean dirty;
+
+    public record Delta(int bucket, double served, long seconds, long samples) {}
+
+    public SeasonalRateModel(String queueId) {
+        this.queueId = queueId;
+    }
+
+    public String getQueueId() {
+        return queueId;
+    }
+
+    public synchronized void observe(int bucket, double servedCount, long windowSeconds) {
+        pendingServed[bucket] += servedCount;
+        pendingSeconds[bucket] += windowSeconds;
+        pendingSamples[bucket]++;
+        dirty = true;
+    }
+
+    // Learned rate for the bucket, or NaN until it has seen minSamples windows
+    public double rate(int bucket, int minSamples) {
+        long n = samples[bucket] + pendingSamples[bucket];
+        long observedSeconds = seconds[bucket] + pendingSeconds[bucket];
+        if (n < minSamples || observedSeconds <= 0) return Double.NaN;
+        return (served[bucket] + pendingServed[bucket]) / (observedSeconds / 60.0);
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    // Hands the pending observations to the flush; restore them if the write fails
+    public synchronized List<Delta> drainPending() {
+        List<Delta> deltas = new ArrayList<>();
+        for (int i = 0; i < BUCKETS; i++) {
+            if (pendingSamples[i] == 0) continue;
+            deltas.add(new Delta(i, pendingServed[i], pendingSeconds[i], pendingSamples[i]));
+            pendingServed[i] = 0;
+            pendingSeconds[i] = 0;
+            pendingSamples[i] = 0;
+        }
+        dirty = false;
+        return deltas;
+    }
+
+    public synchronized void restore(List<Delta> deltas) {
+        for (Delta delta : deltas) {
+            pendingServed[delta.bucket()] += delta.served();
+            pendingSeconds[delta.bucket()] += delta.seconds();
+            pendingSamples[delta.bucket()] += delta.samples();
+        }
+        if (!deltas.isEmpty()) dirty = true;
+    }
+
+    // Totals read from the table; a read older than what we already hold is ignored bucket by bucket
+    public synchronized void mergeTotals(int bucket, double servedTotal, long secondsTotal, long samplesTotal) {
+        if (samplesTotal < samples[bucket]) return;
+        served[bucket] = servedTotal;
+        seconds[bucket] = secondsTotal;
+        samples[bucket] = samplesTotal;
+    }
+
+    public synchronized void mergeTotals(SeasonalRateModel other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            mergeTotals(i, other.served[i], other.seconds[i], other.samples[i]);
+        }
+    }
+}
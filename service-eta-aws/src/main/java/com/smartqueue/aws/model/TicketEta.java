@@ -8,19 +8,22 @@ import lombok.NoArgsConstructor;
 import java.time.Instant;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class TicketEta {
     private String ticketId;
     private String queueId;
     private String customerEmail;
+    private String customerPhone;
     private Integer remainingMinutes;
     private Integer originalEtaMinutes;
     private Instant calculatedAt;
     private Instant updatedAt;
     private Boolean notificationSent;
     private TicketStatus status;
+    private Long expiresAt; // epoch seconds, DynamoDB TTL attribute
+    private Long version; // bumped by every write to the row; null until the row has been written with one
 
     public enum TicketStatus {
         WAITING,
@@ -29,4 +32,9 @@ public class TicketEta {
         COMPLETED,
         CANCELLED
     }
+
+    // Left the queue; the row only waits for its TTL
+    public boolean isFinished() {
+        return status == TicketStatus.COMPLETED || status == TicketStatus.CANCELLED;
+    }
 }
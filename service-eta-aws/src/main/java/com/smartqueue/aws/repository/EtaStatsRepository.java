@@ -1,186 +1,120 @@
 package com.smartqueue.aws.repository;
 
-import com.smartqueue.aws.model.EtaStats;
+import com.smartqueue.aws.model.SeasonalRateModel;
+import io.micrometer.observation.annotation.Observed;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
 import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.*;
 
+import java.math.BigDecimal;
 import java.time.Instant;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.StringJoiner;
 
 @Slf4j
+@Observed(name = "repository")
 @Repository
 public class EtaStatsRepository {
 
     private final DynamoDbClient dynamoDbClient;
+    private final DynamoDbAsyncClient dynamoDbAsyncClient;
     private final String tableName;
-    private final String tablePrefix;
 
-    private static final DateTimeFormatter TIME_WINDOW_FORMATTER =
-            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH").withZone(ZoneOffset.UTC);
+    // Sort key of the learned hour-of-week model row; never collides with the hourly yyyy-MM-dd'T'HH rows older versions wrote
+    private static final String RATE_MODEL_WINDOW = "MODEL#hour-of-week";
+    // Per-bucket counter attributes of the model row, suffixed with the bucket (ADD only works on top-level attributes)
+    private static final String SERVED = "served_";
+    private static final String SECONDS = "seconds_";
+    private static final String SAMPLES = "samples_";
 
     public EtaStatsRepository(@Autowired(required = false) DynamoDbClient dynamoDbClient,
+                              @Autowired(required = false) DynamoDbAsyncClient dynamoDbAsyncClient,
                               @Value("${aws.dynamodb.table-prefix:smartqueue-}") String tablePrefix) {
         this.dynamoDbClient = dynamoDbClient;
-        this.tablePrefix = tablePrefix;
+        this.dynamoDbAsyncClient = dynamoDbAsyncClient;
         this.tableName = tablePrefix + "eta_stats";
         log.info("EtaStatsRepository initialized with client: {}", dynamoDbClient != null ? "REAL" : "NULL");
         ensureTableExists();
     }
 
-    public EtaStats save(EtaStats etaStats) {
-        log.debug("Saving ETA stats for queue: {}", etaStats.getQueueId());
-
-        if (dynamoDbClient == null) {
-            log.warn("DynamoDB client is null, skipping save operation");
-            etaStats.setUpdatedAt(Instant.now());
-            return etaStats;
-        }
-
-        try {
-            etaStats.setUpdatedAt(Instant.now());
-
-            Map<String, AttributeValue> item = new HashMap<>();
-            item.put("queueId", AttributeValue.builder().s(etaStats.getQueueId()).build());
-            item.put("timeWindow", AttributeValue.builder().s(etaStats.getTimeWindow()).build());
-            item.put("servedCount", AttributeValue.builder().n(String.valueOf(etaStats.getServedCount())).build());
-            item.put("emaServiceRate", AttributeValue.builder().n(String.valueOf(etaStats.getEmaServiceRate())).build());
-            item.put("p90WaitTimeMinutes", AttributeValue.builder().n(String.valueOf(etaStats.getP90WaitTimeMinutes())).build());
-            item.put("p50WaitTimeMinutes", AttributeValue.builder().n(String.valueOf(etaStats.getP50WaitTimeMinutes())).build());
-            item.put("windowStart", AttributeValue.builder().n(String.valueOf(etaStats.getWindowStart().toEpochMilli())).build());
-            item.put("updatedAt", AttributeValue.builder().n(String.valueOf(etaStats.getUpdatedAt().toEpochMilli())).build());
-
-            PutItemRequest request = PutItemRequest.builder()
-                    .tableName(tableName)
-                    .item(item)
-                    .build();
-
-            dynamoDbClient.putItem(request);
-            log.info("ETA stats saved successfully for queue: {}", etaStats.getQueueId());
-            return etaStats;
-
-        } catch (Exception e) {
-            log.error("Error saving ETA stats for queue: {}", etaStats.getQueueId(), e);
-            throw new RuntimeException("Failed to save ETA stats", e);
-        }
-    }
-
-    public Optional<EtaStats> findByQueueIdAndTimeWindow(String queueId, String timeWindow) {
-        log.debug("Finding ETA stats for queue: {} and time window: {}", queueId, timeWindow);
-
-        if (dynamoDbClient == null) {
-            log.warn("DynamoDB client is null, returning empty result");
-            return Optional.empty();
-        }
-
-        try {
-            Map<String, AttributeValue> key = new HashMap<>();
-            key.put("queueId", AttributeValue.builder().s(queueId).build());
-            key.put("timeWindow", AttributeValue.builder().s(timeWindow).build());
-
-            GetItemRequest request = GetItemRequest.builder()
-                    .tableName(tableName)
-                    .key(key)
-                    .build();
-
-            GetItemResponse response = dynamoDbClient.getItem(request);
-            if (response.hasItem()) {
-                return Optional.of(mapItemToEtaStats(response.item(), queueId, timeWindow));
-            }
-
-            return Optional.empty();
-
-        } catch (Exception e) {
-            log.error("Error finding ETA stats for queue: {} and time window: {}", queueId, timeWindow, e);
-            return Optional.empty();
-        }
-    }
-
-    public Optional<EtaStats> findLatestByQueueId(String queueId) {
-        log.debug("Finding latest ETA stats for queue: {}", queueId);
-        String currentTimeWindow = getCurrentTimeWindow();
-        return findByQueueIdAndTimeWindow(queueId, currentTimeWindow);
-    }
-
-    public EtaStats updateServiceRate(String queueId, double newServiceRate, double alpha) {
-        log.debug("Updating service rate for queue: {} to {} with alpha: {}", queueId, newServiceRate, alpha);
-
-        String timeWindow = getCurrentTimeWindow();
-        Optional<EtaStats> existingStats = findByQueueIdAndTimeWindow(queueId, timeWindow);
-
-        EtaStats etaStats;
-        if (existingStats.isPresent()) {
-            etaStats = existingStats.get();
-            double oldEma = etaStats.getEmaServiceRate();
-            double newEma = alpha * newServiceRate + (1 - alpha) * oldEma;
-            etaStats.setEmaServiceRate(newEma);
-            etaStats.setServedCount(etaStats.getServedCount() + 1);
+    public Mono<SeasonalRateModel> findRateModelAsync(String queueId) {
+        Map<String, AttributeValue> key = new HashMap<>();
+        key.put("queueId", AttributeValue.builder().s(queueId).build());
+        key.put("timeWindow", AttributeValue.builder().s(RATE_MODEL_WINDOW).build());
+        GetItemRequest request = GetItemRequest.builder().tableName(tableName).key(key).build();
+
+        Mono<GetItemResponse> response;
+        if (dynamoDbAsyncClient != null) {
+            response = Mono.fromFuture(() -> dynamoDbAsyncClient.getItem(request));
+        } else if (dynamoDbClient != null) {
+            response = Mono.fromCallable(() -> dynamoDbClient.getItem(request));
         } else {
-            etaStats = EtaStats.builder()
-                    .queueId(queueId)
-                    .timeWindow(timeWindow)
-                    .windowStart(Instant.now())
-                    .servedCount(1)
-                    .emaServiceRate(newServiceRate)
-                    .p90WaitTimeMinutes(5)
-                    .p50WaitTimeMinutes(3)
-                    .build();
+            return Mono.just(new SeasonalRateModel(queueId));
         }
 
-        return save(etaStats);
+        return response
+                .map(r -> {
+                    SeasonalRateModel model = new SeasonalRateModel(queueId);
+                    if (r.hasItem()) mergeRateCounters(model, r.item());
+                    return model;
+                })
+                .doOnError(e -> log.error("Error loading service rate model for queue: {}", queueId, e));
     }
 
-    public void dEleteByQueueId(String queueId) {
-        log.debug("Deleting ETA stats for queue: {}", queueId);
-
-        if (dynamoDbClient == null) {
-            log.warn("DynamoDB client is null, skipping delete operation");
-            return;
-        }
+    // Adds this replica's observations to the per-bucket counters with one atomic ADD, so concurrent
+    // replicas never overwrite each other, and merges the resulting totals back into the model
+    public void addRateModelCounts(SeasonalRateModel model, List<SeasonalRateModel.Delta> deltas) {
+        if (dynamoDbClient == null || deltas.isEmpty()) return;
 
         try {
-            String currentTimeWindow = getCurrentTimeWindow();
             Map<String, AttributeValue> key = new HashMap<>();
-            key.put("queueId", AttributeValue.builder().s(queueId).build());
-            key.put("timeWindow", AttributeValue.builder().s(currentTimeWindow).build());
+            key.put("queueId", AttributeValue.builder().s(model.getQueueId()).build());
+            key.put("timeWindow", AttributeValue.builder().s(RATE_MODEL_WINDOW).build());
+
+            Map<String, AttributeValue> values = new HashMap<>();
+            values.put(":now", AttributeValue.builder().n(String.valueOf(Instant.now().toEpochMilli())).build());
+            StringJoiner adds = new StringJoiner(", ", " ADD ", "");
+            for (SeasonalRateModel.Delta delta : deltas) {
+                int b = delta.bucket();
+                adds.add(SERVED + b + " :s" + b).add(SECONDS + b + " :t" + b).add(SAMPLES + b + " :n" + b);
+                values.put(":s" + b, AttributeValue.builder().n(BigDecimal.valueOf(delta.served()).toPlainString()).build());
+                values.put(":t" + b, AttributeValue.builder().n(String.valueOf(delta.seconds())).build());
+                values.put(":n" + b, AttributeValue.builder().n(String.valueOf(delta.samples())).build());
+            }
 
-            DeleteItemRequest request = DeleteItemRequest.builder()
+            UpdateItemResponse response = dynamoDbClient.updateItem(UpdateItemRequest.builder()
                     .tableName(tableName)
                     .key(key)
-                    .build();
-
-            dynamoDbClient.deleteItem(request);
-            log.info("ETA stats deleted successfully for queue: {}", queueId);
+                    .updateExpression("SET updatedAt = :now" + adds)
+                    .expressionAttributeValues(values)
+                    .returnValues(ReturnValue.ALL_NEW)
+                    .build());
+            mergeRateCounters(model, response.attributes());
+            log.debug("Service rate model of queue {} updated in {} buckets", model.getQueueId(), deltas.size());
 
         } catch (Exception e) {
-            log.error("Error deleting ETA stats for queue: {}", queueId, e);
-            throw new RuntimeException("Failed to delete ETA stats", e);
+            log.error("Error saving service rate model for queue: {}", model.getQueueId(), e);
+            throw new RuntimeException("Failed to save service rate model", e);
         }
     }
 
-    private EtaStats mapItemToEtaStats(Map<String, AttributeValue> item, String queueId, String timeWindow) {
-        return EtaStats.builder()
-                .queueId(queueId)
-                .timeWindow(timeWindow)
-                .servedCount(Integer.parseInt(item.get("servedCount").n()))
-                .emaServiceRate(Double.parseDouble(item.get("emaServiceRate").n()))
-                .p90WaitTimeMinutes(Integer.parseInt(item.get("p90WaitTimeMinutes").n()))
-                .p50WaitTimeMinutes(Integer.parseInt(item.get("p50WaitTimeMinutes").n()))
-                .windowStart(Instant.ofEpochMilli(Long.parseLong(item.get("windowStart").n())))
-                .updatedAt(Instant.ofEpochMilli(Long.parseLong(item.get("updatedAt").n())))
-                .build();
-    }
-
-    private String getCurrentTimeWindow() {
-        return TIME_WINDOW_FORMATTER.format(Instant.now());
+    private static void mergeRateCounters(SeasonalRateModel model, Map<String, AttributeValue> item) {
+        for (int b = 0; b < SeasonalRateModel.BUCKETS; b++) {
+            AttributeValue samples = item.get(SAMPLES + b);
+            if (samples == null || samples.n() == null) continue;
+            model.mergeTotals(b,
+                    item.containsKey(SERVED + b) ? Double.parseDouble(item.get(SERVED + b).n()) : 0,
+                    item.containsKey(SECONDS + b) ? Long.parseLong(item.get(SECONDS + b).n()) : 0,
+                    Long.parseLong(samples.n()));
+        }
     }
 
     // Tự động tạo bảng nếu chưa tồn tại (chỉ chạy 1 lần)
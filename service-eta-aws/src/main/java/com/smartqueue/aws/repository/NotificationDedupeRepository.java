@@ -0,0 +1,211 @@
+package com.smartqueue.aws.repository;
+
+import io.micrometer.observation.annotation.Observed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Claims "one notification per ticket and channel" with a conditional put, so concurrent
+// producers (tracking, scheduler, /notify) agree on a single sender. Claims expire via DynamoDB TTL.
+// The same table also records applied served-count batch ids (claimBatch), keyed "batch#<id>".
+@Slf4j
+@Observed(name = "repository")
+@Repository
+public class NotificationDedupeRepository {
+
+    private final DynamoDbClient dynamoDbClient;
+    private final String tableName;
+    private final Duration window;
+
+    // Fallback when DynamoDB is disabled: same semantics, process-local. Expired claims are purged on
+    // a schedule and the map is held to localMaxEntries, evicting the claims closest to expiry first.
+    private final ConcurrentMap<String, Instant> localClaims = new ConcurrentHashMap<>();
+    private final int localMaxEntries;
+
+    public NotificationDedupeRepository(@Autowired(required = false) DynamoDbClient dynamoDbClient,
+                                        @Value("${aws.dynamodb.table-prefix:smartqueue-}") String tablePrefix,
+                                        @Value("${notification.dedupe.window-minutes:60}") long windowMinutes,
+                                        @Value("${notification.dedupe.local-max-entries:100000}") int localMaxEntries) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.tableName = tablePrefix + "notification_dedupe";
+        this.window = Duration.ofMinutes(windowMinutes);
+        this.localMaxEntries = localMaxEntries;
+        ensureTableExists();
+    }
+
+    public static String key(String ticketId, Object channel) {
+        return ticketId + "#" + channel;
+    }
+
+    // true if the caller won the claim and should send; false if someone else already did
+    public boolean tryClaim(String dedupeKey, String notificationId) {
+        Instant now = Instant.now();
+        Instant expiresAt = now.plus(window);
+
+        if (dynamoDbClient == null) {
+            return claimLocally(dedupeKey, now, expiresAt);
+        }
+
+        try {
+            Map<String, AttributeValue> item = new HashMap<>();
+            item.put("dedupeKey", AttributeValue.builder().s(dedupeKey).build());
+            item.put("notificationId", AttributeValue.builder().s(notificationId).build());
+            item.put("expiresAt", AttributeValue.builder().n(String.valueOf(expiresAt.getEpochSecond())).build());
+
+            // TTL deletion lags, so an expired claim must be treated as absent
+            dynamoDbClient.putItem(PutItemRequest.builder()
+                    .tableName(tableName)
+                    .item(item)
+                    .conditionExpression("attribute_not_exists(dedupeKey) OR expiresAt < :now")
+                    .expressionAttributeValues(Map.of(
+                            ":now", AttributeValue.builder().n(String.valueOf(now.getEpochSecond())).build()))
+                    .build());
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            log.debug("Duplicate notification suppressed for key {}", dedupeKey);
+            return false;
+        } catch (Exception e) {
+            // Fail open: a rare duplicate email is better than a lost one
+            log.warn("Dedupe claim failed for key {}, sending anyway", dedupeKey, e);
+            return true;
+        }
+    }
+
+    public static String batchKey(String batchId) {
+        return "batch#" + batchId;
+    }
+
+    // true if this is the first delivery of the batch within ttl. Unlike tryClaim this fails closed:
+    // an error propagates so the sender retries later rather than the batch being counted twice.
+    public boolean claimBatch(String batchId, Duration ttl) {
+        String dedupeKey = batchKey(batchId);
+        Instant now = Instant.now();
+        Instant expiresAt = now.plus(ttl);
+
+        if (dynamoDbClient == null) {
+            return claimLocally(dedupeKey, now, expiresAt);
+        }
+
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("dedupeKey", AttributeValue.builder().s(dedupeKey).build());
+        item.put("notificationId", AttributeValue.builder().s(batchId).build());
+        item.put("expiresAt", AttributeValue.builder().n(String.valueOf(expiresAt.getEpochSecond())).build());
+        try {
+            dynamoDbClient.putItem(PutItemRequest.builder()
+                    .tableName(tableName)
+                    .item(item)
+                    .conditionExpression("attribute_not_exists(dedupeKey) OR expiresAt < :now")
+                    .expressionAttributeValues(Map.of(
+                            ":now", AttributeValue.builder().n(String.valueOf(now.getEpochSecond())).build()))
+                    .build());
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+    }
+
+    // Give the claim back after a terminal delivery failure so a later trigger can retry
+    public void release(String dedupeKey, String notificationId) {
+        if (dynamoDbClient == null) {
+            localClaims.remove(dedupeKey);
+            return;
+        }
+        try {
+            dynamoDbClient.deleteItem(DeleteItemRequest.builder()
+                    .tableName(tableName)
+                    .key(Map.of("dedupeKey", AttributeValue.builder().s(dedupeKey).build()))
+                    .conditionExpression("notificationId = :id")
+                    .expressionAttributeValues(Map.of(":id", AttributeValue.builder().s(notificationId).build()))
+                    .build());
+        } catch (ConditionalCheckFailedException e) {
+            log.debug("Dedupe key {} already re-claimed, not releasing", dedupeKey);
+        } catch (Exception e) {
+            log.warn("Failed to release dedupe key {}", dedupeKey, e);
+        }
+    }
+
+    private boolean claimLocally(String dedupeKey, Instant now, Instant expiresAt) {
+        boolean[] won = new boolean[1];
+        localClaims.compute(dedupeKey, (k, existing) -> {
+            if (existing != null && existing.isAfter(now)) return existing;
+            won[0] = true;
+            return expiresAt;
+        });
+        if (won[0] && localClaims.size() > localMaxEntries) {
+            trimLocalClaims(now);
+        }
+        return won[0];
+    }
+
+    @Scheduled(fixedDelayString = "${notification.dedupe.local-purge-interval-ms:60000}")
+    public void purgeExpiredLocalClaims() {
+        if (dynamoDbClient != null || localClaims.isEmpty()) return;
+        Instant now = Instant.now();
+        localClaims.values().removeIf(expiresAt -> !expiresAt.isAfter(now));
+    }
+
+    private synchronized void trimLocalClaims(Instant now) {
+        localClaims.values().removeIf(expiresAt -> !expiresAt.isAfter(now));
+        int excess = localClaims.size() - localMaxEntries;
+        if (excess <= 0) return;
+        List<Map.Entry<String, Instant>> byExpiry = new ArrayList<>(localClaims.entrySet());
+        byExpiry.sort(Map.Entry.comparingByValue());
+        for (int i = 0; i < excess && i < byExpiry.size(); i++) {
+            localClaims.remove(byExpiry.get(i).getKey(), byExpiry.get(i).getValue());
+        }
+        log.warn("Local dedupe claims over {} entries, evicted the {} closest to expiry", localMaxEntries, excess);
+    }
+
+    private void ensureTableExists() {
+        if (dynamoDbClient == null) return;
+
+        try {
+            dynamoDbClient.describeTable(DescribeTableRequest.builder().tableName(tableName).build());
+            log.info("DynamoDB table {} already exists", tableName);
+        } catch (ResourceNotFoundException e) {
+            log.info("Table {} not found, creating...", tableName);
+            createTable();
+        } catch (SdkClientException e) {
+            log.warn("Could not check table existence (possibly local dev): {}", e.getMessage());
+        }
+    }
+
+    private void createTable() {
+        try {
+            dynamoDbClient.createTable(CreateTableRequest.builder()
+                    .tableName(tableName)
+                    .keySchema(KeySchemaElement.builder().attributeName("dedupeKey").keyType(KeyType.HASH).build())
+                    .attributeDefinitions(AttributeDefinition.builder()
+                            .attributeName("dedupeKey").attributeType(ScalarAttributeType.S).build())
+                    .billingMode(BillingMode.PAY_PER_REQUEST)
+                    .build());
+            dynamoDbClient.waiter().waitUntilTableExists(DescribeTableRequest.builder().tableName(tableName).build());
+
+            dynamoDbClient.updateTimeToLive(UpdateTimeToLiveRequest.builder()
+                    .tableName(tableName)
+                    .timeToLiveSpecification(TimeToLiveSpecification.builder()
+                            .attributeName("expiresAt")
+                            .enabled(true)
+                            .build())
+                    .build());
+            log.info("DynamoDB table {} created with TTL on expiresAt", tableName);
+
+        } catch (Exception e) {
+            log.error("Failed to create DynamoDB table {}", tableName, e);
+        }
+    }
+}
@@ -1,38 +1,178 @@
 package com.smartqueue.aws.repository;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.smartqueue.aws.model.NotificationLog;
+import io.micrometer.observation.annotation.Observed;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Repository;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
+// Bounded in-memory notification history.
+// Entries are kept in insertion order so size eviction only ever touches the oldest records; TTL
+// eviction checks each entry's scheduledAt, since replayed or back-dated entries need not be in time
+// order. ticketId/status indexes make lookups independent of the total history size.
+// When a segment directory is configured every write is also appended to a rolling on-disk log
+// which is replayed on startup. Writers only serialize the record into a buffer under the lock;
+// a background thread writes and flushes the buffer every flush-interval-ms, so a crash can lose
+// at most that much history.
 @Slf4j
+@Observed(name = "repository")
 @Repository
 public class NotificationRepository {
-    
-    private final ConcurrentMap<String, NotificationLog> notificationLogs = new ConcurrentHashMap<>();
-    
-    public NotificationLog save(NotificationLog notificationLog) {
+
+    private static final String SEGMENT_PREFIX = "notifications-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final LinkedHashMap<String, NotificationLog> notificationLogs = new LinkedHashMap<>();
+    private final Map<String, Set<String>> idsByTicket = new HashMap<>();
+    private final Map<NotificationLog.NotificationStatus, Set<String>> idsByStatus =
+            new EnumMap<>(NotificationLog.NotificationStatus.class);
+
+    private final ObjectMapper objectMapper;
+    private final int maxEntries;
+    private final Duration ttl;
+    private final String segmentDir;
+    private final long segmentMaxBytes;
+    private final int maxSegments;
+
+    private final long flushIntervalMs;
+    private final int maxPendingLines;
+
+    // Serialized records not yet on disk; guarded by this
+    private ArrayDeque<String> pendingLines = new ArrayDeque<>();
+    private long droppedLines;
+    private ScheduledExecutorService flusher;
+
+    // Only touched by the flusher thread (and by init/close while it is not running)
+    private Path segmentPath;
+    private BufferedWriter segmentWriter;
+    private long segmentBytes;
+    private int segmentIndex;
+
+    public NotificationRepository(ObjectMapper objectMapper,
+                                  @Value("${notification.log.max-entries:10000}") int maxEntries,
+                                  @Value("${notification.log.ttl-minutes:1440}") long ttlMinutes,
+                                  @Value("${notification.log.segment-dir:}") String segmentDir,
+                                  @Value("${notification.log.segment-max-bytes:8388608}") long segmentMaxBytes,
+                                  @Value("${notification.log.max-segments:4}") int maxSegments,
+                                  @Value("${notification.log.flush-interval-ms:200}") long flushIntervalMs,
+                                  @Value("${notification.log.max-pending-lines:10000}") int maxPendingLines) {
+        this.objectMapper = objectMapper;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+        this.segmentDir = segmentDir;
+        this.segmentMaxBytes = segmentMaxBytes;
+        this.maxSegments = Math.max(1, maxSegments);
+        this.flushIntervalMs = Math.max(1, flushIntervalMs);
+        this.maxPendingLines = Math.max(1, maxPendingLines);
+        for (NotificationLog.NotificationStatus status : NotificationLog.NotificationStatus.values()) {
+            idsByStatus.put(status, new LinkedHashSet<>());
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (segmentDir == null || segmentDir.isBlank()) {
+            log.info("NotificationRepository running in memory only (max {} entries, ttl {})", maxEntries, ttl);
+            return;
+        }
+        try {
+            Path dir = Paths.get(segmentDir);
+            Files.createDirectories(dir);
+            List<Path> segments = listSegments(dir);
+            for (Path segment : segments) {
+                replaySegment(segment);
+            }
+            segmentIndex = segments.isEmpty() ? 0 : segmentNumber(segments.get(segments.size() - 1));
+            openSegment(dir, segmentIndex);
+            purgeExpired();
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "notification-log-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flushPending, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+            log.info("NotificationRepository restored {} notifications from {} segments in {}",
+                    notificationLogs.size(), segments.size(), dir);
+        } catch (IOException e) {
+            log.error("Failed to open notification segment log in {}, continuing in memory only", segmentDir, e);
+            segmentWriter = null;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (flusher == null) return;
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("Notification log writer did not stop in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushPending();
+        if (segmentWriter == null) return;
+        try {
+            segmentWriter.close();
+        } catch (IOException e) {
+            log.warn("Failed to close notification segment {}", segmentPath, e);
+        }
+        segmentWriter = null;
+    }
+
+    public synchronized NotificationLog save(NotificationLog notificationLog) {
         if (notificationLog.getNotificationId() == null) {
             notificationLog.setNotificationId(UUID.randomUUID().toString());
         }
-        notificationLog.setScheduledAt(Instant.now());
-        notificationLogs.put(notificationLog.getNotificationId(), notificationLog);
-        log.info("Notification saved: {}", notificationLog.getNotificationId());
+        if (notificationLog.getScheduledAt() == null) {
+            notificationLog.setScheduledAt(Instant.now());
+        }
+        put(notificationLog);
+        append(notificationLog);
+        log.debug("Notification saved: {}", notificationLog.getNotificationId());
         return notificationLog;
     }
-    
+
     public void enqueueNotification(NotificationLog notificationLog) {
         notificationLog.setStatus(NotificationLog.NotificationStatus.PENDING);
         save(notificationLog);
-        log.info("Notification enqueued: {}", notificationLog.getNotificationId());
+        log.debug("Notification enqueued: {}", notificationLog.getNotificationId());
     }
-    
-    public void updateNotificationStatus(String notificationId, 
-                                       NotificationLog.NotificationStatus status, 
-                                       String errorMessage) {
+
+    public synchronized void updateNotificationStatus(String notificationId,
+                                                      NotificationLog.NotificationStatus status,
+                                                      String errorMessage) {
         NotificationLog notificationLog = notificationLogs.get(notificationId);
         if (notificationLog != null) {
             notificationLog.setStatus(status);
@@ -45,4 +185,196 @@ public class NotificationRepository {
             save(notificationLog);
         }
     }
+
+    public synchronized Optional<NotificationLog> findById(String notificationId) {
+        return Optional.ofNullable(notificationLogs.get(notificationId));
+    }
+
+    public synchronized List<NotificationLog> findByTicketId(String ticketId) {
+        Set<String> ids = idsByTicket.get(ticketId);
+        if (ids == null) return Collections.emptyList();
+        return resolve(ids, Integer.MAX_VALUE);
+    }
+
+    // Newest-last; limit caps the result without copying the whole status bucket
+    public synchronized List<NotificationLog> findByStatus(NotificationLog.NotificationStatus status, int limit) {
+        return resolve(idsByStatus.get(status), limit);
+    }
+
+    public synchronized Map<NotificationLog.NotificationStatus, Integer> countByStatus() {
+        Map<NotificationLog.NotificationStatus, Integer> counts = new EnumMap<>(NotificationLog.NotificationStatus.class);
+        idsByStatus.forEach((status, ids) -> counts.put(status, ids.size()));
+        return counts;
+    }
+
+    public synchronized int size() {
+        return notificationLogs.size();
+    }
+
+    // A full pass over at most max-entries records once per purge interval
+    @Scheduled(fixedDelayString = "${notification.log.purge-interval-ms:60000}")
+    public synchronized void purgeExpired() {
+        Instant cutoff = Instant.now().minus(ttl);
+        int purged = 0;
+        Iterator<NotificationLog> it = notificationLogs.values().iterator();
+        while (it.hasNext()) {
+            NotificationLog notificationLog = it.next();
+            if (notificationLog.getScheduledAt() == null || !notificationLog.getScheduledAt().isBefore(cutoff)) continue;
+            it.remove();
+            unindex(notificationLog);
+            purged++;
+        }
+        if (purged > 0) {
+            log.debug("Purged {} expired notifications", purged);
+        }
+    }
+
+    // --- In-memory store ---
+
+    private void put(NotificationLog notificationLog) {
+        NotificationLog previous = notificationLogs.put(notificationLog.getNotificationId(), notificationLog);
+        if (previous != null) {
+            unindex(previous);
+        }
+        index(notificationLog);
+
+        while (notificationLogs.size() > maxEntries) {
+            Iterator<NotificationLog> it = notificationLogs.values().iterator();
+            NotificationLog eldest = it.next();
+            it.remove();
+            unindex(eldest);
+        }
+    }
+
+    private void index(NotificationLog notificationLog) {
+        if (notificationLog.getTicketId() != null) {
+            idsByTicket.computeIfAbsent(notificationLog.getTicketId(), k -> new LinkedHashSet<>())
+                    .add(notificationLog.getNotificationId());
+        }
+        if (notificationLog.getStatus() != null) {
+            idsByStatus.get(notificationLog.getStatus()).add(notificationLog.getNotificationId());
+        }
+    }
+
+    private void unindex(NotificationLog notificationLog) {
+        String id = notificationLog.getNotificationId();
+        if (notificationLog.getTicketId() != null) {
+            Set<String> ids = idsByTicket.get(notificationLog.getTicketId());
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) idsByTicket.remove(notificationLog.getTicketId());
+            }
+        }
+        // Status may have been mutated in place since indexing, so clear every bucket
+        for (Set<String> ids : idsByStatus.values()) {
+            ids.remove(id);
+        }
+    }
+
+    private List<NotificationLog> resolve(Set<String> ids, int limit) {
+        List<NotificationLog> result = new ArrayList<>(Math.min(ids.size(), limit));
+        for (String id : ids) {
+            if (result.size() >= limit) break;
+            NotificationLog notificationLog = notificationLogs.get(id);
+            if (notificationLog != null) result.add(notificationLog);
+        }
+        return result;
+    }
+
+    // --- Append-only segment log ---
+
+    // Called under the lock: the record is serialized now because callers keep mutating it
+    private void append(NotificationLog notificationLog) {
+        if (flusher == null) return;
+        try {
+            pendingLines.add(objectMapper.writeValueAsString(notificationLog));
+        } catch (IOException e) {
+            log.error("Failed to serialize notification {} for segment log", notificationLog.getNotificationId(), e);
+            return;
+        }
+        if (pendingLines.size() > maxPendingLines) {
+            // The writer is stuck (disk full, slow volume); keep memory bounded, the newest history wins
+            pendingLines.pollFirst();
+            droppedLines++;
+        }
+    }
+
+    private void flushPending() {
+        ArrayDeque<String> lines;
+        long dropped;
+        synchronized (this) {
+            if (pendingLines.isEmpty()) return;
+            lines = pendingLines;
+            pendingLines = new ArrayDeque<>();
+            dropped = droppedLines;
+            droppedLines = 0;
+        }
+        if (dropped > 0) {
+            log.warn("Notification segment log fell behind, dropped {} records", dropped);
+        }
+        if (segmentWriter == null) return;
+        try {
+            for (String line : lines) {
+                segmentWriter.write(line);
+                segmentWriter.newLine();
+                // Bytes on disk, not chars: recipients and messages are often non-ASCII
+                segmentBytes += line.getBytes(StandardCharsets.UTF_8).length + System.lineSeparator().length();
+                if (segmentBytes >= segmentMaxBytes) {
+                    segmentWriter.flush();
+                    rollSegment();
+                }
+            }
+            segmentWriter.flush();
+        } catch (IOException e) {
+            log.error("Failed to write {} notifications to segment {}", lines.size(), segmentPath, e);
+        }
+    }
+
+    private void rollSegment() throws IOException {
+        segmentWriter.close();
+        Path dir = segmentPath.getParent();
+        openSegment(dir, segmentIndex + 1);
+
+        List<Path> segments = listSegments(dir);
+        for (int i = 0; i < segments.size() - maxSegments; i++) {
+            Files.deleteIfExists(segments.get(i));
+            log.debug("Deleted old notification segment {}", segments.get(i));
+        }
+    }
+
+    private void openSegment(Path dir, int index) throws IOException {
+        segmentIndex = index;
+        segmentPath = dir.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+        segmentWriter = Files.newBufferedWriter(segmentPath, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        segmentBytes = Files.size(segmentPath);
+    }
+
+    private void replaySegment(Path segment) throws IOException {
+        try (Stream<String> lines = Files.lines(segment, StandardCharsets.UTF_8)) {
+            lines.forEach(line -> {
+                if (line.isBlank()) return;
+                try {
+                    put(objectMapper.readValue(line, NotificationLog.class));
+                } catch (IOException e) {
+                    log.warn("Skipping corrupt notification record in {}", segment);
+                }
+            });
+        }
+    }
+
+    private static List<Path> listSegments(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files
+                    .filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                            && p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static int segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
 }
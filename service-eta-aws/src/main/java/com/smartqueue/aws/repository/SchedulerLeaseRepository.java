@@ -0,0 +1,203 @@
+package com.smartqueue.aws.repository;
+
+import io.micrometer.observation.annotation.Observed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Lease table for the partitioned ETA scheduler.
+// Holds one row per scheduler partition ("partition#N" -> owner, expiresAt) and one heartbeat row
+// per live replica ("node#id" -> expiresAt). All ownership changes are conditional writes.
+// "inbox#N" rows hold the ids of tickets created by replicas that do not own partition N, so its owner
+// can load them within a poll interval instead of at its next reconcile.
+@Slf4j
+@Observed(name = "repository")
+@Repository
+public class SchedulerLeaseRepository {
+
+    public static final String PARTITION_PREFIX = "partition#";
+    public static final String NODE_PREFIX = "node#";
+    public static final String INBOX_PREFIX = "inbox#";
+    // BatchGetItem hard limit
+    private static final int MAX_BATCH_GET = 100;
+
+    private final DynamoDbClient dynamoDbClient;
+    private final String tableName;
+
+    public SchedulerLeaseRepository(@Autowired(required = false) DynamoDbClient dynamoDbClient,
+                                    @Value("${aws.dynamodb.table-prefix:smartqueue-}") String tablePrefix) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.tableName = tablePrefix + "scheduler_leases";
+        ensureTableExists();
+    }
+
+    public boolean isEnabled() {
+        return dynamoDbClient != null;
+    }
+
+    public record Lease(String leaseKey, String owner, long expiresAtMillis) {}
+
+    // Whole table is (partitions + replicas) rows, so a scan is cheap
+    public Map<String, Lease> findAll() {
+        Map<String, Lease> leases = new HashMap<>();
+        Map<String, AttributeValue> startKey = null;
+        do {
+            ScanResponse resp = dynamoDbClient.scan(ScanRequest.builder()
+                    .tableName(tableName)
+                    .consistentRead(true)
+                    .exclusiveStartKey(startKey)
+                    .build());
+            for (Map<String, AttributeValue> item : resp.items()) {
+                String key = item.get("leaseKey").s();
+                if (key.startsWith(INBOX_PREFIX)) continue;
+                String owner = item.containsKey("owner") ? item.get("owner").s() : null;
+                long expiresAt = item.containsKey("expiresAt") ? Long.parseLong(item.get("expiresAt").n()) : 0L;
+                leases.put(key, new Lease(key, owner, expiresAt));
+            }
+            startKey = resp.hasLastEvaluatedKey() && !resp.lastEvaluatedKey().isEmpty() ? resp.lastEvaluatedKey() : null;
+        } while (startKey != null);
+        return leases;
+    }
+
+    public void heartbeat(String nodeId, long expiresAtMillis) {
+        dynamoDbClient.putItem(PutItemRequest.builder()
+                .tableName(tableName)
+                .item(Map.of(
+                        "leaseKey", AttributeValue.builder().s(NODE_PREFIX + nodeId).build(),
+                        "owner", AttributeValue.builder().s(nodeId).build(),
+                        "expiresAt", AttributeValue.builder().n(String.valueOf(expiresAtMillis)).build()))
+                .build());
+    }
+
+    // Takes a free or expired lease, or extends our own
+    public boolean tryAcquire(int partition, String nodeId, long nowMillis, long expiresAtMillis) {
+        try {
+            dynamoDbClient.putItem(PutItemRequest.builder()
+                    .tableName(tableName)
+                    .item(Map.of(
+                            "leaseKey", AttributeValue.builder().s(PARTITION_PREFIX + partition).build(),
+                            "owner", AttributeValue.builder().s(nodeId).build(),
+                            "expiresAt", AttributeValue.builder().n(String.valueOf(expiresAtMillis)).build()))
+                    .conditionExpression("attribute_not_exists(leaseKey) OR expiresAt < :now OR #owner = :me")
+                    .expressionAttributeNames(Map.of("#owner", "owner"))
+                    .expressionAttributeValues(Map.of(
+                            ":now", AttributeValue.builder().n(String.valueOf(nowMillis)).build(),
+                            ":me", AttributeValue.builder().s(nodeId).build()))
+                    .build());
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+    }
+
+    public void release(String leaseKey, String nodeId) {
+        try {
+            dynamoDbClient.deleteItem(DeleteItemRequest.builder()
+                    .tableName(tableName)
+                    .key(Map.of("leaseKey", AttributeValue.builder().s(leaseKey).build()))
+                    .conditionExpression("#owner = :me")
+                    .expressionAttributeNames(Map.of("#owner", "owner"))
+                    .expressionAttributeValues(Map.of(":me", AttributeValue.builder().s(nodeId).build()))
+                    .build());
+        } catch (ConditionalCheckFailedException e) {
+            log.debug("Lease {} no longer owned by {}, nothing to release", leaseKey, nodeId);
+        }
+    }
+
+    // ADD on a string set is atomic, so concurrent creators never overwrite each other's ids
+    public void addToInbox(int partition, String ticketId) {
+        dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                .tableName(tableName)
+                .key(Map.of("leaseKey", AttributeValue.builder().s(INBOX_PREFIX + partition).build()))
+                .updateExpression("ADD ticketIds :ids")
+                .expressionAttributeValues(Map.of(":ids", AttributeValue.builder().ss(ticketId).build()))
+                .build());
+    }
+
+    // Pending ticket ids per partition; partitions with an empty inbox are left out.
+    // Keys the batch leaves unprocessed are simply read on the next poll.
+    public Map<Integer, Set<String>> readInboxes(Collection<Integer> partitions) {
+        Map<Integer, Set<String>> inboxes = new HashMap<>();
+        List<Integer> all = new ArrayList<>(partitions);
+        for (int i = 0; i < all.size(); i += MAX_BATCH_GET) {
+            List<Map<String, AttributeValue>> keys = new ArrayList<>();
+            for (Integer partition : all.subList(i, Math.min(i + MAX_BATCH_GET, all.size()))) {
+                keys.add(Map.of("leaseKey", AttributeValue.builder().s(INBOX_PREFIX + partition).build()));
+            }
+            BatchGetItemResponse resp = dynamoDbClient.batchGetItem(BatchGetItemRequest.builder()
+                    .requestItems(Map.of(tableName, KeysAndAttributes.builder()
+                            .keys(keys)
+                            .consistentRead(true)
+                            .build()))
+                    .build());
+            for (Map<String, AttributeValue> item : resp.responses().getOrDefault(tableName, List.of())) {
+                AttributeValue ids = item.get("ticketIds");
+                if (ids == null || !ids.hasSs() || ids.ss().isEmpty()) continue;
+                int partition = Integer.parseInt(item.get("leaseKey").s().substring(INBOX_PREFIX.length()));
+                inboxes.put(partition, new HashSet<>(ids.ss()));
+            }
+        }
+        return inboxes;
+    }
+
+    // DELETE only takes out the ids we loaded; ids announced meanwhile stay for the next poll
+    public void removeFromInbox(int partition, Set<String> ticketIds) {
+        if (ticketIds.isEmpty()) return;
+        dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                .tableName(tableName)
+                .key(Map.of("leaseKey", AttributeValue.builder().s(INBOX_PREFIX + partition).build()))
+                .updateExpression("DELETE ticketIds :ids")
+                .expressionAttributeValues(Map.of(":ids", AttributeValue.builder().ss(ticketIds).build()))
+                .build());
+    }
+
+    // A new owner loads the whole partition, which covers everything announced so far
+    public void clearInbox(int partition) {
+        dynamoDbClient.deleteItem(DeleteItemRequest.builder()
+                .tableName(tableName)
+                .key(Map.of("leaseKey", AttributeValue.builder().s(INBOX_PREFIX + partition).build()))
+                .build());
+    }
+
+    private void ensureTableExists() {
+        if (dynamoDbClient == null) return;
+
+        try {
+            dynamoDbClient.describeTable(DescribeTableRequest.builder().tableName(tableName).build());
+            log.info("DynamoDB table {} already exists", tableName);
+        } catch (ResourceNotFoundException e) {
+            log.info("Table {} not found, creating...", tableName);
+            createTable();
+        } catch (SdkClientException e) {
+            log.warn("Could not check table existence (possibly local dev): {}", e.getMessage());
+        }
+    }
+
+    private void createTable() {
+        try {
+            dynamoDbClient.createTable(CreateTableRequest.builder()
+                    .tableName(tableName)
+                    .keySchema(KeySchemaElement.builder().attributeName("leaseKey").keyType(KeyType.HASH).build())
+                    .attributeDefinitions(AttributeDefinition.builder()
+                            .attributeName("leaseKey").attributeType(ScalarAttributeType.S).build())
+                    .billingMode(BillingMode.PAY_PER_REQUEST)
+                    .build());
+            dynamoDbClient.waiter().waitUntilTableExists(DescribeTableRequest.builder().tableName(tableName).build());
+            log.info("DynamoDB table {} created successfully", tableName);
+        } catch (Exception e) {
+            log.error("Failed to create DynamoDB table {}", tableName, e);
+        }
+    }
+}
@@ -1,34 +1,142 @@
 // src/main/java/com/smartqueue/aws/repository/TicketEtaRepository.java
 package com.smartqueue.aws.repository;
 
+import com.smartqueue.aws.config.HotPathLogFilter;
 import com.smartqueue.aws.model.TicketEta;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.annotation.Observed;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeDefinition;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.BillingMode;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.CreateGlobalSecondaryIndexAction;
 import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteRequest;
+import software.amazon.awssdk.services.dynamodb.model.DescribeTableRequest;
+import software.amazon.awssdk.services.dynamodb.model.DescribeTimeToLiveRequest;
 import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.GlobalSecondaryIndexUpdate;
+import software.amazon.awssdk.services.dynamodb.model.KeySchemaElement;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
+import software.amazon.awssdk.services.dynamodb.model.KeyType;
+import software.amazon.awssdk.services.dynamodb.model.Projection;
+import software.amazon.awssdk.services.dynamodb.model.ProjectionType;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughput;
+import software.amazon.awssdk.services.dynamodb.model.Put;
 import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValuesOnConditionCheckFailure;
+import software.amazon.awssdk.services.dynamodb.model.ScalarAttributeType;
 import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
 import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.TableDescription;
+import software.amazon.awssdk.services.dynamodb.model.TimeToLiveSpecification;
+import software.amazon.awssdk.services.dynamodb.model.TimeToLiveStatus;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.UpdateTableRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateTimeToLiveRequest;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Slf4j
+@Observed(name = "repository")
 @Repository
 public class TicketEtaRepository {
 
+    // BatchWriteItem hard limit
+    public static final int MAX_BATCH_WRITE = 25;
+    // BatchGetItem hard limit
+    private static final int MAX_BATCH_GET = 100;
+    private static final int MAX_UNPROCESSED_RETRIES = 3;
+    // TransactWriteItems hard limit
+    private static final int MAX_TRANSACT_ITEMS = 100;
+    // Conditional checkpoint writes (transactions or single puts) in flight at once
+    private static final int MAX_CONCURRENT_WRITES = 32;
+    // GSI on etaPartition: the scheduler partition a ticket belongs to (see partitionOf)
+    private static final String PARTITION_INDEX = "etaPartition-index";
+
+    public enum WriteOutcome { WRITTEN, CONFLICT, FAILED }
+
+    public enum FinishOutcome { APPLIED, ALREADY_FINISHED, NOT_FOUND }
+
     private final DynamoDbClient dynamoDbClient;
+    private final DynamoDbAsyncClient dynamoDbAsyncClient;
     private final String tableName;
+    private final int partitionCount;
+    private final boolean backfillPartitions;
+    private final Timer batchWriteTimer;
+    private final Timer conditionalPutTimer;
+    private final Timer transactWriteTimer;
+    private final Timer claimTimer;
+    private final Timer createTimer;
 
     public TicketEtaRepository(DynamoDbClient dynamoDbClient,
-                               @Value("${aws.dynamodb.table-prefix:smartqueue-}") String tablePrefix) {
+                               @Autowired(required = false) DynamoDbAsyncClient dynamoDbAsyncClient,
+                               @Value("${aws.dynamodb.table-prefix:smartqueue-}") String tablePrefix,
+                               @Value("${aws.dynamodb.ttl-enabled:true}") boolean ttlEnabled,
+                               @Value("${eta.scheduler.partitions:8}") int partitionCount,
+                               @Value("${eta.store.backfill-partitions:true}") boolean backfillPartitions,
+                               MeterRegistry meterRegistry) {
         this.dynamoDbClient = dynamoDbClient;
+        this.dynamoDbAsyncClient = dynamoDbAsyncClient;
         this.tableName = tablePrefix + "ticket_eta";
+        this.partitionCount = Math.max(1, partitionCount);
+        this.backfillPartitions = backfillPartitions;
+        this.batchWriteTimer = writeTimer(meterRegistry, "batchWrite");
+        this.conditionalPutTimer = writeTimer(meterRegistry, "conditionalPut");
+        this.transactWriteTimer = writeTimer(meterRegistry, "transactWrite");
+        this.claimTimer = writeTimer(meterRegistry, "claimNotification");
+        this.createTimer = writeTimer(meterRegistry, "createIfAbsent");
+        if (ttlEnabled) {
+            ensureTimeToLive();
+        }
+        ensurePartitionIndex();
+    }
+
+    // Off the startup path: on a large table the scan takes a while. Rows it fixes are found by their
+    // owner's next reconcile.
+    @PostConstruct
+    public void startPartitionBackfill() {
+        if (!backfillPartitions || dynamoDbClient == null) return;
+        Thread thread = new Thread(() -> {
+            int updated = backfillPartitions();
+            if (updated > 0) log.info("Backfilled etaPartition on {} active tickets in table {}", updated, tableName);
+        }, "eta-partition-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Scheduler partition of a ticket; String.hashCode is specified, so every replica agrees.
+    // eta.scheduler.partitions must be the same on all replicas: rows carry the partition they were written with.
+    public static int partitionOf(String ticketId, int partitionCount) {
+        return Math.floorMod(ticketId.hashCode(), Math.max(1, partitionCount));
     }
 
     // Save or update a ticket ETA record
@@ -43,7 +151,7 @@ public class TicketEtaRepository {
                     .tableName(tableName)
                     .item(item)
                     .build());
-            log.info("Saved ticket {} to table {}", ticket.getTicketId(), tableName);
+            log.info(HotPathLogFilter.HOT_PATH, "Saved ticket {} to table {}", ticket.getTicketId(), tableName);
             return ticket;
         } catch (Exception e) {
             log.error("Failed to save ticket {} to table {}", ticket.getTicketId(), tableName, e);
@@ -53,6 +161,10 @@ public class TicketEtaRepository {
 
     // Get one by ticketId
     public Optional<TicketEta> findByTicketId(String ticketId) {
+        return findByTicketId(ticketId, false);
+    }
+
+    public Optional<TicketEta> findByTicketId(String ticketId, boolean consistentRead) {
         if (dynamoDbClient == null) {
             log.warn("DynamoDB client is null, skip findByTicketId for {}", ticketId);
             return Optional.empty();
@@ -65,6 +177,7 @@ public class TicketEtaRepository {
                     GetItemRequest.builder()
                             .tableName(tableName)
                             .key(key)
+                            .consistentRead(consistentRead)
                             .build()
             );
             if (resp.hasItem() && !resp.item().isEmpty()) {
@@ -77,6 +190,133 @@ public class TicketEtaRepository {
         }
     }
 
+    // Consistent reads of several tickets in BatchGetItem chunks of 100; ids without a row are left out.
+    // Keys still unprocessed after a few retries are left out as well, so callers must tolerate a partial answer.
+    public List<TicketEta> findByTicketIds(Collection<String> ticketIds) {
+        if (dynamoDbClient == null || ticketIds.isEmpty()) return Collections.emptyList();
+        List<String> ids = new ArrayList<>(ticketIds);
+        List<TicketEta> result = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i += MAX_BATCH_GET) {
+            List<Map<String, AttributeValue>> pending = new ArrayList<>();
+            for (String ticketId : ids.subList(i, Math.min(i + MAX_BATCH_GET, ids.size()))) {
+                pending.add(Map.of("ticketId", AttributeValue.builder().s(ticketId).build()));
+            }
+            try {
+                for (int attempt = 0; !pending.isEmpty() && attempt <= MAX_UNPROCESSED_RETRIES; attempt++) {
+                    if (attempt > 0) Thread.sleep(50L << attempt);
+                    BatchGetItemResponse resp = dynamoDbClient.batchGetItem(BatchGetItemRequest.builder()
+                            .requestItems(Map.of(tableName, KeysAndAttributes.builder()
+                                    .keys(pending)
+                                    .consistentRead(true)
+                                    .build()))
+                            .build());
+                    resp.responses().getOrDefault(tableName, List.of()).forEach(item -> result.add(fromItem(item)));
+                    KeysAndAttributes unprocessed = resp.hasUnprocessedKeys() ? resp.unprocessedKeys().get(tableName) : null;
+                    pending = unprocessed != null ? unprocessed.keys() : List.of();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("Failed to batch read {} tickets from table {}", pending.size(), tableName, e);
+            }
+        }
+        return result;
+    }
+
+    // --- Non-blocking variants for the reactive endpoints ---
+
+    public Mono<TicketEta> saveAsync(TicketEta ticket) {
+        if (dynamoDbAsyncClient == null) {
+            return Mono.fromCallable(() -> save(ticket));
+        }
+        return Mono.fromFuture(() -> dynamoDbAsyncClient.putItem(PutItemRequest.builder()
+                        .tableName(tableName)
+                        .item(toItem(ticket))
+                        .build()))
+                .doOnNext(r -> log.debug("Saved ticket {} to table {}", ticket.getTicketId(), tableName))
+                .thenReturn(ticket)
+                .onErrorMap(e -> {
+                    log.error("Failed to save ticket {} to table {}", ticket.getTicketId(), tableName, e);
+                    return new RuntimeException("Failed to save TicketEta", e);
+                });
+    }
+
+    // Creates the row only if the ticket is not tracked yet. Empty means we created it; on conflict the
+    // existing row is returned (one consistent read, paid only by the losing caller).
+    public Mono<Optional<TicketEta>> createIfAbsentAsync(TicketEta ticket) {
+        if (dynamoDbClient == null && dynamoDbAsyncClient == null) {
+            return Mono.just(Optional.empty());
+        }
+        PutItemRequest put = PutItemRequest.builder()
+                .tableName(tableName)
+                .item(toItem(ticket))
+                .conditionExpression("attribute_not_exists(ticketId)")
+                .build();
+        GetItemRequest get = GetItemRequest.builder()
+                .tableName(tableName)
+                .key(Map.of("ticketId", AttributeValue.builder().s(ticket.getTicketId()).build()))
+                .consistentRead(true)
+                .build();
+
+        Timer.Sample sample = Timer.start();
+        Mono<Optional<TicketEta>> create;
+        Mono<GetItemResponse> readExisting;
+        if (dynamoDbAsyncClient != null) {
+            create = Mono.fromFuture(() -> dynamoDbAsyncClient.putItem(put)).thenReturn(Optional.<TicketEta>empty());
+            readExisting = Mono.fromFuture(() -> dynamoDbAsyncClient.getItem(get));
+        } else {
+            create = Mono.fromCallable(() -> dynamoDbClient.putItem(put)).thenReturn(Optional.<TicketEta>empty());
+            readExisting = Mono.fromCallable(() -> dynamoDbClient.getItem(get));
+        }
+
+        return create
+                .doFinally(signal -> sample.stop(createTimer))
+                .onErrorResume(ConditionalCheckFailedException.class, e -> {
+                    log.debug("Ticket {} already tracked, adopting existing row", ticket.getTicketId());
+                    return readExisting.map(resp -> resp.hasItem() && !resp.item().isEmpty()
+                            ? Optional.of(fromItem(resp.item()))
+                            : Optional.<TicketEta>empty());
+                })
+                .onErrorMap(e -> !(e instanceof ConditionalCheckFailedException), e -> {
+                    log.error("Failed to create ticket {} in table {}", ticket.getTicketId(), tableName, e);
+                    return new RuntimeException("Failed to create TicketEta", e);
+                });
+    }
+
+    public Mono<Optional<TicketEta>> findByTicketIdAsync(String ticketId) {
+        if (dynamoDbAsyncClient == null) {
+            return Mono.fromCallable(() -> findByTicketId(ticketId));
+        }
+        return Mono.fromFuture(() -> dynamoDbAsyncClient.getItem(GetItemRequest.builder()
+                        .tableName(tableName)
+                        .key(Map.of("ticketId", AttributeValue.builder().s(ticketId).build()))
+                        .build()))
+                .map(resp -> resp.hasItem() && !resp.item().isEmpty()
+                        ? Optional.of(fromItem(resp.item()))
+                        : Optional.<TicketEta>empty())
+                .onErrorResume(e -> {
+                    log.error("Failed to get ticket {} from table {}", ticketId, tableName, e);
+                    return Mono.just(Optional.empty());
+                });
+    }
+
+    public Mono<Void> deleteByTicketIdAsync(String ticketId) {
+        if (dynamoDbAsyncClient == null) {
+            return Mono.fromRunnable(() -> deleteByTicketId(ticketId));
+        }
+        return Mono.fromFuture(() -> dynamoDbAsyncClient.deleteItem(DeleteItemRequest.builder()
+                        .tableName(tableName)
+                        .key(Map.of("ticketId", AttributeValue.builder().s(ticketId).build()))
+                        .build()))
+                .doOnNext(r -> log.info("Deleted ticket {} from table {}", ticketId, tableName))
+                .onErrorResume(e -> {
+                    log.error("Failed to delete ticket {} from table {}", ticketId, tableName, e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
     // Scan all active tickets (remainingMinutes > 0)
     public List<TicketEta> findAllActive() {
         if (dynamoDbClient == null) {
@@ -104,6 +344,365 @@ public class TicketEtaRepository {
         }
     }
 
+    // Atomically flips notificationSent false -> true; only the caller that wins should notify.
+    // Present with the row's new version when this caller won the claim.
+    public OptionalLong claimNotification(String ticketId) {
+        if (dynamoDbClient == null) {
+            log.warn("DynamoDB client is null, allowing notification for ticket {}", ticketId);
+            return OptionalLong.of(0);
+        }
+        Timer.Sample sample = Timer.start();
+        try {
+            UpdateItemResponse resp = dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(tableName)
+                    .key(Map.of("ticketId", AttributeValue.builder().s(ticketId).build()))
+                    .updateExpression("SET notificationSent = :true, #status = :notified ADD version :one")
+                    // A ticket served or cancelled meanwhile (possibly through another replica) is not notified
+                    .conditionExpression("attribute_exists(ticketId) AND "
+                            + "(attribute_not_exists(notificationSent) OR notificationSent = :false) AND "
+                            + "NOT #status IN (:completed, :cancelled)")
+                    .expressionAttributeNames(Map.of("#status", "status"))
+                    .expressionAttributeValues(Map.of(
+                            ":true", AttributeValue.builder().bool(true).build(),
+                            ":false", AttributeValue.builder().bool(false).build(),
+                            ":notified", AttributeValue.builder().s(TicketEta.TicketStatus.NOTIFIED.name()).build(),
+                            ":completed", AttributeValue.builder().s(TicketEta.TicketStatus.COMPLETED.name()).build(),
+                            ":cancelled", AttributeValue.builder().s(TicketEta.TicketStatus.CANCELLED.name()).build(),
+                            ":one", AttributeValue.builder().n("1").build()
+                    ))
+                    .returnValues(ReturnValue.UPDATED_NEW)
+                    .build());
+            return OptionalLong.of(Long.parseLong(resp.attributes().get("version").n()));
+        } catch (ConditionalCheckFailedException e) {
+            log.debug("Notification for ticket {} already claimed", ticketId);
+            return OptionalLong.empty();
+        } catch (Exception e) {
+            log.error("Failed to claim notification for ticket {} in table {}", ticketId, tableName, e);
+            throw new RuntimeException("Failed to claim notification", e);
+        } finally {
+            sample.stop(claimTimer);
+        }
+    }
+
+    // Finishes the row of a ticket this replica does not hold in memory, unless it is already finished
+    // or was never tracked. Failures are thrown so the queue event is redelivered.
+    public FinishOutcome finish(String ticketId, TicketEta.TicketStatus status, Instant now, long expiresAt) {
+        if (dynamoDbClient == null) {
+            log.warn("DynamoDB client is null, cannot finish ticket {}", ticketId);
+            return FinishOutcome.NOT_FOUND;
+        }
+        try {
+            dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(tableName)
+                    .key(Map.of("ticketId", AttributeValue.builder().s(ticketId).build()))
+                    .updateExpression("SET #status = :status, remainingMinutes = :zero, updatedAt = :now, "
+                            + "expiresAt = :expiresAt ADD version :one")
+                    .conditionExpression("attribute_exists(ticketId) AND NOT #status IN (:completed, :cancelled)")
+                    .expressionAttributeNames(Map.of("#status", "status"))
+                    .expressionAttributeValues(Map.of(
+                            ":status", AttributeValue.builder().s(status.name()).build(),
+                            ":zero", AttributeValue.builder().n("0").build(),
+                            ":now", AttributeValue.builder().n(String.valueOf(now.toEpochMilli())).build(),
+                            ":expiresAt", AttributeValue.builder().n(String.valueOf(expiresAt)).build(),
+                            ":completed", AttributeValue.builder().s(TicketEta.TicketStatus.COMPLETED.name()).build(),
+                            ":cancelled", AttributeValue.builder().s(TicketEta.TicketStatus.CANCELLED.name()).build(),
+                            ":one", AttributeValue.builder().n("1").build()
+                    ))
+                    .returnValuesOnConditionCheckFailure(ReturnValuesOnConditionCheckFailure.ALL_OLD)
+                    .build());
+            return FinishOutcome.APPLIED;
+        } catch (ConditionalCheckFailedException e) {
+            return e.hasItem() && !e.item().isEmpty() ? FinishOutcome.ALREADY_FINISHED : FinishOutcome.NOT_FOUND;
+        } catch (Exception e) {
+            log.error("Failed to finish ticket {} in table {}", ticketId, tableName, e);
+            throw new RuntimeException("Failed to finish ticket", e);
+        }
+    }
+
+    // Active tickets of one scheduler partition, through the etaPartition GSI. While the index is missing
+    // or still backfilling the table is scanned for the partition instead.
+    public List<TicketEta> findActiveInPartition(int partition) {
+        if (dynamoDbClient == null) {
+            log.warn("DynamoDB client is null, returning empty active list");
+            return Collections.emptyList();
+        }
+        Map<String, AttributeValue> values = Map.of(
+                ":partition", AttributeValue.builder().n(String.valueOf(partition)).build(),
+                ":zero", AttributeValue.builder().n("0").build());
+        try {
+            List<TicketEta> result = new ArrayList<>();
+            Map<String, AttributeValue> startKey = null;
+            do {
+                QueryResponse resp = dynamoDbClient.query(QueryRequest.builder()
+                        .tableName(tableName)
+                        .indexName(PARTITION_INDEX)
+                        .keyConditionExpression("etaPartition = :partition")
+                        .filterExpression("remainingMinutes > :zero")
+                        .expressionAttributeValues(values)
+                        .exclusiveStartKey(startKey)
+                        .build());
+                resp.items().forEach(item -> result.add(fromItem(item)));
+                startKey = resp.hasLastEvaluatedKey() && !resp.lastEvaluatedKey().isEmpty() ? resp.lastEvaluatedKey() : null;
+            } while (startKey != null);
+            return result;
+        } catch (Exception e) {
+            log.warn("Index {} unavailable on table {} ({}), scanning for partition {}",
+                    PARTITION_INDEX, tableName, e.getMessage(), partition);
+        }
+        try {
+            List<TicketEta> result = new ArrayList<>();
+            Map<String, AttributeValue> startKey = null;
+            do {
+                ScanResponse resp = dynamoDbClient.scan(ScanRequest.builder()
+                        .tableName(tableName)
+                        .filterExpression("etaPartition = :partition AND remainingMinutes > :zero")
+                        .expressionAttributeValues(values)
+                        .exclusiveStartKey(startKey)
+                        .build());
+                resp.items().forEach(item -> result.add(fromItem(item)));
+                startKey = resp.hasLastEvaluatedKey() && !resp.lastEvaluatedKey().isEmpty() ? resp.lastEvaluatedKey() : null;
+            } while (startKey != null);
+            return result;
+        } catch (Exception e) {
+            log.error("Failed to read partition {} of table {}", partition, tableName, e);
+            return Collections.emptyList();
+        }
+    }
+
+    // Rows written before etaPartition existed are invisible to etaPartition-index, so a partition load never
+    // sees them. Gives the active ones their partition; conditional, so replicas running it at once do no harm.
+    public int backfillPartitions() {
+        if (dynamoDbClient == null) return 0;
+        int updated = 0;
+        try {
+            Map<String, AttributeValue> startKey = null;
+            do {
+                ScanResponse resp = dynamoDbClient.scan(ScanRequest.builder()
+                        .tableName(tableName)
+                        .projectionExpression("ticketId")
+                        .filterExpression("attribute_not_exists(etaPartition) AND remainingMinutes > :zero")
+                        .expressionAttributeValues(Map.of(":zero", AttributeValue.builder().n("0").build()))
+                        .exclusiveStartKey(startKey)
+                        .build());
+                for (Map<String, AttributeValue> item : resp.items()) {
+                    String ticketId = item.get("ticketId").s();
+                    try {
+                        dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                                .tableName(tableName)
+                                .key(Map.of("ticketId", AttributeValue.builder().s(ticketId).build()))
+                                .updateExpression("SET etaPartition = :partition")
+                                .conditionExpression("attribute_exists(ticketId) AND attribute_not_exists(etaPartition)")
+                                .expressionAttributeValues(Map.of(":partition", AttributeValue.builder()
+                                        .n(String.valueOf(partitionOf(ticketId, partitionCount))).build()))
+                                .build());
+                        updated++;
+                    } catch (ConditionalCheckFailedException e) {
+                        log.debug("Ticket {} already has its partition", ticketId);
+                    }
+                }
+                startKey = resp.hasLastEvaluatedKey() && !resp.lastEvaluatedKey().isEmpty() ? resp.lastEvaluatedKey() : null;
+            } while (startKey != null);
+        } catch (Exception e) {
+            log.error("Failed to backfill etaPartition on table {}", tableName, e);
+        }
+        return updated;
+    }
+
+    // Conditional writes, since BatchWriteItem takes no conditions. A write lands only while the row still has
+    // the version the caller last saw (none for a row never written with one) and stores version + 1, so a
+    // replica holding a stale copy cannot overwrite a newer row. Tickets of one queue go out together in
+    // TransactWriteItems of up to 100; a lone ticket is a plain PutItem, as a transaction costs twice the WCU.
+    public Map<String, WriteOutcome> writeConditionally(Collection<TicketEta> tickets) {
+        Map<String, WriteOutcome> outcomes = new ConcurrentHashMap<>();
+        if (dynamoDbClient == null && dynamoDbAsyncClient == null) {
+            tickets.forEach(ticket -> outcomes.put(ticket.getTicketId(), WriteOutcome.WRITTEN));
+            return outcomes;
+        }
+        List<List<TicketEta>> chunks = new ArrayList<>();
+        tickets.stream()
+                .collect(Collectors.groupingBy(ticket -> Objects.toString(ticket.getQueueId(), ""),
+                        LinkedHashMap::new, Collectors.toList()))
+                .values()
+                .forEach(queue -> {
+                    for (int i = 0; i < queue.size(); i += MAX_TRANSACT_ITEMS) {
+                        chunks.add(queue.subList(i, Math.min(i + MAX_TRANSACT_ITEMS, queue.size())));
+                    }
+                });
+        Flux.fromIterable(chunks)
+                .flatMap(chunk -> writeChunk(chunk, outcomes), MAX_CONCURRENT_WRITES)
+                .blockLast();
+        return outcomes;
+    }
+
+    // A transaction with a failed condition is cancelled as a whole: the tickets whose condition failed are
+    // conflicts and the rest is retried without them. Any other failure leaves the whole chunk FAILED.
+    private Mono<Void> writeChunk(List<TicketEta> chunk, Map<String, WriteOutcome> outcomes) {
+        if (chunk.isEmpty()) return Mono.empty();
+        Mono<?> call = chunk.size() == 1 ? conditionalPut(chunk.get(0)) : transactPut(chunk);
+        return call
+                .doOnSuccess(done -> chunk.forEach(ticket -> outcomes.put(ticket.getTicketId(), WriteOutcome.WRITTEN)))
+                .then()
+                .onErrorResume(ConditionalCheckFailedException.class, e -> {
+                    outcomes.put(chunk.get(0).getTicketId(), WriteOutcome.CONFLICT);
+                    return Mono.empty();
+                })
+                .onErrorResume(TransactionCanceledException.class, e -> {
+                    List<CancellationReason> reasons = e.hasCancellationReasons() ? e.cancellationReasons() : List.of();
+                    List<TicketEta> retry = new ArrayList<>();
+                    for (int i = 0; i < chunk.size(); i++) {
+                        if (i < reasons.size() && "ConditionalCheckFailed".equals(reasons.get(i).code())) {
+                            outcomes.put(chunk.get(i).getTicketId(), WriteOutcome.CONFLICT);
+                        } else {
+                            retry.add(chunk.get(i));
+                        }
+                    }
+                    if (retry.size() < chunk.size()) return writeChunk(retry, outcomes);
+                    // Cancelled for another reason, e.g. a concurrent transaction on one of the rows
+                    log.warn("Failed to write {} tickets to table {}: {}", chunk.size(), tableName, e.getMessage());
+                    chunk.forEach(ticket -> outcomes.put(ticket.getTicketId(), WriteOutcome.FAILED));
+                    return Mono.empty();
+                })
+                .onErrorResume(e -> {
+                    log.warn("Failed to write {} tickets to table {}: {}", chunk.size(), tableName, e.getMessage());
+                    chunk.forEach(ticket -> outcomes.put(ticket.getTicketId(), WriteOutcome.FAILED));
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<?> transactPut(List<TicketEta> chunk) {
+        List<TransactWriteItem> items = new ArrayList<>(chunk.size());
+        for (TicketEta ticket : chunk) {
+            Put.Builder put = Put.builder()
+                    .tableName(tableName)
+                    .item(versionedItem(ticket));
+            Long expected = ticket.getVersion();
+            if (expected == null) {
+                put.conditionExpression("attribute_not_exists(version)");
+            } else {
+                put.conditionExpression("version = :expected")
+                        .expressionAttributeValues(Map.of(":expected", AttributeValue.builder().n(String.valueOf(expected)).build()));
+            }
+            items.add(TransactWriteItem.builder().put(put.build()).build());
+        }
+        TransactWriteItemsRequest request = TransactWriteItemsRequest.builder().transactItems(items).build();
+
+        Timer.Sample sample = Timer.start();
+        Mono<?> call = dynamoDbAsyncClient != null
+                ? Mono.fromFuture(() -> dynamoDbAsyncClient.transactWriteItems(request))
+                : Mono.fromCallable(() -> dynamoDbClient.transactWriteItems(request));
+        return call.doFinally(signal -> sample.stop(transactWriteTimer));
+    }
+
+    private Map<String, AttributeValue> versionedItem(TicketEta ticket) {
+        Long expected = ticket.getVersion();
+        return toItem(ticket.toBuilder().version(expected == null ? 1L : expected + 1).build());
+    }
+
+    private Mono<?> conditionalPut(TicketEta ticket) {
+        Long expected = ticket.getVersion();
+        PutItemRequest.Builder put = PutItemRequest.builder()
+                .tableName(tableName)
+                .item(versionedItem(ticket));
+        if (expected == null) {
+            put.conditionExpression("attribute_not_exists(version)");
+        } else {
+            put.conditionExpression("version = :expected")
+                    .expressionAttributeValues(Map.of(":expected", AttributeValue.builder().n(String.valueOf(expected)).build()));
+        }
+        PutItemRequest request = put.build();
+
+        Timer.Sample sample = Timer.start();
+        Mono<?> call = dynamoDbAsyncClient != null
+                ? Mono.fromFuture(() -> dynamoDbAsyncClient.putItem(request))
+                : Mono.fromCallable(() -> dynamoDbClient.putItem(request));
+        return call.doFinally(signal -> sample.stop(conditionalPutTimer));
+    }
+
+    // Puts and deletes in BatchWriteItem chunks of 25, retrying unprocessed items a few times.
+    // Returns the ticketIds that still could not be written so the caller can keep them dirty.
+    public Set<String> batchWrite(Collection<TicketEta> puts, Collection<String> deletes) {
+        Set<String> failed = new HashSet<>();
+        if (dynamoDbClient == null) {
+            return failed;
+        }
+
+        List<WriteRequest> requests = new ArrayList<>(puts.size() + deletes.size());
+        for (TicketEta ticket : puts) {
+            requests.add(WriteRequest.builder()
+                    .putRequest(PutRequest.builder().item(toItem(ticket)).build())
+                    .build());
+        }
+        for (String ticketId : deletes) {
+            requests.add(WriteRequest.builder()
+                    .deleteRequest(DeleteRequest.builder()
+                            .key(Map.of("ticketId", AttributeValue.builder().s(ticketId).build()))
+                            .build())
+                    .build());
+        }
+
+        for (int i = 0; i < requests.size(); i += MAX_BATCH_WRITE) {
+            List<WriteRequest> chunk = requests.subList(i, Math.min(i + MAX_BATCH_WRITE, requests.size()));
+            try {
+                List<WriteRequest> pending = chunk;
+                for (int attempt = 0; !pending.isEmpty() && attempt <= MAX_UNPROCESSED_RETRIES; attempt++) {
+                    if (attempt > 0) Thread.sleep(50L << attempt);
+                    Timer.Sample sample = Timer.start();
+                    BatchWriteItemResponse resp;
+                    try {
+                        resp = dynamoDbClient.batchWriteItem(BatchWriteItemRequest.builder()
+                                .requestItems(Map.of(tableName, pending))
+                                .build());
+                    } finally {
+                        sample.stop(batchWriteTimer);
+                    }
+                    pending = resp.hasUnprocessedItems()
+                            ? resp.unprocessedItems().getOrDefault(tableName, List.of())
+                            : List.of();
+                }
+                pending.forEach(r -> failed.add(ticketIdOf(r)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                chunk.forEach(r -> failed.add(ticketIdOf(r)));
+            } catch (Exception e) {
+                log.error("Failed to batch write {} items to table {}", chunk.size(), tableName, e);
+                chunk.forEach(r -> failed.add(ticketIdOf(r)));
+            }
+        }
+        return failed;
+    }
+
+    private static String ticketIdOf(WriteRequest request) {
+        return request.putRequest() != null
+                ? request.putRequest().item().get("ticketId").s()
+                : request.deleteRequest().key().get("ticketId").s();
+    }
+
+    // For environments without DynamoDB TTL: ids of rows whose expiresAt has passed
+    public List<String> findExpiredTicketIds(long nowEpochSeconds) {
+        if (dynamoDbClient == null) return Collections.emptyList();
+        try {
+            List<String> result = new ArrayList<>();
+            Map<String, AttributeValue> startKey = null;
+            do {
+                ScanResponse resp = dynamoDbClient.scan(ScanRequest.builder()
+                        .tableName(tableName)
+                        .projectionExpression("ticketId")
+                        .filterExpression("expiresAt < :now")
+                        .expressionAttributeValues(Map.of(
+                                ":now", AttributeValue.builder().n(String.valueOf(nowEpochSeconds)).build()
+                        ))
+                        .exclusiveStartKey(startKey)
+                        .build());
+                resp.items().forEach(item -> result.add(item.get("ticketId").s()));
+                startKey = resp.hasLastEvaluatedKey() && !resp.lastEvaluatedKey().isEmpty() ? resp.lastEvaluatedKey() : null;
+            } while (startKey != null);
+            return result;
+        } catch (Exception e) {
+            log.error("Failed to scan expired tickets in table {}", tableName, e);
+            return Collections.emptyList();
+        }
+    }
+
     public void deleteByTicketId(String ticketId) {
         if (dynamoDbClient == null) {
             log.warn("DynamoDB client is null, skip delete for ticket {}", ticketId);
@@ -125,16 +724,87 @@ public class TicketEtaRepository {
         }
     }
 
+    private Timer writeTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("eta.dynamodb.write")
+                .description("DynamoDB write latency for the ticket_eta table")
+                .tag("table", "ticket_eta")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private void ensureTimeToLive() {
+        if (dynamoDbClient == null) return;
+        try {
+            TimeToLiveStatus status = dynamoDbClient.describeTimeToLive(DescribeTimeToLiveRequest.builder()
+                            .tableName(tableName)
+                            .build())
+                    .timeToLiveDescription()
+                    .timeToLiveStatus();
+            if (status == TimeToLiveStatus.ENABLED || status == TimeToLiveStatus.ENABLING) return;
+
+            dynamoDbClient.updateTimeToLive(UpdateTimeToLiveRequest.builder()
+                    .tableName(tableName)
+                    .timeToLiveSpecification(TimeToLiveSpecification.builder()
+                            .attributeName("expiresAt")
+                            .enabled(true)
+                            .build())
+                    .build());
+            log.info("Enabled TTL on expiresAt for table {}", tableName);
+        } catch (Exception e) {
+            log.warn("Could not enable TTL on table {} (possibly local dev): {}", tableName, e.getMessage());
+        }
+    }
+
+    private void ensurePartitionIndex() {
+        if (dynamoDbClient == null) return;
+        try {
+            TableDescription table = dynamoDbClient.describeTable(DescribeTableRequest.builder()
+                    .tableName(tableName)
+                    .build()).table();
+            if (table.hasGlobalSecondaryIndexes()
+                    && table.globalSecondaryIndexes().stream().anyMatch(index -> PARTITION_INDEX.equals(index.indexName()))) {
+                return;
+            }
+
+            CreateGlobalSecondaryIndexAction.Builder index = CreateGlobalSecondaryIndexAction.builder()
+                    .indexName(PARTITION_INDEX)
+                    .keySchema(KeySchemaElement.builder().attributeName("etaPartition").keyType(KeyType.HASH).build())
+                    .projection(Projection.builder().projectionType(ProjectionType.ALL).build());
+            boolean onDemand = table.billingModeSummary() != null
+                    && table.billingModeSummary().billingMode() == BillingMode.PAY_PER_REQUEST;
+            if (!onDemand && table.provisionedThroughput() != null) {
+                index.provisionedThroughput(ProvisionedThroughput.builder()
+                        .readCapacityUnits(table.provisionedThroughput().readCapacityUnits())
+                        .writeCapacityUnits(table.provisionedThroughput().writeCapacityUnits())
+                        .build());
+            }
+            dynamoDbClient.updateTable(UpdateTableRequest.builder()
+                    .tableName(tableName)
+                    .attributeDefinitions(AttributeDefinition.builder()
+                            .attributeName("etaPartition")
+                            .attributeType(ScalarAttributeType.N)
+                            .build())
+                    .globalSecondaryIndexUpdates(GlobalSecondaryIndexUpdate.builder().create(index.build()).build())
+                    .build());
+            log.info("Creating index {} on table {}", PARTITION_INDEX, tableName);
+        } catch (Exception e) {
+            log.warn("Could not ensure index {} on table {} (possibly local dev): {}", PARTITION_INDEX, tableName, e.getMessage());
+        }
+    }
+
     // --- Mapping helpers ---
 
     private Map<String, AttributeValue> toItem(TicketEta t) {
         Map<String, AttributeValue> item = new HashMap<>();
         // Required PK
         item.put("ticketId", AttributeValue.builder().s(t.getTicketId()).build());
+        item.put("etaPartition", AttributeValue.builder().n(String.valueOf(partitionOf(t.getTicketId(), partitionCount))).build());
 
         // Strings
         putIfNotNull(item, "queueId", t.getQueueId());
         putIfNotNull(item, "customerEmail", t.getCustomerEmail());
+        putIfNotNull(item, "customerPhone", t.getCustomerPhone());
 
         // Numbers
         putNumberIfNotNull(item, "remainingMinutes", t.getRemainingMinutes());
@@ -152,6 +822,14 @@ public class TicketEtaRepository {
             item.put("status", AttributeValue.builder().s(t.getStatus().name()).build());
         }
 
+        // TTL (epoch seconds)
+        if (t.getExpiresAt() != null) {
+            item.put("expiresAt", AttributeValue.builder().n(String.valueOf(t.getExpiresAt())).build());
+        }
+        if (t.getVersion() != null) {
+            item.put("version", AttributeValue.builder().n(String.valueOf(t.getVersion())).build());
+        }
+
         return item;
     }
 
@@ -170,12 +848,19 @@ public class TicketEtaRepository {
                 .ticketId(getStr(item, "ticketId"))
                 .queueId(getStr(item, "queueId"))
                 .customerEmail(getStr(item, "customerEmail"))
+                .customerPhone(getStr(item, "customerPhone"))
                 .remainingMinutes(remaining)
                 .originalEtaMinutes(original)
                 .calculatedAt(getInstant(item, "calculatedAt"))
                 .updatedAt(getInstant(item, "updatedAt"))
                 .notificationSent(getBool(item, "notificationSent"))
                 .status(status != null ? status : TicketEta.TicketStatus.WAITING)
+                .expiresAt(item.containsKey("expiresAt") && item.get("expiresAt").n() != null
+                        ? Long.parseLong(item.get("expiresAt").n())
+                        : null)
+                .version(item.containsKey("version") && item.get("version").n() != null
+                        ? Long.parseLong(item.get("version").n())
+                        : null)
                 .build();
     }
 
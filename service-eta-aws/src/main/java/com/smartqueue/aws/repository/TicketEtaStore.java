@@ -0,0 +1,470 @@
+package com.smartqueue.aws.repository;
+
+import com.smartqueue.aws.model.TicketEta;
+import com.smartqueue.aws.service.PartitionLeaseManager;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// Write-behind TicketEta store: the in-memory map holds the tickets of the scheduler partitions this
+// replica leases and absorbs their tracking reads and countdown writes. A partition is loaded when its
+// lease is acquired and checkpointed then evicted when it is given up; tickets of other partitions are
+// read from and created in DynamoDB directly and never cached here, so only the owner counts them down.
+// A ticket created here for another partition is announced to its owner through the lease table, and
+// owners poll those announcements every eta.store.new-ticket-poll-interval-ms.
+// Dirty entries are checkpointed every eta.store.checkpoint-interval-ms, conditional on each ticket's version
+// and batched per queue, so a stale copy never overwrites a newer row (a conflict is re-read and merged).
+// At most one interval of updates is lost on a crash. Entries are copied in and out so callers never
+// share mutable state. Finished tickets are not deleted: they get an expiresAt and DynamoDB TTL removes
+// them for free; the sweeper only evicts them from memory (and deletes them itself where TTL is unavailable).
+@Slf4j
+@Component
+public class TicketEtaStore implements PartitionLeaseManager.Listener {
+
+    private final TicketEtaRepository ticketEtaRepository;
+    private final PartitionLeaseManager partitionLeaseManager;
+    private final boolean reloadOnStartup;
+    private final boolean ttlEnabled;
+    private final long finishedRetentionSeconds;
+    private final long abandonedGraceSeconds;
+
+    private final Map<String, TicketEta> entries = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final Set<String> deleted = ConcurrentHashMap.newKeySet();
+    // Notified with a copy whenever a tracked ticket is added or its countdown state changes
+    private final List<Consumer<TicketEta>> listeners = new CopyOnWriteArrayList<>();
+
+    public TicketEtaStore(TicketEtaRepository ticketEtaRepository,
+                          PartitionLeaseManager partitionLeaseManager,
+                          @Value("${eta.store.reload-on-startup:true}") boolean reloadOnStartup,
+                          @Value("${aws.dynamodb.ttl-enabled:true}") boolean ttlEnabled,
+                          @Value("${eta.store.finished-retention-minutes:30}") long finishedRetentionMinutes,
+                          @Value("${eta.store.abandoned-grace-minutes:120}") long abandonedGraceMinutes,
+                          MeterRegistry meterRegistry) {
+        this.ticketEtaRepository = ticketEtaRepository;
+        this.partitionLeaseManager = partitionLeaseManager;
+        this.reloadOnStartup = reloadOnStartup;
+        this.ttlEnabled = ttlEnabled;
+        this.finishedRetentionSeconds = finishedRetentionMinutes * 60;
+        this.abandonedGraceSeconds = abandonedGraceMinutes * 60;
+        Gauge.builder("eta.store.size", entries, Map::size)
+                .description("Tickets held in the write-behind store")
+                .register(meterRegistry);
+        Gauge.builder("eta.store.dirty", this, TicketEtaStore::dirtyCount)
+                .description("Ticket writes and deletes waiting for the next checkpoint")
+                .register(meterRegistry);
+    }
+
+    // Partitions already leased are replayed as acquired (all of them when leasing is off)
+    @PostConstruct
+    public void start() {
+        partitionLeaseManager.addListener(this);
+    }
+
+    @Override
+    public void acquired(int partition) {
+        if (!reloadOnStartup) return;
+        partitionLeaseManager.clearNewTickets(partition);
+        List<TicketEta> active = ticketEtaRepository.findActiveInPartition(partition);
+        int loaded = 0;
+        for (TicketEta ticket : active) {
+            if (deleted.contains(ticket.getTicketId())) continue;
+            if (entries.putIfAbsent(ticket.getTicketId(), ticket) == null) {
+                changed(ticket);
+                loaded++;
+            }
+        }
+        log.info("Ticket ETA store loaded {} active tickets of partition {}", loaded, partition);
+    }
+
+    // Hand-off: persist what we changed, then forget the partition so the next owner's copy is the only one
+    @Override
+    public void released(int partition) {
+        checkpoint();
+        int evicted = 0;
+        for (String ticketId : List.copyOf(entries.keySet())) {
+            if (partitionLeaseManager.partitionOf(ticketId) != partition) continue;
+            entries.remove(ticketId);
+            if (!dirty.remove(ticketId)) evicted++;
+            else log.warn("Ticket {} handed off with an unsaved change", ticketId);
+        }
+        log.info("Ticket ETA store evicted {} tickets of partition {}", evicted, partition);
+    }
+
+    // Listeners registered after startup get the loaded tickets replayed to them
+    public void addListener(Consumer<TicketEta> listener) {
+        listeners.add(listener);
+        entries.values().forEach(ticket -> listener.accept(ticket.toBuilder().build()));
+    }
+
+    private void changed(TicketEta ticket) {
+        for (Consumer<TicketEta> listener : listeners) {
+            try {
+                listener.accept(ticket.toBuilder().build());
+            } catch (Exception e) {
+                log.warn("Ticket store listener failed for ticket {}", ticket.getTicketId(), e);
+            }
+        }
+    }
+
+    // Memory first; a miss falls through to DynamoDB once and caches the row. Tickets of partitions
+    // leased elsewhere are read from the table every time and answered with the countdown projected
+    // from the row, without caching them: their owner keeps the row current.
+    public Mono<Optional<TicketEta>> findByTicketId(String ticketId) {
+        if (!partitionLeaseManager.ownsTicket(ticketId)) {
+            return ticketEtaRepository.findByTicketIdAsync(ticketId)
+                    .map(found -> found.map(ticket -> advance(ticket, Instant.now())));
+        }
+        TicketEta cached = entries.get(ticketId);
+        if (cached != null) {
+            return Mono.just(Optional.of(cached.toBuilder().build()));
+        }
+        if (deleted.contains(ticketId)) {
+            return Mono.just(Optional.empty());
+        }
+        return ticketEtaRepository.findByTicketIdAsync(ticketId)
+                .map(found -> found.map(ticket -> {
+                    if (entries.putIfAbsent(ticketId, ticket) == null) changed(ticket);
+                    return ticket.toBuilder().build();
+                }));
+    }
+
+    public TicketEta save(TicketEta ticket) {
+        entries.put(ticket.getTicketId(), ticket.toBuilder().build());
+        deleted.remove(ticket.getTicketId());
+        dirty.add(ticket.getTicketId());
+        changed(ticket);
+        return ticket;
+    }
+
+    // Atomic create: concurrent trackers of the same ticket on this replica meet in putIfAbsent,
+    // across replicas in the conditional put. Everyone gets the winner's state back.
+    // A ticket of a partition leased elsewhere is only written, then announced to its owner.
+    public Mono<TicketEta> createIfAbsent(TicketEta ticket) {
+        String ticketId = ticket.getTicketId();
+        if (ticket.getExpiresAt() == null) {
+            // Safety net for tickets that stop being polled and never reach zero
+            int remaining = ticket.getRemainingMinutes() != null ? ticket.getRemainingMinutes() : 0;
+            ticket.setExpiresAt(Instant.now().getEpochSecond() + remaining * 60L + abandonedGraceSeconds);
+        }
+        ticket.setVersion(1L);
+        if (!partitionLeaseManager.ownsTicket(ticketId)) {
+            return ticketEtaRepository.createIfAbsentAsync(ticket)
+                    .flatMap(existing -> existing.isPresent()
+                            ? Mono.just(advance(existing.get(), Instant.now()))
+                            : announce(ticketId).thenReturn(ticket));
+        }
+        TicketEta local = entries.putIfAbsent(ticketId, ticket.toBuilder().build());
+        if (local != null) {
+            return Mono.just(local.toBuilder().build());
+        }
+        deleted.remove(ticketId);
+
+        return ticketEtaRepository.createIfAbsentAsync(ticket)
+                .map(existing -> {
+                    if (existing.isEmpty()) {
+                        changed(ticket);
+                        return ticket;
+                    }
+                    entries.put(ticketId, existing.get());
+                    changed(existing.get());
+                    return existing.get().toBuilder().build();
+                })
+                .onErrorResume(e -> {
+                    // Keep the ticket and let the next checkpoint persist it; the create may still have landed
+                    entries.computeIfPresent(ticketId, (id, current) -> current.toBuilder().version(null).build());
+                    ticket.setVersion(null);
+                    dirty.add(ticketId);
+                    changed(ticket);
+                    return Mono.just(ticket);
+                });
+    }
+
+    // Best effort: a lost announcement only means the owner finds the ticket at its next reconcile
+    private Mono<Void> announce(String ticketId) {
+        return Mono.fromRunnable(() -> partitionLeaseManager.announceNewTicket(ticketId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(e -> {
+                    log.warn("Could not announce new ticket {} to its owner: {}", ticketId, e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    // Loads the tickets other replicas created in our partitions; merge schedules them through the listeners
+    @Scheduled(fixedDelayString = "${eta.store.new-ticket-poll-interval-ms:1000}")
+    public void pollNewTickets() {
+        try {
+            for (Map.Entry<Integer, Set<String>> inbox : partitionLeaseManager.newTickets().entrySet()) {
+                List<TicketEta> adopted = merge(ticketEtaRepository.findByTicketIds(inbox.getValue()));
+                partitionLeaseManager.acknowledgeNewTickets(inbox.getKey(), inbox.getValue());
+                log.debug("Loaded {} new tickets of partition {}", adopted.size(), inbox.getKey());
+            }
+        } catch (Exception e) {
+            log.warn("Polling new tickets failed: {}", e.getMessage());
+        }
+    }
+
+    // Applies the elapsed whole minutes to the stored entry atomically (never clobbers fields written
+    // by a concurrent caller). Reaching zero marks the ticket READY and starts its TTL.
+    public Optional<TicketEta> countDown(String ticketId, Instant now) {
+        TicketEta[] result = new TicketEta[1];
+        boolean[] changed = new boolean[1];
+        entries.computeIfPresent(ticketId, (id, current) -> {
+            result[0] = advance(current, now);
+            changed[0] = result[0] != current;
+            return result[0];
+        });
+
+        if (result[0] == null) return Optional.empty();
+        if (changed[0]) {
+            dirty.add(ticketId);
+            changed(result[0]);
+        }
+        return Optional.of(result[0].toBuilder().build());
+    }
+
+    // The ticket after the whole minutes elapsed since updatedAt; the same instance if none elapsed
+    private TicketEta advance(TicketEta current, Instant now) {
+        long minutesPassed = current.getUpdatedAt() != null ? Duration.between(current.getUpdatedAt(), now).toMinutes() : 0;
+        // Finished tickets (READY, served, cancelled) keep their state
+        if (minutesPassed < 1 || current.getRemainingMinutes() == null || current.getRemainingMinutes() <= 0) {
+            return current;
+        }
+        TicketEta next = current.toBuilder()
+                .remainingMinutes(Math.max(0, current.getRemainingMinutes() - (int) minutesPassed))
+                .updatedAt(now)
+                .build();
+        if (next.getRemainingMinutes() == 0) {
+            next.setStatus(TicketEta.TicketStatus.READY);
+            next.setExpiresAt(now.getEpochSecond() + finishedRetentionSeconds);
+        }
+        return next;
+    }
+
+    // claimedVersion is the row version the notification claim wrote, if this replica won it
+    public void markNotified(String ticketId, Long claimedVersion) {
+        TicketEta updated = entries.computeIfPresent(ticketId, (id, current) -> current.toBuilder()
+                .notificationSent(true)
+                .status(TicketEta.TicketStatus.NOTIFIED)
+                .version(claimedVersion != null && current.getVersion() != null
+                        && claimedVersion == current.getVersion() + 1 ? claimedVersion : current.getVersion())
+                .build());
+        if (updated != null) {
+            dirty.add(ticketId);
+            changed(updated);
+        }
+    }
+
+    // The ticket left the queue (served or cancelled): stop its countdown and let TTL retire it.
+    // Tickets not held here (another replica's partition, or not loaded) are finished in DynamoDB
+    // directly; a failed write is thrown so the event is redelivered. Idempotent, so redelivered
+    // queue events are harmless.
+    public TicketEtaRepository.FinishOutcome finish(String ticketId, TicketEta.TicketStatus status, Instant now) {
+        long expiresAt = now.getEpochSecond() + finishedRetentionSeconds;
+        if (partitionLeaseManager.ownsTicket(ticketId)) {
+            boolean[] held = new boolean[1];
+            TicketEta[] updated = new TicketEta[1];
+            entries.computeIfPresent(ticketId, (id, current) -> {
+                held[0] = true;
+                if (current.isFinished()) return current;
+                updated[0] = current.toBuilder()
+                        .status(status)
+                        .remainingMinutes(0)
+                        .updatedAt(now)
+                        .expiresAt(expiresAt)
+                        .build();
+                return updated[0];
+            });
+            if (updated[0] != null) {
+                dirty.add(ticketId);
+                changed(updated[0]);
+                return TicketEtaRepository.FinishOutcome.APPLIED;
+            }
+            if (held[0]) return TicketEtaRepository.FinishOutcome.ALREADY_FINISHED;
+            if (deleted.contains(ticketId)) return TicketEtaRepository.FinishOutcome.NOT_FOUND;
+        }
+        return ticketEtaRepository.finish(ticketId, status, now, expiresAt);
+    }
+
+    public void delete(String ticketId) {
+        entries.remove(ticketId);
+        dirty.remove(ticketId);
+        deleted.add(ticketId);
+    }
+
+    // Rows read from our leased partitions: adopt new ones and rows another replica wrote since our
+    // copy (a newer version) unless we have an unsaved change of our own, which the checkpoint merges
+    public List<TicketEta> merge(List<TicketEta> scanned) {
+        List<TicketEta> result = new ArrayList<>(scanned.size());
+        for (TicketEta ticket : scanned) {
+            String ticketId = ticket.getTicketId();
+            if (deleted.contains(ticketId) || !partitionLeaseManager.ownsTicket(ticketId)) continue;
+            TicketEta current = entries.compute(ticketId, (id, ours) ->
+                    ours == null || (!dirty.contains(id) && isNewer(ticket, ours)) ? ticket : ours);
+            if (current == ticket) changed(ticket);
+            result.add(current.toBuilder().build());
+        }
+        return result;
+    }
+
+    private static boolean isNewer(TicketEta row, TicketEta ours) {
+        return row.getVersion() != null && (ours.getVersion() == null || row.getVersion() > ours.getVersion());
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int dirtyCount() {
+        return dirty.size() + deleted.size();
+    }
+
+    @Scheduled(fixedDelayString = "${eta.store.checkpoint-interval-ms:5000}")
+    public synchronized void checkpoint() {
+        if (dirty.isEmpty() && deleted.isEmpty()) return;
+
+        List<String> deletes = new ArrayList<>();
+        for (String ticketId : List.copyOf(deleted)) {
+            deleted.remove(ticketId);
+            deletes.add(ticketId);
+        }
+        // A pending delete wins over a write of the same ticket
+        Set<String> deleteIds = Set.copyOf(deletes);
+        Map<String, TicketEta> puts = new LinkedHashMap<>();
+        for (String ticketId : List.copyOf(dirty)) {
+            dirty.remove(ticketId);
+            TicketEta ticket = entries.get(ticketId);
+            if (ticket != null && !deleteIds.contains(ticketId)) puts.put(ticketId, ticket.toBuilder().build());
+        }
+
+        int pending = 0;
+        int conflicts = 0;
+        Map<String, TicketEtaRepository.WriteOutcome> outcomes = ticketEtaRepository.writeConditionally(puts.values());
+        for (TicketEta written : puts.values()) {
+            String ticketId = written.getTicketId();
+            switch (outcomes.getOrDefault(ticketId, TicketEtaRepository.WriteOutcome.FAILED)) {
+                case WRITTEN:
+                    // Only a copy still based on what we wrote moves to the new version; a newer local
+                    // change is dirty again and will be written on top of it
+                    Long next = written.getVersion() == null ? 1L : written.getVersion() + 1;
+                    entries.computeIfPresent(ticketId, (id, current) -> Objects.equals(current.getVersion(), written.getVersion())
+                            ? current.toBuilder().version(next).build()
+                            : current);
+                    break;
+                case CONFLICT:
+                    conflicts++;
+                    resolveConflict(ticketId);
+                    break;
+                default:
+                    pending++;
+                    if (entries.containsKey(ticketId)) dirty.add(ticketId);
+                    break;
+            }
+        }
+
+        if (!deletes.isEmpty()) {
+            for (String ticketId : ticketEtaRepository.batchWrite(List.of(), deletes)) {
+                pending++;
+                if (!entries.containsKey(ticketId)) deleted.add(ticketId);
+            }
+        }
+
+        if (pending == 0) {
+            log.debug("Checkpointed {} puts ({} conflicts) and {} deletes", puts.size(), conflicts, deletes.size());
+        } else {
+            log.warn("Checkpoint left {} of {} ticket writes pending", pending, puts.size() + deletes.size());
+        }
+    }
+
+    // Someone else wrote the row since our copy was loaded (a queue event finishing the ticket, a
+    // notification claim, or a previous owner's late checkpoint). A finished row wins; otherwise the
+    // countdown furthest along and any notification are kept, and the result goes out with the next checkpoint.
+    private void resolveConflict(String ticketId) {
+        Optional<TicketEta> row;
+        try {
+            row = ticketEtaRepository.findByTicketId(ticketId, true);
+        } catch (Exception e) {
+            log.warn("Could not re-read conflicting ticket {}: {}", ticketId, e.getMessage());
+            if (entries.containsKey(ticketId)) dirty.add(ticketId);
+            return;
+        }
+        TicketEta theirs = row.orElse(null);
+        TicketEta merged = entries.computeIfPresent(ticketId, (id, ours) -> {
+            if (theirs == null) return ours.toBuilder().version(null).build();
+            if (theirs.isFinished()) return theirs;
+            if (ours.isFinished()) return ours.toBuilder().version(theirs.getVersion()).build();
+
+            TicketEta furthest = remaining(theirs) < remaining(ours) ? theirs : ours;
+            TicketEta.TicketStatus status = ours.getStatus() == null
+                    || (theirs.getStatus() != null && theirs.getStatus().compareTo(ours.getStatus()) > 0)
+                    ? theirs.getStatus() : ours.getStatus();
+            return ours.toBuilder()
+                    .version(theirs.getVersion())
+                    .remainingMinutes(furthest.getRemainingMinutes())
+                    .updatedAt(furthest.getUpdatedAt())
+                    .expiresAt(furthest.getExpiresAt())
+                    .status(status)
+                    .notificationSent(Boolean.TRUE.equals(ours.getNotificationSent())
+                            || Boolean.TRUE.equals(theirs.getNotificationSent()))
+                    .build();
+        });
+        if (merged == null) return;
+        if (!merged.equals(theirs)) dirty.add(ticketId);
+        changed(merged);
+    }
+
+    private static int remaining(TicketEta ticket) {
+        return ticket.getRemainingMinutes() != null ? ticket.getRemainingMinutes() : Integer.MAX_VALUE;
+    }
+
+    // Memory eviction of expired entries; the table side is DynamoDB TTL's job unless it is disabled
+    @Scheduled(fixedDelayString = "${eta.store.expiry-sweep-interval-ms:60000}")
+    public void sweepExpired() {
+        long now = Instant.now().getEpochSecond();
+        int evicted = 0;
+        for (Map.Entry<String, TicketEta> entry : entries.entrySet()) {
+            Long expiresAt = entry.getValue().getExpiresAt();
+            if (expiresAt != null && expiresAt <= now && entries.remove(entry.getKey(), entry.getValue())) {
+                dirty.remove(entry.getKey());
+                if (!ttlEnabled) deleted.add(entry.getKey());
+                evicted++;
+            }
+        }
+
+        if (!ttlEnabled) {
+            // Rows finished or abandoned on other replicas
+            for (String ticketId : ticketEtaRepository.findExpiredTicketIds(now)) {
+                if (!entries.containsKey(ticketId)) deleted.add(ticketId);
+            }
+        }
+        if (evicted > 0) {
+            log.debug("Evicted {} expired tickets from the ETA store", evicted);
+        }
+    }
+
+    @PreDestroy
+    public void flush() {
+        checkpoint();
+    }
+}
@@ -0,0 +1,241 @@
+package com.smartqueue.aws.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Time-of-day / day-of-week ETA rules compiled into minute-of-week lookup tables.
+// Rules are plain strings so they can be overridden per queue:
+//   eta.multipliers.rate-rules                    default service-rate rules
+//   eta.multipliers.eta-rules                     default ETA rules
+//   eta.multipliers.queues.<queueId>.rate-rules   per-queue override (same for eta-rules)
+// Rule syntax: "<days>[@HH:mm-HH:mm]=<factor>" separated by ';', where <days> is '*', MON, or MON-FRI.
+// A range ending before it starts (22:00-02:00) runs past midnight into the next day. Matching rules multiply.
+// Rules are compiled once (the defaults at startup, a queue's on its first lookup) and rebuilt when Spring Cloud
+// reports an Environment change; without Spring Cloud nothing changes the Environment at runtime, so changing
+// them needs a restart. The zone offset is refreshed on a timer, for DST.
+@Slf4j
+@Component
+public class EtaMultiplierTable {
+
+    static final int MINUTES_PER_HOUR = 60;
+    static final int MINUTES_PER_DAY = 24 * MINUTES_PER_HOUR;
+    static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+    private static final long MILLIS_PER_MINUTE = 60_000L;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    // 1970-01-01 was a Thursday; slots start on Monday
+    private static final int EPOCH_DAY_OF_WEEK = DayOfWeek.THURSDAY.getValue() - 1;
+
+    private static final String PREFIX = "eta.multipliers.";
+    // Published by Spring Cloud (config refresh, Kubernetes config reload) after it updates the Environment;
+    // matched by name since spring-cloud-context is not a dependency of this service
+    private static final String ENVIRONMENT_CHANGE_EVENT = "org.springframework.cloud.context.environment.EnvironmentChangeEvent";
+
+    private final Environment environment;
+    private final ZoneId zone;
+
+    private final Map<String, Multipliers> byQueue = new ConcurrentHashMap<>();
+    private volatile Multipliers defaults;
+    // Refreshed on a timer so the per-request slot lookup never touches the zone rules
+    private volatile long zoneOffsetMillis;
+
+    public EtaMultiplierTable(Environment environment,
+                              @Value("${eta.multipliers.zone:}") String zoneId) {
+        this.environment = environment;
+        this.zone = zoneId == null || zoneId.isBlank() ? ZoneId.systemDefault() : ZoneId.of(zoneId);
+        this.zoneOffsetMillis = currentOffsetMillis();
+        this.defaults = compile(defaultRateRules(), defaultEtaRules());
+    }
+
+    // Compiled multipliers for one queue; arrays are never mutated after construction
+    public static final class Multipliers {
+        private final String rateSpec;
+        private final String etaSpec;
+        private final double[] rate;
+        private final double[] eta;
+
+        private Multipliers(String rateSpec, String etaSpec, double[] rate, double[] eta) {
+            this.rateSpec = rateSpec;
+            this.etaSpec = etaSpec;
+            this.rate = rate;
+            this.eta = eta;
+        }
+
+        public double rateMultiplier(int slot) {
+            return rate[slot];
+        }
+
+        public double etaFactor(int slot) {
+            return eta[slot];
+        }
+    }
+
+    public Multipliers forQueue(String queueId) {
+        if (queueId == null) return defaults;
+        Multipliers multipliers = byQueue.get(queueId);
+        if (multipliers == null) {
+            multipliers = byQueue.computeIfAbsent(queueId, this::compileForQueue);
+        }
+        return multipliers;
+    }
+
+    // Minute-of-week slot for "now", Monday 00:00 = 0
+    public int currentSlot() {
+        return slotAt(System.currentTimeMillis());
+    }
+
+    public int slotAt(long epochMillis) {
+        long localMillis = epochMillis + zoneOffsetMillis;
+        long epochDay = Math.floorDiv(localMillis, MILLIS_PER_DAY);
+        int dayOfWeek = (int) Math.floorMod(epochDay + EPOCH_DAY_OF_WEEK, 7L);
+        int minuteOfDay = (int) (Math.floorMod(localMillis, MILLIS_PER_DAY) / MILLIS_PER_MINUTE);
+        return dayOfWeek * MINUTES_PER_DAY + minuteOfDay;
+    }
+
+    @EventListener
+    public void onApplicationEvent(ApplicationEvent event) {
+        if (ENVIRONMENT_CHANGE_EVENT.equals(event.getClass().getName())) {
+            reload();
+        }
+    }
+
+    // Recompiles the defaults from the current Environment; queues recompile on their next lookup
+    public void reload() {
+        defaults = compile(defaultRateRules(), defaultEtaRules());
+        byQueue.clear();
+        log.info("Reloaded ETA multiplier rules");
+    }
+
+    @Scheduled(fixedDelayString = "${eta.multipliers.offset-refresh-interval-ms:60000}")
+    public void refreshZoneOffset() {
+        zoneOffsetMillis = currentOffsetMillis();
+    }
+
+    private Multipliers compileForQueue(String queueId) {
+        String rateSpec = queueRateRules(queueId);
+        String etaSpec = queueEtaRules(queueId);
+        Multipliers current = defaults;
+        if (rateSpec.equals(current.rateSpec) && etaSpec.equals(current.etaSpec)) {
+            return current;
+        }
+        return compile(rateSpec, etaSpec);
+    }
+
+    private String defaultRateRules() {
+        // Peak 09-11 and 14-16 x0.7, lunch x0.5, weekend x0.8, evening rush x1.2
+        return environment.getProperty(PREFIX + "rate-rules",
+                "*@09:00-11:00=0.7;*@14:00-16:00=0.7;*@12:00-13:30=0.5;SAT-SUN=0.8;*@18:00-20:00=1.2");
+    }
+
+    private String defaultEtaRules() {
+        // Monday x1.15, Friday x1.1, weekend x0.9, plus a flat 5% buffer
+        return environment.getProperty(PREFIX + "eta-rules", "MON=1.15;FRI=1.1;SAT-SUN=0.9;*=1.05");
+    }
+
+    private String queueRateRules(String queueId) {
+        return environment.getProperty(PREFIX + "queues." + queueId + ".rate-rules", defaultRateRules());
+    }
+
+    private String queueEtaRules(String queueId) {
+        return environment.getProperty(PREFIX + "queues." + queueId + ".eta-rules", defaultEtaRules());
+    }
+
+    private long currentOffsetMillis() {
+        return zone.getRules().getOffset(Instant.now()).getTotalSeconds() * 1000L;
+    }
+
+    private static Multipliers compile(String rateSpec, String etaSpec) {
+        return new Multipliers(rateSpec, etaSpec, compileRules(rateSpec), compileRules(etaSpec));
+    }
+
+    static double[] compileRules(String spec) {
+        double[] table = new double[MINUTES_PER_WEEK];
+        Arrays.fill(table, 1.0);
+        if (spec == null || spec.isBlank()) return table;
+
+        for (String rule : spec.split(";")) {
+            rule = rule.trim();
+            if (rule.isEmpty()) continue;
+            try {
+                applyRule(table, rule);
+            } catch (RuntimeException e) {
+                log.warn("Ignoring invalid ETA multiplier rule '{}': {}", rule, e.getMessage());
+            }
+        }
+        return table;
+    }
+
+    private static void applyRule(double[] table, String rule) {
+        int eq = rule.lastIndexOf('=');
+        if (eq < 0) throw new IllegalArgumentException("missing '=<factor>'");
+        double factor = Double.parseDouble(rule.substring(eq + 1).trim());
+        String selector = rule.substring(0, eq).trim();
+
+        String days = selector;
+        int fromMinute = 0;
+        int toMinute = MINUTES_PER_DAY;
+        int at = selector.indexOf('@');
+        if (at >= 0) {
+            days = selector.substring(0, at).trim();
+            String[] range = selector.substring(at + 1).split("-");
+            if (range.length != 2) throw new IllegalArgumentException("time range must be HH:mm-HH:mm");
+            fromMinute = parseMinute(range[0]);
+            toMinute = parseMinute(range[1]);
+        }
+
+        if (fromMinute == toMinute) throw new IllegalArgumentException("empty time range");
+        // Past midnight: the part after 00:00 belongs to the following day
+        boolean wraps = fromMinute > toMinute;
+
+        int firstDay;
+        int lastDay;
+        if (days.equals("*")) {
+            firstDay = 0;
+            lastDay = 6;
+        } else {
+            String[] dayRange = days.split("-");
+            firstDay = parseDay(dayRange[0]);
+            lastDay = dayRange.length > 1 ? parseDay(dayRange[1]) : firstDay;
+        }
+
+        for (int day = firstDay; ; day = (day + 1) % 7) {
+            int base = day * MINUTES_PER_DAY;
+            for (int minute = fromMinute; minute < (wraps ? MINUTES_PER_DAY : toMinute); minute++) {
+                table[base + minute] *= factor;
+            }
+            if (wraps) {
+                int next = ((day + 1) % 7) * MINUTES_PER_DAY;
+                for (int minute = 0; minute < toMinute; minute++) {
+                    table[next + minute] *= factor;
+                }
+            }
+            if (day == lastDay) break;
+        }
+    }
+
+    private static int parseMinute(String hhmm) {
+        String[] parts = hhmm.trim().split(":");
+        int minute = Integer.parseInt(parts[0]) * 60 + (parts.length > 1 ? Integer.parseInt(parts[1]) : 0);
+        if (minute < 0 || minute > MINUTES_PER_DAY) throw new IllegalArgumentException("invalid time " + hhmm);
+        return minute;
+    }
+
+    private static int parseDay(String day) {
+        String name = day.trim().toUpperCase();
+        for (DayOfWeek dow : DayOfWeek.values()) {
+            if (dow.name().startsWith(name) && name.length() >= 3) return dow.getValue() - 1;
+        }
+        throw new IllegalArgumentException("invalid day " + day);
+    }
+}
@@ -1,92 +1,364 @@
 package com.smartqueue.aws.service;
 
+import com.smartqueue.aws.config.HotPathLogFilter;
 import com.smartqueue.aws.dto.request.NotificationRequest;
+import com.smartqueue.aws.jfr.OutcomeEvent;
+import com.smartqueue.aws.jfr.SchedulerShardEvent;
 import com.smartqueue.aws.model.TicketEta;
 import com.smartqueue.aws.repository.TicketEtaRepository;
+import com.smartqueue.aws.repository.TicketEtaStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
-import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
-import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
 
 import java.time.Duration;
 import java.time.Instant;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+// Deadline-driven countdown: every tracked ticket sits in a DelayQueue at the instant it next needs
+// attention (crossing the notification threshold, then reaching zero). The worker sleeps until the
+// earliest deadline and is woken early whenever the store reports a new or changed ticket.
+// The periodic reconcile only discovers tickets tracked on other replicas in our leased partitions.
+// Each drained batch is split by queueId across a bounded pool (a queue's tickets stay in order on one
+// thread); work still pending when the batch deadline passes is carried over to the next wake-up.
+// Only tickets of leased partitions are scheduled, and ownership is checked again before each countdown,
+// so a ticket whose lease moved is dropped here and picked up by its new owner.
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class EtaSchedulerService {
+public class EtaSchedulerService implements PartitionLeaseManager.Listener {
+
+    private static final long MILLIS_PER_MINUTE = 60_000L;
 
     private final TicketEtaRepository ticketEtaRepository;
+    private final TicketEtaStore ticketEtaStore;
     private final NotificationService notificationService;
+    private final PartitionLeaseManager partitionLeaseManager;
+    private final MeterRegistry meterRegistry;
 
     @Value("${eta.notification.threshold-minutes:2}")
     private int notificationThresholdMinutes;
 
-    // Direct deletion support
-    private final DynamoDbClient dynamoDbClient;
-    @Value("${aws.dynamodb.table-prefix:smartqueue-}")
-    private String tablePrefix;
+    @Value("${eta.scheduler.enabled:true}")
+    private boolean enabled;
+
+    @Value("${eta.scheduler.min-batch-size:16}")
+    private int minBatchSize;
+
+    @Value("${eta.scheduler.max-batch-size:1024}")
+    private int maxBatchSize;
+
+    @Value("${eta.scheduler.worker-threads:0}")
+    private int workerThreads;
+
+    @Value("${eta.scheduler.batch-deadline-ms:5000}")
+    private long batchDeadlineMs;
+
+    private final DelayQueue<DueTicket> dueQueue = new DelayQueue<>();
+    // ticketId -> deadline currently queued; older queue entries for the same ticket are skipped
+    private final Map<String, Long> deadlines = new ConcurrentHashMap<>();
+
+    private Thread worker;
+    private ThreadPoolExecutor shardExecutor;
+    private volatile boolean running;
+
+    private Timer reconcileTimer;
+    private Timer lagTimer;
+    private DistributionSummary batchSizeSummary;
+    private Counter processedCounter;
+    private Counter carriedOverCounter;
+
+    private record DueTicket(String ticketId, String queueId, long dueAtMillis) implements Delayed {
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueAtMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueAtMillis, ((DueTicket) other).dueAtMillis);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        reconcileTimer = Timer.builder("eta.scheduler.reconcile.duration")
+                .description("Time to scan and merge the leased partitions")
+                .register(meterRegistry);
+        lagTimer = Timer.builder("eta.scheduler.lag")
+                .description("Delay between a ticket's deadline and the worker processing it")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        batchSizeSummary = DistributionSummary.builder("eta.scheduler.batch.size")
+                .description("Due tickets drained per worker wake-up")
+                .register(meterRegistry);
+        processedCounter = Counter.builder("eta.scheduler.tickets.processed")
+                .description("Tickets counted down by the scheduler")
+                .register(meterRegistry);
+        carriedOverCounter = Counter.builder("eta.scheduler.tickets.carried-over")
+                .description("Due tickets deferred to the next batch because the batch deadline passed")
+                .register(meterRegistry);
+        Gauge.builder("eta.scheduler.pending", deadlines, Map::size)
+                .description("Tracked tickets waiting for their next deadline")
+                .register(meterRegistry);
+        Gauge.builder("eta.scheduler.queue.size", dueQueue, DelayQueue::size)
+                .description("Entries in the deadline queue, including superseded ones")
+                .register(meterRegistry);
+
+        if (!enabled) {
+            log.info("ETA scheduler disabled");
+            return;
+        }
+        running = true;
+        int threads = workerThreads > 0 ? workerThreads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        // Bounded hand-off; when every shard thread is busy the dispatcher runs the shard itself
+        shardExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 4),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "eta-shard-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        Gauge.builder("eta.scheduler.shard.active", shardExecutor, ThreadPoolExecutor::getActiveCount)
+                .description("Shard threads currently processing a queue's due tickets")
+                .register(meterRegistry);
+
+        worker = new Thread(this::runWorker, "eta-scheduler");
+        worker.setDaemon(true);
+        worker.start();
+        ticketEtaStore.addListener(this::schedule);
+        partitionLeaseManager.addListener(this);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (worker != null) worker.interrupt();
+        if (shardExecutor != null) shardExecutor.shutdownNow();
+    }
+
+    public int getPendingCount() {
+        return deadlines.size();
+    }
+
+    // The store loads the partition's tickets and schedules them through its listener
+    @Override
+    public void acquired(int partition) {
+    }
+
+    // Queued entries of the partition are skipped as superseded once their deadline is gone
+    @Override
+    public void released(int partition) {
+        int dropped = 0;
+        for (String ticketId : List.copyOf(deadlines.keySet())) {
+            if (partitionLeaseManager.partitionOf(ticketId) == partition && deadlines.remove(ticketId) != null) dropped++;
+        }
+        log.info("Dropped {} scheduled tickets of partition {}", dropped, partition);
+    }
+
+    // Store callback: (re)computes the ticket's next deadline; an earlier head wakes the worker
+    void schedule(TicketEta ticket) {
+        long dueAt = partitionLeaseManager.ownsTicket(ticket.getTicketId()) ? nextDeadline(ticket) : -1;
+        if (dueAt < 0) {
+            deadlines.remove(ticket.getTicketId());
+            return;
+        }
+        Long previous = deadlines.put(ticket.getTicketId(), dueAt);
+        if (previous == null || previous != dueAt) {
+            dueQueue.offer(new DueTicket(ticket.getTicketId(), ticket.getQueueId(), dueAt));
+        }
+    }
+
+    // remainingMinutes drops by one per whole minute since updatedAt
+    private long nextDeadline(TicketEta ticket) {
+        Integer remaining = ticket.getRemainingMinutes();
+        if (remaining == null || remaining <= 0 || ticket.getUpdatedAt() == null) return -1;
+
+        long base = ticket.getUpdatedAt().toEpochMilli();
+        if (!Boolean.TRUE.equals(ticket.getNotificationSent())) {
+            int minutesUntilThreshold = Math.max(0, remaining - notificationThresholdMinutes);
+            return base + minutesUntilThreshold * MILLIS_PER_MINUTE;
+        }
+        return base + remaining * MILLIS_PER_MINUTE;
+    }
 
-    // Use property for update cadence
-    @Scheduled(fixedRateString = "${eta.scheduler.update-interval-ms:60000}")
-    public void updateRemainingTime() {
-        log.debug("Running scheduled ETA update");
+    private void runWorker() {
+        int batchSize = Math.max(1, minBatchSize);
+        List<DueTicket> batch = new ArrayList<>();
+        while (running && !Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(dueQueue.take());
+                dueQueue.drainTo(batch, batchSize - 1);
+
+                // Grow while the due backlog fills whole batches, shrink back when it does not
+                if (batch.size() >= batchSize) {
+                    batchSize = Math.min(maxBatchSize, batchSize * 2);
+                } else if (batch.size() < batchSize / 4) {
+                    batchSize = Math.max(minBatchSize, batchSize / 2);
+                }
+
+                batchSizeSummary.record(batch.size());
+                processBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("Error in ETA scheduler worker", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void processBatch(List<DueTicket> batch) throws InterruptedException {
+        Map<String, List<DueTicket>> byQueue = new LinkedHashMap<>();
+        for (DueTicket due : batch) {
+            Long current = deadlines.get(due.ticketId());
+            if (current == null || current != due.dueAtMillis()) continue; // superseded
+            if (!deadlines.remove(due.ticketId(), current)) continue;
+            byQueue.computeIfAbsent(String.valueOf(due.queueId()), k -> new ArrayList<>()).add(due);
+        }
+        if (byQueue.isEmpty()) return;
+
+        long deadline = System.currentTimeMillis() + batchDeadlineMs;
+        List<Future<?>> shards = new ArrayList<>(byQueue.size());
+        for (List<DueTicket> shard : byQueue.values()) {
+            shards.add(shardExecutor.submit(() -> processShard(shard, deadline)));
+        }
+        for (Future<?> shard : shards) {
+            try {
+                shard.get(Math.max(0, deadline - System.currentTimeMillis()) + batchDeadlineMs, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                log.error("ETA scheduler shard failed", e.getCause());
+            } catch (TimeoutException e) {
+                // A shard stuck on a slow call; its remaining tickets carry over once it notices the deadline
+                log.warn("ETA scheduler shard still running after the batch deadline");
+            }
+        }
+    }
+
+    private void processShard(List<DueTicket> shard, long deadline) {
+        OutcomeEvent.run(new SchedulerShardEvent(), event -> {
+            event.queueId = shard.get(0).queueId();
+            event.tickets = shard.size();
+            for (DueTicket due : shard) {
+                if (System.currentTimeMillis() > deadline || !running) {
+                    carryOver(due);
+                    event.carriedOver++;
+                    continue;
+                }
+                lagTimer.record(Duration.ofMillis(Math.max(0, System.currentTimeMillis() - due.dueAtMillis())));
+                updateTicketEta(due.ticketId(), due.dueAtMillis());
+            }
+        });
+    }
+
+    // Already past due, so it is first in line at the next wake-up unless the ticket changed meanwhile
+    private void carryOver(DueTicket due) {
+        if (deadlines.putIfAbsent(due.ticketId(), due.dueAtMillis()) == null) {
+            dueQueue.offer(due);
+            carriedOverCounter.increment();
+        }
+    }
+
+    // Discovery only: pulls in tickets tracked by other replicas in the partitions we lease.
+    // Tickets already in the store are scheduled through the store listener, so this does no per-ticket work for them.
+    @Scheduled(fixedDelayString = "${eta.scheduler.reconcile-interval-ms:60000}")
+    public void reconcile() {
+        if (!enabled) return;
+        Timer.Sample sample = Timer.start(meterRegistry);
         try {
-            List<TicketEta> activeTickets = ticketEtaRepository.findAllActive();
-            log.info("Processing {} active tickets", activeTickets.size());
-            for (TicketEta ticket : activeTickets) {
-                updateTicketEta(ticket);
+            List<Integer> partitions = partitionLeaseManager.ownedPartitions();
+
+            // Partition reads are independent, so run them side by side on the shard pool
+            List<Future<List<TicketEta>>> scans = new ArrayList<>(partitions.size());
+            for (Integer partition : partitions) {
+                scans.add(shardExecutor.submit(() -> ticketEtaRepository.findActiveInPartition(partition)));
             }
+
+            int discovered = 0;
+            for (Future<List<TicketEta>> scan : scans) {
+                for (TicketEta ticket : ticketEtaStore.merge(scan.get())) {
+                    if (!deadlines.containsKey(ticket.getTicketId())) {
+                        schedule(ticket);
+                        discovered++;
+                    }
+                }
+            }
+            log.debug("Reconciled partitions {}, {} tickets newly scheduled, {} pending",
+                    partitions, discovered, deadlines.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
-            log.error("Error in scheduled ETA update", e);
+            log.error("Error reconciling tracked tickets", e);
+        } finally {
+            sample.stop(reconcileTimer);
         }
     }
 
-    private void updateTicketEta(TicketEta ticket) {
+    private void updateTicketEta(String ticketId, long dueAtMillis) {
         try {
-            long minutesPassed = Duration.between(ticket.getUpdatedAt(), Instant.now()).toMinutes();
-            if (minutesPassed < 1) return;
-
-            int newRemainingMinutes = Math.max(0, ticket.getRemainingMinutes() - (int) minutesPassed);
-            ticket.setRemainingMinutes(newRemainingMinutes);
-            ticket.setUpdatedAt(Instant.now());
+            // The lease may have moved since the ticket was queued; its new owner counts it down
+            if (!partitionLeaseManager.ownsTicket(ticketId)) {
+                log.debug("Skipping ticket {}: partition no longer leased", ticketId);
+                return;
+            }
+            // Atomic on the store entry, so a concurrent /eta/track poll cannot lose our update or vice versa.
+            // A change re-enters schedule() through the store listener with the next deadline.
+            TicketEta ticket = ticketEtaStore.countDown(ticketId, Instant.now()).orElse(null);
+            if (ticket == null) return;
+            processedCounter.increment();
 
-            log.info("Updated ticket {}: {} minutes remaining", ticket.getTicketId(), newRemainingMinutes);
+            int newRemainingMinutes = ticket.getRemainingMinutes();
+            log.debug("Updated ticket {}: {} minutes remaining", ticketId, newRemainingMinutes);
 
             if (newRemainingMinutes <= notificationThresholdMinutes
                     && newRemainingMinutes > 0
-                    && !ticket.getNotificationSent()) {
-                sendReadyNotification(ticket);
-                ticket.setNotificationSent(true);
-                ticket.setStatus(TicketEta.TicketStatus.NOTIFIED);
-            }
-
-            if (newRemainingMinutes == 0) {
-                ticket.setStatus(TicketEta.TicketStatus.READY);
-                try {
-                    ticketEtaRepository.save(ticket); // persist final state (optional)
-                } catch (Exception ignored) { }
-                deleteTicketRecord(ticket.getTicketId());
-                return; // skip saving after deletion
+                    && !Boolean.TRUE.equals(ticket.getNotificationSent())) {
+                // Conditional flip of notificationSent: a concurrent tracker or replica may already own it
+                OptionalLong claimed = ticketEtaRepository.claimNotification(ticketId);
+                ticketEtaStore.markNotified(ticketId, claimed.isPresent() ? claimed.getAsLong() : null);
+                if (claimed.isPresent()) {
+                    // Due at the threshold deadline; the dispatcher records eta.notification.lag once it is SENT
+                    sendReadyNotification(ticket, Instant.ofEpochMilli(dueAtMillis));
+                }
+            } else if (!deadlines.containsKey(ticketId)) {
+                // Woken before the whole minute elapsed (clock skew); try again at the recomputed deadline
+                schedule(ticket);
             }
 
-            ticketEtaRepository.save(ticket);
-
         } catch (Exception e) {
-            log.error("Error updating ticket ETA: {}", ticket.getTicketId(), e);
+            log.error("Error updating ticket ETA: {}", ticketId, e);
         }
     }
 
-    private void sendReadyNotification(TicketEta ticket) {
+    private void sendReadyNotification(TicketEta ticket, Instant dueAt) {
         try {
-            log.info("Sending ready notification to {} for ticket {}",
+            log.info(HotPathLogFilter.HOT_PATH, "Sending ready notification to {} for ticket {}",
                     ticket.getCustomerEmail(), ticket.getTicketId());
 
             NotificationRequest request = NotificationRequest.builder()
@@ -96,32 +368,19 @@ public class EtaSchedulerService {
                     .message("Pick up time is approaching, please come to the counter to pick up your items")
                     .build();
 
-            notificationService.scheduleNotification(request);
+            notificationService.scheduleNotification(request, dueAt);
 
-        } catch (Exception e) {
-            log.error("Failed to send ready notification for ticket: {}", ticket.getTicketId(), e);
-        }
-    }
+            if (ticket.getCustomerPhone() != null && !ticket.getCustomerPhone().isBlank()) {
+                notificationService.scheduleNotification(NotificationRequest.builder()
+                        .ticketId(ticket.getTicketId())
+                        .channel(NotificationRequest.NotificationChannel.SMS)
+                        .address(ticket.getCustomerPhone())
+                        .message("SmartQueue: you're next! Please come to the counter.")
+                        .build(), dueAt);
+            }
 
-    private void deleteTicketRecord(String ticketId) {
-        if (dynamoDbClient == null) {
-            log.warn("DynamoDB client not available, skip delete for ticket {}", ticketId);
-            return;
-        }
-        String tableName = tablePrefix + "ticket_eta";
-        try {
-            Map<String, AttributeValue> key = new HashMap<>();
-            key.put("ticketId", AttributeValue.builder().s(ticketId).build());
-
-            dynamoDbClient.deleteItem(
-                    DeleteItemRequest.builder()
-                            .tableName(tableName)
-                            .key(key)
-                            .build()
-            );
-            log.info("Deleted ticket {} from table {}", ticketId, tableName);
         } catch (Exception e) {
-            log.error("Failed to delete ticket {} from table {}", ticketId, tableName, e);
+            log.error("Failed to send ready notification for ticket: {}", ticket.getTicketId(), e);
         }
     }
 }
@@ -1,252 +1,323 @@
 package com.smartqueue.aws.service;
 
+import com.smartqueue.aws.config.HotPathLogFilter;
+import com.smartqueue.aws.contract.EtaQuery;
+import com.smartqueue.aws.contract.QueueEvent;
+import com.smartqueue.aws.contract.QueueEventAck;
+import com.smartqueue.aws.contract.RateSnapshot;
+import com.smartqueue.aws.contract.ServedBatchAck;
+import com.smartqueue.aws.contract.ServedWindow;
 import com.smartqueue.aws.dto.response.EtaResponse;
-import com.smartqueue.aws.model.EtaStats;
+import com.smartqueue.aws.jfr.EtaCalculationEvent;
 import com.smartqueue.aws.model.TicketEta;
-import com.smartqueue.aws.repository.EtaStatsRepository;
-import com.smartqueue.aws.repository.TicketEtaRepository;
+import com.smartqueue.aws.repository.NotificationDedupeRepository;
+import com.smartqueue.aws.repository.TicketEtaStore;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
-import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
-import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
-import java.time.DayOfWeek;
 import java.time.Duration;
 import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.LocalTime;
-import java.time.ZoneId;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 @Slf4j
 @Service
 public class EtaService {
 
-    @Autowired(required = false)
-    private EtaStatsRepository etaStatsRepository;
+    // Long queues move a little slower than position / rate suggests
+    private static final int LONG_QUEUE_THRESHOLD = 10;
+    private static final double LONG_QUEUE_FACTOR = 1.1;
+    // No wait-time percentiles are measured; these are the values responses have always carried
+    private static final int P90_WAIT_MINUTES = 10;
+    private static final int P50_WAIT_MINUTES = 5;
 
     @Autowired
-    private TicketEtaRepository ticketEtaRepository;
+    private TicketEtaStore ticketEtaStore;
 
-    @Value("${eta.calculation.ema-alpha:0.3}")
-    private double emaAlpha;
+    @Autowired
+    private NotificationDedupeRepository dedupeRepository;
+
+    // Must outlast the queue service's retry horizon; a batch resent after this is counted again
+    @Value("${eta.stats.batch-dedupe-ttl-minutes:1440}")
+    private long batchDedupeTtlMinutes;
 
     @Value("${eta.calculation.default-service-rate:1.0}")
     private double defaultServiceRate;
 
-    // For direct delete on zero
-    @Autowired(required = false)
-    private DynamoDbClient dynamoDbClient;
+    @Value("${eta.rates.snapshot-ttl-ms:60000}")
+    private long snapshotTtlMs;
 
-    @Value("${aws.dynamodb.table-prefix:smartqueue-}")
-    private String tablePrefix;
+    @Autowired
+    private EtaMultiplierTable multiplierTable;
 
-    public EtaResponse calculateEta(String queueId, String ticketId, Integer position) {
-        log.info("Calculating SMART ETA for queueId: {}, ticketId: {}, position: {}", queueId, ticketId, position);
+    @Autowired
+    private ServiceRateModelService rateModelService;
+
+    public Mono<EtaResponse> calculateEta(String queueId, String ticketId, Integer position) {
+        log.info(HotPathLogFilter.HOT_PATH, "Calculating SMART ETA for queueId: {}, ticketId: {}, position: {}", queueId, ticketId, position);
+
+        return Mono.defer(() -> {
+            EtaCalculationEvent event = new EtaCalculationEvent();
+            event.begin();
+            event.queueId = queueId;
+            event.tickets = 1;
+            return rateModelService.currentRate(queueId)
+                    .map(learnedRate -> {
+                        EtaMultiplierTable.Multipliers multipliers = multiplierTable.forQueue(queueId);
+                        int slot = multiplierTable.currentSlot();
+                        return computeEta(queueId, ticketId, position, learnedRate,
+                                multipliers.rateMultiplier(slot), multipliers.etaFactor(slot));
+                    })
+                    .doOnError(event::failed)
+                    .doFinally(event::finish)
+                    .onErrorResume(e -> {
+                        log.error("Error calculating ETA for queue: {}", queueId, e);
+                        return Mono.just(fallbackEta(queueId, ticketId, position));
+                    });
+        });
+    }
 
-        try {
-            Optional<EtaStats> statsOpt = etaStatsRepository.findLatestByQueueId(queueId);
+    // One rate lookup and one multiplier lookup per distinct queue for the whole batch;
+    // results are emitted queue by queue as soon as that queue's rate is known
+    public Flux<EtaResponse> calculateEtaBatch(List<EtaQuery> queries) {
+        log.info(HotPathLogFilter.HOT_PATH, "Calculating batch ETA for {} tickets", queries.size());
 
-            double baseServiceRate = defaultServiceRate;
-            int p90Wait = 10;
-            int p50Wait = 5;
+        int slot = multiplierTable.currentSlot();
 
-            if (statsOpt.isPresent()) {
-                EtaStats stats = statsOpt.get();
-                baseServiceRate = stats.getEmaServiceRate();
-                p90Wait = stats.getP90WaitTimeMinutes();
-                p50Wait = stats.getP50WaitTimeMinutes();
-            }
+        Map<String, List<EtaQuery>> byQueue = new LinkedHashMap<>();
+        for (EtaQuery query : queries) {
+            byQueue.computeIfAbsent(query.queueId(), k -> new ArrayList<>()).add(query);
+        }
 
-            LocalDateTime now = LocalDateTime.now(ZoneId.systemDefault());
-            double smartServiceRate = calculateSmartServiceRate(baseServiceRate, now);
+        return Flux.fromIterable(byQueue.entrySet())
+                .flatMapSequential(entry -> {
+                    EtaMultiplierTable.Multipliers multipliers = multiplierTable.forQueue(entry.getKey());
+                    double rateMultiplier = multipliers.rateMultiplier(slot);
+                    double etaFactor = multipliers.etaFactor(slot);
+                    EtaCalculationEvent event = new EtaCalculationEvent();
+                    event.begin();
+                    event.queueId = entry.getKey();
+                    event.tickets = entry.getValue().size();
+                    return rateModelService.currentRate(entry.getKey())
+                            .flatMapMany(learnedRate -> Flux.fromIterable(entry.getValue())
+                                    .map(q -> computeEta(q.queueId(), q.ticketId(), q.position(),
+                                            learnedRate, rateMultiplier, etaFactor)))
+                            .doOnError(event::failed)
+                            .doFinally(event::finish);
+                });
+    }
+
+    // Pushed to the queue service so it can answer status requests without a round trip
+    public Mono<RateSnapshot> rateSnapshot(String queueId) {
+        return rateModelService.currentRate(queueId)
+                .map(learnedRate -> {
+                    EtaMultiplierTable.Multipliers multipliers = multiplierTable.forQueue(queueId);
+                    int slot = multiplierTable.currentSlot();
+                    return snapshotOf(queueId, learnedRate, multipliers.rateMultiplier(slot), multipliers.etaFactor(slot));
+                });
+    }
+
+    public Flux<RateSnapshot> rateSnapshots() {
+        return Flux.fromIterable(rateModelService.knownQueues())
+                .flatMap(queueId -> rateSnapshot(queueId)
+                        .onErrorResume(e -> {
+                            log.warn("Skipping rate snapshot for queue {}: {}", queueId, e.getMessage());
+                            return Mono.empty();
+                        }), 16);
+    }
+
+    // learnedRate is the queue's own rate for this hour-of-week (NaN while the bucket is still cold);
+    // when present it already reflects the time-of-day effects, so the rule tables are skipped
+    private RateSnapshot snapshotOf(String queueId, double learnedRate, double rateMultiplier, double etaFactor) {
+        boolean learned = !Double.isNaN(learnedRate);
+        double smartServiceRate = learned
+                ? Math.max(0.1, learnedRate)
+                : calculateSmartServiceRate(defaultServiceRate, rateMultiplier);
+
+        Instant now = Instant.now();
+        return new RateSnapshot(queueId, smartServiceRate, learned ? 1.0 : etaFactor,
+                LONG_QUEUE_THRESHOLD, LONG_QUEUE_FACTOR, P90_WAIT_MINUTES, P50_WAIT_MINUTES, now, now.plusMillis(snapshotTtlMs));
+    }
 
-            double baseEtaMinutes = position / smartServiceRate;
+    private EtaResponse computeEta(String queueId, String ticketId, Integer position, double learnedRate,
+                                   double rateMultiplier, double etaFactor) {
+        try {
+            RateSnapshot snapshot = snapshotOf(queueId, learnedRate, rateMultiplier, etaFactor);
 
-            double finalEta = applySmartFactors(baseEtaMinutes, now, position);
+            double baseEtaMinutes = position / snapshot.serviceRate();
+
+            double finalEta = applySmartFactors(baseEtaMinutes, snapshot, position);
             int estimatedWaitMinutes = Math.max(1, (int) Math.ceil(finalEta));
 
-            log.info("SMART ETA calculated - Queue: {}, Position: {}, Base: {}min, Smart: {}min",
+            log.debug("SMART ETA calculated - Queue: {}, Position: {}, Base: {}min, Smart: {}min",
                     queueId, position, String.format("%.1f", baseEtaMinutes), estimatedWaitMinutes);
 
             return EtaResponse.builder()
                     .queueId(queueId)
                     .ticketId(ticketId)
                     .estimatedWaitMinutes(estimatedWaitMinutes)
-                    .p90WaitMinutes(p90Wait)
-                    .p50WaitMinutes(p50Wait)
-                    .serviceRate(smartServiceRate)
-                    .updatedAt(Instant.now())
+                    .p90WaitMinutes(snapshot.p90WaitMinutes())
+                    .p50WaitMinutes(snapshot.p50WaitMinutes())
+                    .serviceRate(snapshot.serviceRate())
+                    .updatedAt(snapshot.computedAt())
                     .build();
 
         } catch (Exception e) {
             log.error("Error calculating ETA for queue: {}", queueId, e);
-
-            return EtaResponse.builder()
-                    .queueId(queueId)
-                    .ticketId(ticketId)
-                    .estimatedWaitMinutes(position != null ? position * 5 : 10)
-                    .p90WaitMinutes(10)
-                    .p50WaitMinutes(5)
-                    .serviceRate(defaultServiceRate)
-                    .updatedAt(Instant.now())
-                    .build();
+            return fallbackEta(queueId, ticketId, position);
         }
     }
 
-    // Track with live countdown; delete immediately when it reaches 0
-    public EtaResponse calculateAndTrackEta(String queueId, String ticketId, String customerEmail, Integer position) {
-        Optional<TicketEta> existingTicket = ticketEtaRepository.findByTicketId(ticketId);
-
-        if (existingTicket.isPresent()) {
-            TicketEta ticket = existingTicket.get();
-
-            long minutesPassed = Duration.between(ticket.getUpdatedAt(), Instant.now()).toMinutes();
-            int currentRemaining = ticket.getRemainingMinutes();
-
-            if (minutesPassed > 0) {
-                int newRemaining = Math.max(0, currentRemaining - (int) minutesPassed);
-                ticket.setRemainingMinutes(newRemaining);
-                ticket.setUpdatedAt(Instant.now());
-
-                if (newRemaining == 0) {
-                    ticket.setStatus(TicketEta.TicketStatus.READY);
-                    // Persist final state then delete from table
-                    try {
-                        ticketEtaRepository.save(ticket);
-                    } catch (Exception ignored) { }
-                    deleteTicketRecord(ticket.getTicketId());
-                } else {
-                    ticketEtaRepository.save(ticket);
-                }
-                currentRemaining = newRemaining;
-            }
-
-            log.info("Ticket {} tracked, live remainingMinutes: {}", ticketId, currentRemaining);
-
-            return EtaResponse.builder()
-                    .queueId(queueId)
-                    .ticketId(ticketId)
-                    .estimatedWaitMinutes(ticket.getOriginalEtaMinutes())
-                    .remainingMinutes(currentRemaining)
-                    .updatedAt(ticket.getUpdatedAt())
-                    .build();
-        }
-
-        EtaResponse response = calculateEta(queueId, ticketId, position);
-
-        TicketEta ticketEta = TicketEta.builder()
-                .ticketId(ticketId)
+    private EtaResponse fallbackEta(String queueId, String ticketId, Integer position) {
+        return EtaResponse.builder()
                 .queueId(queueId)
-                .customerEmail(customerEmail)
-                .remainingMinutes(response.getEstimatedWaitMinutes())
-                .originalEtaMinutes(response.getEstimatedWaitMinutes())
-                .calculatedAt(Instant.now())
+                .ticketId(ticketId)
+                .estimatedWaitMinutes(position != null ? position * 5 : 10)
+                .p90WaitMinutes(P90_WAIT_MINUTES)
+                .p50WaitMinutes(P50_WAIT_MINUTES)
+                .serviceRate(defaultServiceRate)
                 .updatedAt(Instant.now())
-                .notificationSent(false)
-                .status(TicketEta.TicketStatus.WAITING)
                 .build();
-
-        ticketEtaRepository.save(ticketEta);
-        log.info("New ticket {} tracked with {} minutes ETA", ticketId, response.getEstimatedWaitMinutes());
-
-        response.setRemainingMinutes(response.getEstimatedWaitMinutes());
-        return response;
     }
 
-    public void updateServiceStats(String queueId, int servedCount, int windowSec) {
-        log.info("Updating service stats for queueId: {}, served: {}, window: {}sec", queueId, servedCount, windowSec);
-        try {
-            double serviceRate = (double) servedCount / (windowSec / 60.0);
-            log.info("Service stats updated successfully for queueId: {}", queueId);
-        } catch (Exception e) {
-            log.error("Error updating service stats for queue: {}", queueId, e);
-            throw new RuntimeException("Failed to update service stats", e);
-        }
+    // Track with live countdown; at 0 the ticket is marked READY (COMPLETED/CANCELLED by queue events) and kept
+    // for eta.store.finished-retention-minutes via expiresAt, after which DynamoDB TTL removes it
+    public Mono<EtaResponse> calculateAndTrackEta(String queueId, String ticketId, String customerEmail,
+                                                  String customerPhone, Integer position) {
+        return ticketEtaStore.findByTicketId(ticketId)
+                .flatMap(existingTicket -> existingTicket.isPresent()
+                        ? Mono.just(refreshTrackedTicket(queueId, existingTicket.get()))
+                        : startTracking(queueId, ticketId, customerEmail, customerPhone, position));
     }
 
-    public EtaStats getLatestStats(String queueId) {
-        Optional<EtaStats> statsOpt = etaStatsRepository.findLatestByQueueId(queueId);
-
-        return statsOpt
-                .orElse(EtaStats.builder()
-                        .queueId(queueId)
-                        .emaServiceRate(defaultServiceRate)
-                        .p90WaitTimeMinutes(10)
-                        .p50WaitTimeMinutes(5)
-                        .servedCount(0)
-                        .updatedAt(Instant.now())
-                        .build());
-    }
+    private EtaResponse refreshTrackedTicket(String queueId, TicketEta ticket) {
+        TicketEta current = ticketEtaStore.countDown(ticket.getTicketId(), Instant.now()).orElse(ticket);
 
-    private double calculateSmartServiceRate(double baseRate, LocalDateTime now) {
-        double multiplier = 1.0;
-        if (isPeakHour(now)) multiplier *= 0.7;
-        if (isLunchTime(now)) multiplier *= 0.5;
-        if (isWeekend(now)) multiplier *= 0.8;
-        if (isEveningRush(now)) multiplier *= 1.2;
-        return Math.max(0.1, baseRate * multiplier);
+        log.info(HotPathLogFilter.HOT_PATH, "Ticket {} tracked, live remainingMinutes: {}", current.getTicketId(), current.getRemainingMinutes());
+
+        return EtaResponse.builder()
+                .queueId(queueId)
+                .ticketId(current.getTicketId())
+                .estimatedWaitMinutes(current.getOriginalEtaMinutes())
+                .remainingMinutes(current.getRemainingMinutes())
+                .updatedAt(current.getUpdatedAt())
+                .build();
     }
 
-    private double applySmartFactors(double baseEta, LocalDateTime now, int position) {
-        double eta = baseEta;
-        if (position > 10) eta *= 1.1;
-        DayOfWeek dayOfWeek = now.getDayOfWeek();
-        switch (dayOfWeek) {
-            case MONDAY -> eta *= 1.15;
-            case FRIDAY -> eta *= 1.1;
-            case SATURDAY, SUNDAY -> eta *= 0.9;
-        }
-        eta *= 1.05;
-        return eta;
+    // Concurrent first polls for the same ticket all compute an ETA, but only one creates the
+    // tracking row; the others answer with the winner's countdown
+    private Mono<EtaResponse> startTracking(String queueId, String ticketId, String customerEmail,
+                                            String customerPhone, Integer position) {
+        return calculateEta(queueId, ticketId, position).flatMap(response -> {
+            TicketEta ticketEta = TicketEta.builder()
+                    .ticketId(ticketId)
+                    .queueId(queueId)
+                    .customerEmail(customerEmail)
+                    .customerPhone(customerPhone)
+                    .remainingMinutes(response.getEstimatedWaitMinutes())
+                    .originalEtaMinutes(response.getEstimatedWaitMinutes())
+                    .calculatedAt(Instant.now())
+                    .updatedAt(Instant.now())
+                    .notificationSent(false)
+                    .status(TicketEta.TicketStatus.WAITING)
+                    .build();
+
+            return ticketEtaStore.createIfAbsent(ticketEta).map(tracked -> {
+                if (tracked != ticketEta) {
+                    return refreshTrackedTicket(queueId, tracked);
+                }
+                log.info(HotPathLogFilter.HOT_PATH, "New ticket {} tracked with {} minutes ETA", ticketId, response.getEstimatedWaitMinutes());
+                response.setRemainingMinutes(response.getEstimatedWaitMinutes());
+                return response;
+            });
+        });
     }
 
-    private boolean isPeakHour(LocalDateTime now) {
-        LocalTime time = now.toLocalTime();
-        return (time.isAfter(LocalTime.of(9, 0)) && time.isBefore(LocalTime.of(11, 0))) ||
-                (time.isAfter(LocalTime.of(14, 0)) && time.isBefore(LocalTime.of(16, 0)));
+    public Mono<Void> updateServiceStats(String queueId, int servedCount, int windowSec, Long windowEnd) {
+        log.info(HotPathLogFilter.HOT_PATH, "Updating service stats for queueId: {}, served: {}, window: {}sec", queueId, servedCount, windowSec);
+        return rateModelService.observe(queueId, servedCount, windowSec, windowEnd)
+                .doOnSuccess(v -> log.info(HotPathLogFilter.HOT_PATH, "Service stats updated successfully for queueId: {}", queueId))
+                .onErrorMap(e -> {
+                    log.error("Error updating service stats for queue: {}", queueId, e);
+                    return new RuntimeException("Failed to update service stats", e);
+                });
     }
 
-    private boolean isLunchTime(LocalDateTime now) {
-        LocalTime time = now.toLocalTime();
-        return time.isAfter(LocalTime.of(12, 0)) && time.isBefore(LocalTime.of(13, 30));
+    // Served-count batch from the queue service. A batch id already applied is acknowledged without
+    // counting it again; if applying fails the claim is given back so the sender's retry goes through.
+    // Batches without an id (older senders) are applied as they come.
+    public Mono<ServedBatchAck> applyServedBatch(String batchId, List<ServedWindow> entries) {
+        Mono<ServedBatchAck> apply = Flux.fromIterable(entries)
+                .concatMap(entry -> updateServiceStats(entry.queueId(), entry.count(), entry.windowSec(), entry.windowEnd()))
+                .then(Mono.fromSupplier(() -> new ServedBatchAck(entries.size(), false)));
+        if (batchId == null || batchId.isBlank()) return apply;
+
+        return Mono.fromCallable(() -> dedupeRepository.claimBatch(batchId, Duration.ofMinutes(batchDedupeTtlMinutes)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(first -> {
+                    if (!first) {
+                        log.info("Served-count batch {} already applied, skipping {} entries", batchId, entries.size());
+                        return Mono.just(new ServedBatchAck(0, true));
+                    }
+                    return apply.onErrorResume(e -> Mono.fromRunnable(() -> dedupeRepository.release(
+                                    NotificationDedupeRepository.batchKey(batchId), batchId))
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .then(Mono.error(e)));
+                });
     }
 
-    private boolean isWeekend(LocalDateTime now) {
-        DayOfWeek dayOfWeek = now.getDayOfWeek();
-        return dayOfWeek == DayOfWeek.SATURDAY || dayOfWeek == DayOfWeek.SUNDAY;
+    // Queue events from the queue service's outbox. Served and cancelled tickets stop counting down
+    // so no "you're next" goes out for them; joins need no action yet. Blocking: a ticket not held
+    // in memory is finished in DynamoDB, and a failed write throws so the relay redelivers the batch.
+    public QueueEventAck applyQueueEvents(List<QueueEvent> events) {
+        Instant now = Instant.now();
+        int applied = 0;
+        int alreadyFinished = 0;
+        int notFound = 0;
+        for (QueueEvent event : events) {
+            TicketEta.TicketStatus status;
+            switch (event.type()) {
+                case SERVED:
+                    status = TicketEta.TicketStatus.COMPLETED;
+                    break;
+                case CANCELLED:
+                    status = TicketEta.TicketStatus.CANCELLED;
+                    break;
+                default:
+                    continue;
+            }
+            switch (ticketEtaStore.finish(event.ticketId(), status, now)) {
+                case APPLIED:
+                    applied++;
+                    break;
+                case ALREADY_FINISHED:
+                    alreadyFinished++;
+                    break;
+                default:
+                    notFound++;
+                    break;
+            }
+        }
+        log.debug("Applied {} queue events: {} tickets finished, {} already finished, {} not tracked",
+                events.size(), applied, alreadyFinished, notFound);
+        return new QueueEventAck(events.size(), applied, alreadyFinished, notFound);
     }
 
-    private boolean isEveningRush(LocalDateTime now) {
-        LocalTime time = now.toLocalTime();
-        return time.isAfter(LocalTime.of(18, 0)) && time.isBefore(LocalTime.of(20, 0));
+    private double calculateSmartServiceRate(double baseRate, double rateMultiplier) {
+        return Math.max(0.1, baseRate * rateMultiplier);
     }
 
-    // Direct delete from DynamoDB table smartqueue-<profile>-ticket_eta
-    private void deleteTicketRecord(String ticketId) {
-        if (dynamoDbClient == null) {
-            log.warn("DynamoDB client not available, skip delete for ticket {}", ticketId);
-            return;
-        }
-        String tableName = tablePrefix + "ticket_eta";
-        try {
-            Map<String, AttributeValue> key = new HashMap<>();
-            key.put("ticketId", AttributeValue.builder().s(ticketId).build());
-
-            dynamoDbClient.deleteItem(
-                    DeleteItemRequest.builder()
-                            .tableName(tableName)
-                            .key(key)
-                            .build()
-            );
-            log.info("Deleted ticket {} from table {}", ticketId, tableName);
-        } catch (Exception e) {
-            log.error("Failed to delete ticket {} from table {}", ticketId, tableName, e);
-        }
+    // etaFactor already folds in the day-of-week factor and the flat buffer (see EtaMultiplierTable)
+    private double applySmartFactors(double baseEta, RateSnapshot snapshot, int position) {
+        double eta = baseEta;
+        if (position > snapshot.longQueueThreshold()) eta *= snapshot.longQueueFactor();
+        return eta * snapshot.etaFactor();
     }
 }
@@ -0,0 +1,275 @@
+package com.smartqueue.aws.service;
+
+import com.smartqueue.aws.model.NotificationLog;
+import com.smartqueue.aws.repository.NotificationDedupeRepository;
+import com.smartqueue.aws.repository.NotificationRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+// Bounded notification queue drained by a dedicated worker pool.
+// Callers only pay for an offer(); SES round trips, retries and dead-lettering happen off the request/scheduler thread.
+@Slf4j
+@Component
+public class NotificationDispatcher {
+
+    private final NotificationRepository notificationRepository;
+    private final NotificationDedupeRepository dedupeRepository;
+    private final SesNotificationService sesNotificationService;
+    private final SnsNotificationService snsNotificationService;
+
+    private final BlockingQueue<NotificationLog> queue;
+    private final int workerCount;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long backoffBaseMs;
+    private final long backoffMaxMs;
+    private final SendRateLimiter emailRateLimiter;
+    private final SendRateLimiter smsRateLimiter;
+    private final Timer lagTimer;
+
+    private ExecutorService workers;
+    private ScheduledExecutorService retryScheduler;
+    private volatile boolean running;
+
+    public NotificationDispatcher(NotificationRepository notificationRepository,
+                                  NotificationDedupeRepository dedupeRepository,
+                                  @Autowired(required = false) SesNotificationService sesNotificationService,
+                                  @Autowired(required = false) SnsNotificationService snsNotificationService,
+                                  @Value("${notification.dispatch.queue-capacity:1000}") int queueCapacity,
+                                  @Value("${notification.dispatch.workers:2}") int workerCount,
+                                  @Value("${notification.dispatch.batch-size:10}") int batchSize,
+                                  @Value("${notification.dispatch.max-attempts:5}") int maxAttempts,
+                                  @Value("${notification.dispatch.backoff-base-ms:500}") long backoffBaseMs,
+                                  @Value("${notification.dispatch.backoff-max-ms:30000}") long backoffMaxMs,
+                                  @Value("${notification.dispatch.ses-max-send-rate:14}") double sesMaxSendRate,
+                                  @Value("${notification.dispatch.sns-max-publish-rate:10}") double snsMaxPublishRate,
+                                  MeterRegistry meterRegistry) {
+        this.notificationRepository = notificationRepository;
+        this.dedupeRepository = dedupeRepository;
+        this.sesNotificationService = sesNotificationService;
+        this.snsNotificationService = snsNotificationService;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.workerCount = Math.max(1, workerCount);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffBaseMs = backoffBaseMs;
+        this.backoffMaxMs = backoffMaxMs;
+        this.emailRateLimiter = new SendRateLimiter(sesMaxSendRate);
+        this.smsRateLimiter = new SendRateLimiter(snsMaxPublishRate);
+        Gauge.builder("eta.notification.backlog", queue, BlockingQueue::size)
+                .description("Notifications waiting for a dispatch worker")
+                .register(meterRegistry);
+        this.lagTimer = Timer.builder("eta.notification.lag")
+                .description("Delay between a notification becoming due (scheduledAt) and its delivery")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        workers = Executors.newFixedThreadPool(workerCount, namedThreads("notify-worker-"));
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(namedThreads("notify-retry-"));
+        for (int i = 0; i < workerCount; i++) {
+            workers.submit(this::runWorker);
+        }
+        log.info("Notification dispatcher started with {} workers, capacity {}", workerCount, queue.remainingCapacity());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        retryScheduler.shutdownNow();
+        workers.shutdownNow();
+        try {
+            workers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            log.warn("Notification dispatcher stopped with {} undelivered notifications", queue.size());
+        }
+    }
+
+    public boolean supports(NotificationLog.NotificationType channel) {
+        return switch (channel) {
+            case EMAIL -> sesNotificationService != null;
+            case SMS -> snsNotificationService != null;
+            case PUSH -> false;
+        };
+    }
+
+    // Non-blocking enqueue; false means the queue is full and the caller should shed the notification
+    public boolean enqueue(NotificationLog notification) {
+        boolean accepted = queue.offer(notification);
+        if (!accepted) {
+            log.warn("Notification queue full, rejecting notification {} for ticket {}",
+                    notification.getNotificationId(), notification.getTicketId());
+        }
+        return accepted;
+    }
+
+    public int getBacklogSize() {
+        return queue.size();
+    }
+
+    private void runWorker() {
+        List<NotificationLog> batch = new ArrayList<>(batchSize);
+        while (running && !Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                for (List<NotificationLog> group : coalesceByRecipient(batch)) {
+                    if (group.get(0).getChannel() == NotificationLog.NotificationType.SMS) {
+                        deliverSms(group);
+                    } else {
+                        deliverEmail(group);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("Unexpected error in notification worker", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Pending messages for the same recipient and channel go out as a single send
+    private static Collection<List<NotificationLog>> coalesceByRecipient(List<NotificationLog> batch) {
+        Map<String, List<NotificationLog>> groups = new LinkedHashMap<>();
+        for (NotificationLog notification : batch) {
+            String key = notification.getChannel() + "#" + notification.getRecipient();
+            groups.computeIfAbsent(key, k -> new ArrayList<>(1)).add(notification);
+        }
+        return groups.values();
+    }
+
+    private void deliverEmail(List<NotificationLog> group) throws InterruptedException {
+        NotificationLog first = group.get(0);
+        markAttempt(group);
+        try {
+            emailRateLimiter.acquire();
+            sesNotificationService.sendEmail(first.getRecipient(), first.getSubject(), mergedBody(group));
+            markSent(group);
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            for (NotificationLog notification : group) {
+                handleFailure(notification, e);
+            }
+        }
+    }
+
+    // One Publish per recipient, so one permit per API call keeps us under the configured SNS rate
+    private void deliverSms(List<NotificationLog> group) throws InterruptedException {
+        NotificationLog first = group.get(0);
+        markAttempt(group);
+        try {
+            smsRateLimiter.acquire();
+            snsNotificationService.sendSms(first.getRecipient(), mergedBody(group));
+            markSent(group);
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            for (NotificationLog notification : group) {
+                handleFailure(notification, e);
+            }
+        }
+    }
+
+    private static String mergedBody(List<NotificationLog> group) {
+        if (group.size() == 1) {
+            return group.get(0).getMessage();
+        }
+        log.debug("Coalesced {} notifications for {} into one send", group.size(), group.get(0).getRecipient());
+        return group.stream().map(NotificationLog::getMessage).distinct().collect(Collectors.joining("\n\n"));
+    }
+
+    private static void markAttempt(List<NotificationLog> group) {
+        for (NotificationLog notification : group) {
+            notification.setAttempts(notification.getAttempts() + 1);
+        }
+    }
+
+    private void markSent(List<NotificationLog> group) {
+        long now = System.currentTimeMillis();
+        for (NotificationLog notification : group) {
+            if (notification.getScheduledAt() != null) {
+                lagTimer.record(Duration.ofMillis(Math.max(0, now - notification.getScheduledAt().toEpochMilli())));
+            }
+            notificationRepository.updateNotificationStatus(
+                    notification.getNotificationId(), NotificationLog.NotificationStatus.SENT, null);
+        }
+    }
+
+    private void handleFailure(NotificationLog notification, Exception error) {
+        if (notification.getAttempts() >= maxAttempts || !running) {
+            deadLetter(notification, error.getMessage());
+            return;
+        }
+
+        long delayMs = backoffDelayMs(notification.getAttempts());
+        log.warn("Delivery attempt {} failed for notification {}, retrying in {}ms",
+                notification.getAttempts(), notification.getNotificationId(), delayMs);
+        notificationRepository.updateNotificationStatus(
+                notification.getNotificationId(), NotificationLog.NotificationStatus.PENDING, error.getMessage());
+
+        retryScheduler.schedule(() -> {
+            if (!queue.offer(notification)) {
+                deadLetter(notification, "Notification queue full on retry");
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Full jitter: uniform in [0, min(max, base * 2^(attempt-1))]
+    private long backoffDelayMs(int attempt) {
+        long exponential = backoffBaseMs << Math.min(attempt - 1, 20);
+        long capped = Math.min(backoffMaxMs, exponential);
+        return ThreadLocalRandom.current().nextLong(capped + 1);
+    }
+
+    private void deadLetter(NotificationLog notification, String reason) {
+        log.error("Notification {} for ticket {} dead-lettered after {} attempts: {}",
+                notification.getNotificationId(), notification.getTicketId(), notification.getAttempts(), reason);
+        notificationRepository.updateNotificationStatus(
+                notification.getNotificationId(), NotificationLog.NotificationStatus.DEAD_LETTER, reason);
+        dedupeRepository.release(
+                NotificationDedupeRepository.key(notification.getTicketId(), notification.getChannel()),
+                notification.getNotificationId());
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -3,8 +3,10 @@ package com.smartqueue.aws.service;
 import com.smartqueue.aws.dto.request.NotificationRequest;
 import com.smartqueue.aws.dto.response.NotificationResponse;
 import com.smartqueue.aws.model.NotificationLog;
+import com.smartqueue.aws.repository.NotificationDedupeRepository;
+import com.smartqueue.aws.repository.NotificationRepository;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
@@ -12,12 +14,24 @@ import java.util.UUID;
 
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class NotificationService {
 
-    @Autowired(required = false)
-    private SesNotificationService sesNotificationService;
+    private static final String DEFAULT_SUBJECT = "SmartQueue: Your order is coming";
+    private static final String DEFAULT_BODY =
+            "Pick up time is approaching, please come to the counter to pick up your items";
+
+    private final NotificationRepository notificationRepository;
+    private final NotificationDispatcher notificationDispatcher;
+    private final NotificationDedupeRepository dedupeRepository;
 
     public NotificationResponse scheduleNotification(NotificationRequest request) {
+        return scheduleNotification(request, Instant.now());
+    }
+
+    // Only records and enqueues the notification; delivery runs on the dispatcher's worker pool.
+    // dueAt becomes scheduledAt, which the dispatcher measures the delivery lag from.
+    public NotificationResponse scheduleNotification(NotificationRequest request, Instant dueAt) {
         log.info("Scheduling {} notification for ticket: {}", request.getChannel(), request.getTicketId());
 
         try {
@@ -26,26 +40,53 @@ public class NotificationService {
                     .ticketId(request.getTicketId())
                     .channel(convertChannel(request.getChannel()))
                     .recipient(request.getAddress())
-                    .message(request.getMessage() != null ? request.getMessage() : "Your queue notification")
+                    .subject(DEFAULT_SUBJECT)
+                    .message(request.getMessage() != null ? request.getMessage() : DEFAULT_BODY)
                     .status(NotificationLog.NotificationStatus.PENDING)
-                    .scheduledAt(Instant.now())
+                    .scheduledAt(dueAt)
                     .build();
 
-            if (sesNotificationService != null && request.getChannel() == NotificationRequest.NotificationChannel.EMAIL) {
-                String subject = "SmartQueue: Your order is coming";
-                String body = request.getMessage() != null ? request.getMessage() :
-                        "Pick up time is approaching, please come to the counter to pick up your items";
+            if (!notificationDispatcher.supports(notificationLog.getChannel())) {
+                return NotificationResponse.builder()
+                        .ticketId(request.getTicketId())
+                        .scheduled(true)
+                        .status(notificationLog.getStatus().name())
+                        .message("Notification scheduled successfully")
+                        .notificationId(notificationLog.getNotificationId())
+                        .build();
+            }
+
+            String dedupeKey = NotificationDedupeRepository.key(request.getTicketId(), notificationLog.getChannel());
+            if (!dedupeRepository.tryClaim(dedupeKey, notificationLog.getNotificationId())) {
+                log.info("Duplicate {} notification for ticket {} suppressed", request.getChannel(), request.getTicketId());
+                return NotificationResponse.builder()
+                        .ticketId(request.getTicketId())
+                        .scheduled(false)
+                        .status(NotificationLog.NotificationStatus.CANCELLED.name())
+                        .message("Duplicate notification suppressed")
+                        .build();
+            }
+
+            notificationRepository.enqueueNotification(notificationLog);
+            if (!notificationDispatcher.enqueue(notificationLog)) {
+                notificationRepository.updateNotificationStatus(notificationLog.getNotificationId(),
+                        NotificationLog.NotificationStatus.CANCELLED, "Notification queue full");
+                dedupeRepository.release(dedupeKey, notificationLog.getNotificationId());
 
-                sesNotificationService.sendEmail(request.getAddress(), subject, body);
-                notificationLog.setStatus(NotificationLog.NotificationStatus.SENT);
-                notificationLog.setSentAt(Instant.now());
+                return NotificationResponse.builder()
+                        .ticketId(request.getTicketId())
+                        .scheduled(false)
+                        .status(NotificationLog.NotificationStatus.CANCELLED.name())
+                        .message("Notification queue is full, try again later")
+                        .notificationId(notificationLog.getNotificationId())
+                        .build();
             }
 
             return NotificationResponse.builder()
                     .ticketId(request.getTicketId())
                     .scheduled(true)
-                    .status(notificationLog.getStatus().name())
-                    .message("Notification scheduled successfully")
+                    .status(NotificationLog.NotificationStatus.PENDING.name())
+                    .message("Notification queued for delivery")
                     .notificationId(notificationLog.getNotificationId())
                     .build();
 
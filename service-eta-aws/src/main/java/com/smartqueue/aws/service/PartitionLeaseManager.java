@@ -0,0 +1,257 @@
+package com.smartqueue.aws.service;
+
+import com.smartqueue.aws.repository.SchedulerLeaseRepository;
+import com.smartqueue.aws.repository.TicketEtaRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Splits the ticket_eta table into fixed scan segments (hash ranges of ticketId) and hands them out
+// to live ETA replicas through time-limited leases. Each heartbeat renews our leases, gives back
+// anything above our fair share when a node joins, and picks up expired leases when a node leaves.
+// Listeners hear about every partition we gain or give up, so per-ticket state can follow its lease.
+// The heartbeat has its own thread: on Spring's single scheduling thread a slow reconcile scan or model
+// reload could hold it past the lease duration and move partitions between healthy replicas.
+@Slf4j
+@Component
+public class PartitionLeaseManager {
+
+    private final SchedulerLeaseRepository leaseRepository;
+    private final int partitionCount;
+    private final long leaseDurationMs;
+    private final long renewIntervalMs;
+    private final String nodeId;
+    private ScheduledExecutorService heartbeat;
+
+    // partition -> local lease expiry (millis); only partitions we currently hold
+    private final NavigableMap<Integer, Long> ownedPartitions = new ConcurrentSkipListMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Called on the heartbeat thread. released runs before the lease is given back, so a listener can
+    // hand its state off (checkpoint) before the next owner loads the partition.
+    public interface Listener {
+        void acquired(int partition);
+
+        void released(int partition);
+    }
+
+    public PartitionLeaseManager(SchedulerLeaseRepository leaseRepository,
+                                 @Value("${eta.scheduler.partitions:8}") int partitionCount,
+                                 @Value("${eta.scheduler.lease.duration-ms:30000}") long leaseDurationMs,
+                                 @Value("${eta.scheduler.lease.renew-interval-ms:10000}") long renewIntervalMs) {
+        this.leaseRepository = leaseRepository;
+        this.partitionCount = Math.max(1, partitionCount);
+        this.leaseDurationMs = leaseDurationMs;
+        this.renewIntervalMs = Math.max(1, renewIntervalMs);
+        this.nodeId = resolveHostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        log.info("Scheduler node {} using {} partitions", nodeId, this.partitionCount);
+    }
+
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    // Partitions held at registration time are replayed as acquired
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+        ownedPartitions().forEach(listener::acquired);
+    }
+
+    public int partitionOf(String ticketId) {
+        return TicketEtaRepository.partitionOf(ticketId, partitionCount);
+    }
+
+    // Whether this replica may count down and notify the ticket right now
+    public boolean ownsTicket(String ticketId) {
+        if (!leaseRepository.isEnabled()) return true;
+        Long expiresAt = ownedPartitions.get(partitionOf(ticketId));
+        return expiresAt != null && expiresAt > System.currentTimeMillis();
+    }
+
+    // Partitions this replica may process right now
+    public List<Integer> ownedPartitions() {
+        if (!leaseRepository.isEnabled()) {
+            List<Integer> all = new ArrayList<>(partitionCount);
+            for (int i = 0; i < partitionCount; i++) all.add(i);
+            return all;
+        }
+        long now = System.currentTimeMillis();
+        List<Integer> valid = new ArrayList<>();
+        ownedPartitions.forEach((partition, expiresAt) -> {
+            if (expiresAt > now) valid.add(partition);
+        });
+        return valid;
+    }
+
+    // One thread is enough: a heartbeat is a few small DynamoDB writes plus the listeners' load/hand-off
+    // of a changed partition, and fixed delay means a slow round postpones the next one instead of piling up
+    // Tells the owner of the ticket's partition about a ticket created here, so it does not wait for its reconcile
+    public void announceNewTicket(String ticketId) {
+        if (!leaseRepository.isEnabled()) return;
+        leaseRepository.addToInbox(partitionOf(ticketId), ticketId);
+    }
+
+    // Ticket ids announced for the partitions we hold; acknowledge them once they are loaded
+    public Map<Integer, Set<String>> newTickets() {
+        if (!leaseRepository.isEnabled()) return Map.of();
+        List<Integer> owned = ownedPartitions();
+        return owned.isEmpty() ? Map.of() : leaseRepository.readInboxes(owned);
+    }
+
+    public void acknowledgeNewTickets(int partition, Set<String> ticketIds) {
+        if (!leaseRepository.isEnabled()) return;
+        leaseRepository.removeFromInbox(partition, ticketIds);
+    }
+
+    // Before loading a newly acquired partition: the load picks up everything announced so far
+    public void clearNewTickets(int partition) {
+        if (!leaseRepository.isEnabled()) return;
+        try {
+            leaseRepository.clearInbox(partition);
+        } catch (Exception e) {
+            log.warn("Could not clear new-ticket inbox of partition {}: {}", partition, e.getMessage());
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!leaseRepository.isEnabled()) return;
+        if (renewIntervalMs * 2 > leaseDurationMs) {
+            log.warn("Lease renew interval {}ms leaves less than one retry before the {}ms lease expires",
+                    renewIntervalMs, leaseDurationMs);
+        }
+        heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "eta-lease-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat.scheduleWithFixedDelay(this::rebalance, 0, renewIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void rebalance() {
+        if (!leaseRepository.isEnabled()) return;
+
+        try {
+            long now = System.currentTimeMillis();
+            long expiresAt = now + leaseDurationMs;
+            leaseRepository.heartbeat(nodeId, expiresAt);
+
+            Map<String, SchedulerLeaseRepository.Lease> leases = leaseRepository.findAll();
+            long liveNodes = leases.values().stream()
+                    .filter(l -> l.leaseKey().startsWith(SchedulerLeaseRepository.NODE_PREFIX))
+                    .filter(l -> l.expiresAtMillis() > now || nodeId.equals(l.owner()))
+                    .count();
+            int fairShare = (int) Math.ceil((double) partitionCount / Math.max(1, liveNodes));
+
+            // Renew what we hold; losing the condition means someone took it after our lease lapsed
+            for (Integer partition : new ArrayList<>(ownedPartitions.keySet())) {
+                if (leaseRepository.tryAcquire(partition, nodeId, now, expiresAt)) {
+                    ownedPartitions.put(partition, expiresAt);
+                } else {
+                    ownedPartitions.remove(partition);
+                    log.warn("Lost lease on partition {}", partition);
+                    fireReleased(partition);
+                }
+            }
+
+            // A node joined: hand back the excess so it can pick them up
+            while (ownedPartitions.size() > fairShare) {
+                Integer partition = ownedPartitions.lastKey();
+                ownedPartitions.remove(partition);
+                fireReleased(partition);
+                leaseRepository.release(SchedulerLeaseRepository.PARTITION_PREFIX + partition, nodeId);
+                log.info("Released partition {} (fair share {})", partition, fairShare);
+            }
+
+            // A node left or partitions are unassigned: take free/expired leases up to our share
+            for (int partition = 0; partition < partitionCount && ownedPartitions.size() < fairShare; partition++) {
+                if (ownedPartitions.containsKey(partition)) continue;
+                SchedulerLeaseRepository.Lease lease = leases.get(SchedulerLeaseRepository.PARTITION_PREFIX + partition);
+                if (lease != null && lease.expiresAtMillis() > now) continue;
+
+                if (leaseRepository.tryAcquire(partition, nodeId, now, expiresAt)) {
+                    ownedPartitions.put(partition, expiresAt);
+                    log.info("Acquired partition {}", partition);
+                    fireAcquired(partition);
+                }
+            }
+
+            log.debug("Node {} owns partitions {} ({} live nodes)", nodeId, ownedPartitions.keySet(), liveNodes);
+
+        } catch (Exception e) {
+            log.error("Scheduler lease rebalance failed for node {}", nodeId, e);
+        }
+    }
+
+    @PreDestroy
+    public void releaseAll() {
+        if (!leaseRepository.isEnabled()) return;
+        if (heartbeat != null) {
+            heartbeat.shutdown();
+            try {
+                // Let a running round finish so it cannot re-acquire what we are about to release
+                heartbeat.awaitTermination(leaseDurationMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            for (Integer partition : new ArrayList<>(ownedPartitions.keySet())) {
+                ownedPartitions.remove(partition);
+                fireReleased(partition);
+                leaseRepository.release(SchedulerLeaseRepository.PARTITION_PREFIX + partition, nodeId);
+            }
+            leaseRepository.release(SchedulerLeaseRepository.NODE_PREFIX + nodeId, nodeId);
+            log.info("Node {} released all scheduler leases", nodeId);
+        } catch (Exception e) {
+            log.warn("Failed to release scheduler leases for node {}", nodeId, e);
+        }
+    }
+
+    private void fireAcquired(int partition) {
+        for (Listener listener : listeners) {
+            try {
+                listener.acquired(partition);
+            } catch (Exception e) {
+                log.warn("Lease listener failed on acquiring partition {}", partition, e);
+            }
+        }
+    }
+
+    private void fireReleased(int partition) {
+        for (Listener listener : listeners) {
+            try {
+                listener.released(partition);
+            } catch (Exception e) {
+                log.warn("Lease listener failed on releasing partition {}", partition, e);
+            }
+        }
+    }
+
+    private static String resolveHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "eta";
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.smartqueue.aws.service;
+
+import java.util.concurrent.TimeUnit;
+
+// Smooth rate limiter: hands out evenly spaced send slots so delivery never exceeds the provider quota
+class SendRateLimiter {
+
+    private final long intervalNanos;
+    private long nextFreeSlotNanos;
+
+    SendRateLimiter(double permitsPerSecond) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.nextFreeSlotNanos = System.nanoTime();
+    }
+
+    void acquire() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long slot = Math.max(now, nextFreeSlotNanos);
+            nextFreeSlotNanos = slot + intervalNanos;
+            waitNanos = slot - now;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.smartqueue.aws.service;
+
+import com.smartqueue.aws.model.SeasonalRateModel;
+import com.smartqueue.aws.repository.EtaStatsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Learns each queue's service rate per hour-of-week from the /stats/served stream.
+// Models live in memory; new observations are added to the shared eta_stats row on a timer (atomic
+// per-bucket ADD, so replicas never overwrite each other) and every model is re-read periodically to
+// pick up the other replicas' samples. The served-count update and the ETA lookup stay constant-time.
+@Slf4j
+@Service
+public class ServiceRateModelService {
+
+    private final EtaStatsRepository etaStatsRepository;
+    private final EtaMultiplierTable multiplierTable;
+    private final int minSamples;
+
+    private final Map<String, Mono<SeasonalRateModel>> models = new ConcurrentHashMap<>();
+    private final Map<String, SeasonalRateModel> loaded = new ConcurrentHashMap<>();
+
+    public ServiceRateModelService(EtaStatsRepository etaStatsRepository,
+                                   EtaMultiplierTable multiplierTable,
+                                   @Value("${eta.model.min-samples:3}") int minSamples) {
+        this.etaStatsRepository = etaStatsRepository;
+        this.multiplierTable = multiplierTable;
+        this.minSamples = Math.max(1, minSamples);
+    }
+
+    // Cached after the first load; concurrent first callers share the same DynamoDB read.
+    // A failed load is not cached, so we never start from (and later persist) an empty model by mistake.
+    public Mono<SeasonalRateModel> modelFor(String queueId) {
+        return models.computeIfAbsent(queueId, id -> etaStatsRepository.findRateModelAsync(id)
+                .doOnNext(model -> loaded.put(id, model))
+                .doOnError(e -> models.remove(id))
+                .cache());
+    }
+
+    // Learned customers/minute for the current hour-of-week, NaN until the bucket has enough samples
+    public Mono<Double> currentRate(String queueId) {
+        int bucket = multiplierTable.currentSlot() / EtaMultiplierTable.MINUTES_PER_HOUR;
+        return modelFor(queueId)
+                .map(model -> model.rate(bucket, minSamples))
+                .onErrorReturn(Double.NaN);
+    }
+
+    // Queues with a model in memory: everything that reported served counts or asked for an ETA
+    public Set<String> knownQueues() {
+        return Set.copyOf(loaded.keySet());
+    }
+
+    // windowEndMillis: when the window closed (retried reports arrive late); null means now.
+    // A window spanning an hour boundary is split over its hour-of-week buckets by the time spent in each.
+    public Mono<Void> observe(String queueId, int servedCount, int windowSec, Long windowEndMillis) {
+        if (windowSec <= 0) {
+            return Mono.error(new IllegalArgumentException("windowSec must be positive"));
+        }
+        long end = windowEndMillis != null ? windowEndMillis : System.currentTimeMillis();
+        long start = end - windowSec * 1000L;
+        return modelFor(queueId)
+                .doOnNext(model -> {
+                    long from = start;
+                    while (from < end) {
+                        int slot = multiplierTable.slotAt(from);
+                        long to = Math.min(end, from + (EtaMultiplierTable.MINUTES_PER_HOUR - slot % EtaMultiplierTable.MINUTES_PER_HOUR) * 60_000L
+                                - Math.floorMod(from, 60_000L));
+                        double share = (double) (to - from) / (end - start);
+                        model.observe(slot / EtaMultiplierTable.MINUTES_PER_HOUR, servedCount * share, Math.round((to - from) / 1000.0));
+                        from = to;
+                    }
+                    log.debug("Queue {} observed {} served over {}s ending at {}", queueId, servedCount, windowSec, end);
+                })
+                .then();
+    }
+
+    @Scheduled(fixedDelayString = "${eta.model.flush-interval-ms:30000}")
+    public void flushDirtyModels() {
+        loaded.forEach((queueId, model) -> {
+            if (!model.isDirty()) return;
+            List<SeasonalRateModel.Delta> deltas = model.drainPending();
+            try {
+                etaStatsRepository.addRateModelCounts(model, deltas);
+            } catch (Exception e) {
+                model.restore(deltas);
+                log.warn("Failed to persist service rate model for queue {}, will retry", queueId, e);
+            }
+        });
+    }
+
+    // Picks up what other replicas added since our last read or flush
+    @Scheduled(fixedDelayString = "${eta.model.reload-interval-ms:300000}")
+    public void reloadModels() {
+        loaded.forEach((queueId, model) -> {
+            try {
+                SeasonalRateModel latest = etaStatsRepository.findRateModelAsync(queueId).block();
+                if (latest != null) model.mergeTotals(latest);
+            } catch (Exception e) {
+                log.warn("Failed to reload service rate model for queue {}: {}", queueId, e.getMessage());
+            }
+        });
+    }
+}
@@ -1,5 +1,8 @@
 package com.smartqueue.aws.service;
 
+import com.smartqueue.aws.jfr.OutcomeEvent;
+import com.smartqueue.aws.jfr.SesSendEvent;
+import io.micrometer.observation.annotation.Observed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -8,6 +11,7 @@ import org.springframework.stereotype.Service;
 import software.amazon.awssdk.services.ses.SesClient;
 import software.amazon.awssdk.services.ses.model.*;
 
+@Observed(name = "notification.ses")
 @Service
 @Profile("prod")
 @RequiredArgsConstructor
@@ -45,7 +49,7 @@ public class SesNotificationService {
                             .build())
                     .build();
 
-            SendEmailResponse response = sesClient.sendEmail(request);
+            SendEmailResponse response = send(request, "text");
             log.info("Email sent successfully to {} with messageId: {}", toEmail, response.messageId());
 
         } catch (SesException e) {
@@ -81,7 +85,7 @@ public class SesNotificationService {
                             .build())
                     .build();
 
-            SendEmailResponse response = sesClient.sendEmail(request);
+            SendEmailResponse response = send(request, "html");
             log.info("HTML email sent successfully to {} with messageId: {}", toEmail, response.messageId());
 
         } catch (Exception e) {
@@ -89,4 +93,12 @@ public class SesNotificationService {
             throw new RuntimeException("HTML email sending failed", e);
         }
     }
+
+    private SendEmailResponse send(SendEmailRequest request, String format) {
+        return OutcomeEvent.call(new SesSendEvent(), event -> {
+            event.format = format;
+            event.recipients = request.destination().toAddresses().size();
+            return sesClient.sendEmail(request);
+        });
+    }
 }
@@ -0,0 +1,47 @@
+package com.smartqueue.aws.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.sns.model.*;
+
+import java.util.Map;
+
+@Service
+@ConditionalOnProperty(name = "aws.sns.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class SnsNotificationService {
+
+    private final SnsClient snsClient;
+
+    public SnsNotificationService(SnsClient snsClient) {
+        this.snsClient = snsClient;
+    }
+
+    // Direct-to-phone publish, one API call per message: SNS has no batch call that addresses single phones
+    public void sendSms(String phoneNumber, String message) {
+        try {
+            log.info("Sending SMS to: {}", phoneNumber);
+
+            PublishResponse response = snsClient.publish(PublishRequest.builder()
+                    .phoneNumber(phoneNumber)
+                    .message(message)
+                    .messageAttributes(Map.of("AWS.SNS.SMS.SMSType", stringAttribute("Transactional")))
+                    .build());
+            log.info("SMS sent successfully to {} with messageId: {}", phoneNumber, response.messageId());
+
+        } catch (SnsException e) {
+            log.error("SNS Error sending SMS to {}: {} - {}", phoneNumber, e.awsErrorDetails().errorCode(),
+                    e.awsErrorDetails().errorMessage());
+            throw new RuntimeException("Failed to send SMS via SNS", e);
+        } catch (Exception e) {
+            log.error("Failed to send SMS to {}", phoneNumber, e);
+            throw new RuntimeException("SMS sending failed", e);
+        }
+    }
+
+    private static MessageAttributeValue stringAttribute(String value) {
+        return MessageAttributeValue.builder().dataType("String").stringValue(value).build();
+    }
+}
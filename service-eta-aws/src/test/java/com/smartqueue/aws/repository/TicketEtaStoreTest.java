@@ -0,0 +1,218 @@
+package com.smartqueue.aws.repository;
+
+import com.smartqueue.aws.model.TicketEta;
+import com.smartqueue.aws.service.PartitionLeaseManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TicketEtaStoreTest {
+
+    private static final Instant NOW = Instant.parse("2024-05-06T09:00:00Z");
+    private static final long RETENTION_SECONDS = 30 * 60;
+
+    private final TicketEtaRepository repository = mock(TicketEtaRepository.class);
+    private final PartitionLeaseManager leases = mock(PartitionLeaseManager.class);
+    private TicketEtaStore store;
+
+    @BeforeEach
+    void setUp() {
+        when(leases.ownsTicket(anyString())).thenReturn(true);
+        store = new TicketEtaStore(repository, leases, true, true, 30, 120, new SimpleMeterRegistry());
+    }
+
+    private static TicketEta waiting(String ticketId, int remainingMinutes, Long version) {
+        return TicketEta.builder()
+                .ticketId(ticketId)
+                .queueId("queue-1")
+                .remainingMinutes(remainingMinutes)
+                .originalEtaMinutes(remainingMinutes)
+                .updatedAt(NOW)
+                .notificationSent(false)
+                .status(TicketEta.TicketStatus.WAITING)
+                .version(version)
+                .build();
+    }
+
+    private TicketEta stored(String ticketId) {
+        return store.findByTicketId(ticketId).block().orElseThrow();
+    }
+
+    @Test
+    void savedEntriesAreCopiedInAndOut() {
+        TicketEta ticket = waiting("t1", 10, 1L);
+        store.save(ticket);
+        ticket.setRemainingMinutes(1);
+
+        TicketEta read = stored("t1");
+        assertThat(read.getRemainingMinutes()).isEqualTo(10);
+        read.setRemainingMinutes(2);
+        assertThat(stored("t1").getRemainingMinutes()).isEqualTo(10);
+        verify(repository, never()).findByTicketIdAsync(anyString());
+    }
+
+    @Test
+    void countDownAppliesWholeMinutesOnly() {
+        store.save(waiting("t1", 10, 1L));
+
+        assertThat(store.countDown("t1", NOW.plusSeconds(59)).orElseThrow().getRemainingMinutes()).isEqualTo(10);
+        TicketEta after = store.countDown("t1", NOW.plus(3, ChronoUnit.MINUTES)).orElseThrow();
+        assertThat(after.getRemainingMinutes()).isEqualTo(7);
+        assertThat(after.getUpdatedAt()).isEqualTo(NOW.plus(3, ChronoUnit.MINUTES));
+        assertThat(after.getStatus()).isEqualTo(TicketEta.TicketStatus.WAITING);
+        assertThat(store.countDown("missing", NOW)).isEmpty();
+    }
+
+    @Test
+    void reachingZeroMarksReadyAndStartsRetention() {
+        store.save(waiting("t1", 2, 1L));
+
+        Instant later = NOW.plus(5, ChronoUnit.MINUTES);
+        TicketEta ready = store.countDown("t1", later).orElseThrow();
+        assertThat(ready.getRemainingMinutes()).isZero();
+        assertThat(ready.getStatus()).isEqualTo(TicketEta.TicketStatus.READY);
+        assertThat(ready.getExpiresAt()).isEqualTo(later.getEpochSecond() + RETENTION_SECONDS);
+    }
+
+    @Test
+    void checkpointWritesDirtyEntriesOnceAndBumpsTheVersion() {
+        when(repository.writeConditionally(anyCollection()))
+                .thenReturn(Map.of("t1", TicketEtaRepository.WriteOutcome.WRITTEN));
+        store.save(waiting("t1", 10, 1L));
+        assertThat(store.dirtyCount()).isEqualTo(1);
+
+        store.checkpoint();
+        assertThat(store.dirtyCount()).isZero();
+        assertThat(stored("t1").getVersion()).isEqualTo(2L);
+
+        store.checkpoint();
+        verify(repository, times(1)).writeConditionally(anyCollection());
+    }
+
+    @Test
+    void failedWritesStayDirty() {
+        when(repository.writeConditionally(anyCollection()))
+                .thenReturn(Map.of("t1", TicketEtaRepository.WriteOutcome.FAILED));
+        store.save(waiting("t1", 10, 1L));
+
+        store.checkpoint();
+        assertThat(store.dirtyCount()).isEqualTo(1);
+        assertThat(stored("t1").getVersion()).isEqualTo(1L);
+    }
+
+    @Test
+    void conflictWithAFinishedRowAdoptsTheRow() {
+        when(repository.writeConditionally(anyCollection()))
+                .thenReturn(Map.of("t1", TicketEtaRepository.WriteOutcome.CONFLICT));
+        TicketEta finished = waiting("t1", 0, 3L).toBuilder()
+                .status(TicketEta.TicketStatus.COMPLETED)
+                .expiresAt(NOW.getEpochSecond() + RETENTION_SECONDS)
+                .build();
+        when(repository.findByTicketId("t1", true)).thenReturn(Optional.of(finished));
+        store.save(waiting("t1", 10, 1L));
+
+        store.checkpoint();
+        assertThat(stored("t1")).isEqualTo(finished);
+        assertThat(store.dirtyCount()).isZero();
+    }
+
+    @Test
+    void conflictKeepsTheCountdownFurthestAlongAndAnyNotification() {
+        when(repository.writeConditionally(anyCollection()))
+                .thenReturn(Map.of("t1", TicketEtaRepository.WriteOutcome.CONFLICT));
+        TicketEta theirs = waiting("t1", 4, 3L).toBuilder()
+                .notificationSent(true)
+                .status(TicketEta.TicketStatus.NOTIFIED)
+                .build();
+        when(repository.findByTicketId("t1", true)).thenReturn(Optional.of(theirs));
+        store.save(waiting("t1", 6, 1L));
+
+        store.checkpoint();
+        TicketEta merged = stored("t1");
+        assertThat(merged.getVersion()).isEqualTo(3L);
+        assertThat(merged.getRemainingMinutes()).isEqualTo(4);
+        assertThat(merged.getNotificationSent()).isTrue();
+        assertThat(merged.getStatus()).isEqualTo(TicketEta.TicketStatus.NOTIFIED);
+    }
+
+    @Test
+    void finishIsAppliedOnceInMemory() {
+        store.save(waiting("t1", 10, 1L));
+
+        assertThat(store.finish("t1", TicketEta.TicketStatus.COMPLETED, NOW))
+                .isEqualTo(TicketEtaRepository.FinishOutcome.APPLIED);
+        assertThat(store.finish("t1", TicketEta.TicketStatus.CANCELLED, NOW))
+                .isEqualTo(TicketEtaRepository.FinishOutcome.ALREADY_FINISHED);
+
+        TicketEta finished = stored("t1");
+        assertThat(finished.getStatus()).isEqualTo(TicketEta.TicketStatus.COMPLETED);
+        assertThat(finished.getRemainingMinutes()).isZero();
+        assertThat(finished.getExpiresAt()).isEqualTo(NOW.getEpochSecond() + RETENTION_SECONDS);
+        verify(repository, never()).finish(anyString(), any(), any(), anyLong());
+    }
+
+    @Test
+    void pendingDeleteWinsOverAWrite() {
+        store.save(waiting("t1", 10, 1L));
+        store.delete("t1");
+        assertThat(store.findByTicketId("t1").block()).isEmpty();
+
+        store.checkpoint();
+        verify(repository).writeConditionally(argThat(Collection::isEmpty));
+        verify(repository).batchWrite(List.of(), List.of("t1"));
+        assertThat(store.dirtyCount()).isZero();
+    }
+
+    @Test
+    void ticketsOfOtherPartitionsAreReadThroughWithoutCaching() {
+        when(leases.ownsTicket("t2")).thenReturn(false);
+        when(repository.findByTicketIdAsync("t2")).thenReturn(Mono.just(Optional.of(waiting("t2", 10, 1L))));
+
+        Optional<TicketEta> read = store.findByTicketId("t2").block();
+        assertThat(read).isPresent();
+        assertThat(store.size()).isZero();
+        store.findByTicketId("t2").block();
+        verify(repository, times(2)).findByTicketIdAsync("t2");
+    }
+
+    @Test
+    void ticketsCreatedForOtherPartitionsAreAnnouncedToTheOwner() {
+        when(leases.ownsTicket("t2")).thenReturn(false);
+        when(repository.createIfAbsentAsync(any())).thenReturn(Mono.just(Optional.empty()));
+
+        store.createIfAbsent(waiting("t2", 10, null)).block();
+        verify(leases).announceNewTicket("t2");
+        assertThat(store.size()).isZero();
+    }
+
+    @Test
+    void announcedTicketsAreLoadedAndAcknowledged() {
+        when(leases.newTickets()).thenReturn(Map.of(3, Set.of("t1")));
+        when(repository.findByTicketIds(Set.of("t1"))).thenReturn(List.of(waiting("t1", 10, 1L)));
+
+        store.pollNewTickets();
+        assertThat(stored("t1").getRemainingMinutes()).isEqualTo(10);
+        verify(leases).acknowledgeNewTickets(3, Set.of("t1"));
+    }
+}
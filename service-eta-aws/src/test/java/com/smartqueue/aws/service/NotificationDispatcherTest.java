@@ -0,0 +1,151 @@
+package com.smartqueue.aws.service;
+
+import com.smartqueue.aws.model.NotificationLog;
+import com.smartqueue.aws.repository.NotificationDedupeRepository;
+import com.smartqueue.aws.repository.NotificationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class NotificationDispatcherTest {
+
+    private static final long WAIT_MS = 2_000;
+
+    private final NotificationRepository notificationRepository = mock(NotificationRepository.class);
+    private final NotificationDedupeRepository dedupeRepository = mock(NotificationDedupeRepository.class);
+    private final SesNotificationService ses = mock(SesNotificationService.class);
+    private final SnsNotificationService sns = mock(SnsNotificationService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // "id STATUS error" per updateNotificationStatus call, in call order
+    private final List<String> statusUpdates = new CopyOnWriteArrayList<>();
+    private NotificationDispatcher started;
+
+    // updateNotificationStatus is synchronized, so a verify(timeout(...)) on it holds the mock's monitor
+    // while the worker waits to make that very call. The tests wait on this record instead.
+    @BeforeEach
+    void recordStatusUpdates() {
+        doAnswer(invocation -> statusUpdates.add(invocation.getArgument(0) + " " + invocation.getArgument(1)
+                + " " + invocation.getArgument(2)))
+                .when(notificationRepository).updateNotificationStatus(anyString(), any(), any());
+    }
+
+    private void awaitStatus(String notificationId, NotificationLog.NotificationStatus status, String error)
+            throws InterruptedException {
+        String expected = notificationId + " " + status + " " + error;
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (!statusUpdates.contains(expected)) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("No status update \"%s\" within %dms, got %s", expected, WAIT_MS, statusUpdates);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    // One worker, no real backoff and rate limits well above what the tests send
+    private NotificationDispatcher dispatcher(int capacity, int maxAttempts, SnsNotificationService smsService) {
+        return new NotificationDispatcher(notificationRepository, dedupeRepository, ses, smsService,
+                capacity, 1, 10, maxAttempts, 1, 1, 1000, 1000, meterRegistry);
+    }
+
+    private void start(NotificationDispatcher dispatcher) {
+        started = dispatcher;
+        dispatcher.start();
+    }
+
+    @AfterEach
+    void stop() {
+        if (started != null) started.stop();
+    }
+
+    private static NotificationLog notification(String id, NotificationLog.NotificationType channel, String recipient, String message) {
+        return NotificationLog.builder()
+                .notificationId(id)
+                .ticketId("ticket-" + id)
+                .channel(channel)
+                .recipient(recipient)
+                .subject("Your turn is coming")
+                .message(message)
+                .status(NotificationLog.NotificationStatus.PENDING)
+                .scheduledAt(Instant.now())
+                .build();
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() {
+        NotificationDispatcher dispatcher = dispatcher(1, 3, sns);
+        assertThat(dispatcher.enqueue(notification("n1", NotificationLog.NotificationType.EMAIL, "a@example.com", "one"))).isTrue();
+        assertThat(dispatcher.enqueue(notification("n2", NotificationLog.NotificationType.EMAIL, "a@example.com", "two"))).isFalse();
+        assertThat(dispatcher.getBacklogSize()).isEqualTo(1);
+    }
+
+    @Test
+    void supportsOnlyConfiguredChannels() {
+        NotificationDispatcher dispatcher = dispatcher(10, 3, null);
+        assertThat(dispatcher.supports(NotificationLog.NotificationType.EMAIL)).isTrue();
+        assertThat(dispatcher.supports(NotificationLog.NotificationType.SMS)).isFalse();
+        assertThat(dispatcher.supports(NotificationLog.NotificationType.PUSH)).isFalse();
+    }
+
+    @Test
+    void coalescesPendingEmailsForTheSameRecipient() throws InterruptedException {
+        NotificationDispatcher dispatcher = dispatcher(10, 3, sns);
+        dispatcher.enqueue(notification("n1", NotificationLog.NotificationType.EMAIL, "a@example.com", "first"));
+        dispatcher.enqueue(notification("n2", NotificationLog.NotificationType.EMAIL, "a@example.com", "second"));
+        dispatcher.enqueue(notification("n3", NotificationLog.NotificationType.EMAIL, "b@example.com", "other"));
+        start(dispatcher);
+
+        verify(ses, timeout(WAIT_MS)).sendEmail("a@example.com", "Your turn is coming", "first\n\nsecond");
+        verify(ses, timeout(WAIT_MS)).sendEmail("b@example.com", "Your turn is coming", "other");
+        for (String id : List.of("n1", "n2", "n3")) {
+            awaitStatus(id, NotificationLog.NotificationStatus.SENT, null);
+        }
+        assertThat(meterRegistry.get("eta.notification.lag").timer().count()).isEqualTo(3);
+    }
+
+    @Test
+    void retriesThenDeadLettersAndReleasesTheClaim() throws InterruptedException {
+        doThrow(new RuntimeException("throttled")).when(ses).sendEmail(anyString(), anyString(), anyString());
+        NotificationDispatcher dispatcher = dispatcher(10, 2, sns);
+        NotificationLog email = notification("n1", NotificationLog.NotificationType.EMAIL, "a@example.com", "first");
+        dispatcher.enqueue(email);
+        start(dispatcher);
+
+        awaitStatus("n1", NotificationLog.NotificationStatus.DEAD_LETTER, "throttled");
+        assertThat(statusUpdates).containsExactly("n1 PENDING throttled", "n1 DEAD_LETTER throttled");
+        verify(dedupeRepository, timeout(WAIT_MS))
+                .release(NotificationDedupeRepository.key("ticket-n1", NotificationLog.NotificationType.EMAIL), "n1");
+        verify(ses, timeout(WAIT_MS).times(2)).sendEmail(anyString(), anyString(), anyString());
+        assertThat(email.getAttempts()).isEqualTo(2);
+    }
+
+    @Test
+    void smsFailuresOnlyAffectTheFailedRecipient() throws InterruptedException {
+        doThrow(new RuntimeException("invalid number")).when(sns).sendSms(eq("+84900000002"), anyString());
+        NotificationDispatcher dispatcher = dispatcher(10, 1, sns);
+        dispatcher.enqueue(notification("n1", NotificationLog.NotificationType.SMS, "+84900000001", "first"));
+        dispatcher.enqueue(notification("n2", NotificationLog.NotificationType.SMS, "+84900000002", "second"));
+        start(dispatcher);
+
+        awaitStatus("n1", NotificationLog.NotificationStatus.SENT, null);
+        awaitStatus("n2", NotificationLog.NotificationStatus.DEAD_LETTER, "invalid number");
+        assertThat(statusUpdates).hasSize(2);
+        verify(sns).sendSms("+84900000001", "first");
+        verify(sns).sendSms("+84900000002", "second");
+    }
+}
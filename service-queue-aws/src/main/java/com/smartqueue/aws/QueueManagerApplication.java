@@ -2,10 +2,15 @@ package com.smartqueue.aws;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import reactor.core.publisher.Hooks;
 
 @SpringBootApplication
+@EnableScheduling
 public class QueueManagerApplication {
     public static void main(String[] args) {
+        // Restores the trace context (and log MDC) on whichever thread a reactive operator runs
+        Hooks.enableAutomaticContextPropagation();
         SpringApplication.run(QueueManagerApplication.class, args);
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.smartqueue.aws.config;
 
+import io.micrometer.observation.ObservationRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -30,11 +31,18 @@ public class AwsConfig {
     @Value("${aws.dynamodb.queues-table}")
     private String queuesTableName;
 
+    @Value("${aws.dynamodb.outbox-table:queue-outbox}")
+    private String outboxTableName;
+
     @Bean
-    public DynamoDbClient dynamoDbClient() {
+    public DynamoDbClient dynamoDbClient(AwsSdkTracingInterceptor tracingInterceptor,
+                                         DynamoDbCapacityInterceptor capacityInterceptor) {
         DynamoDbClientBuilder builder = DynamoDbClient.builder()
                 .region(Region.of(awsRegion))
-                .credentialsProvider(DefaultCredentialsProvider.create());
+                .credentialsProvider(DefaultCredentialsProvider.create())
+                .overrideConfiguration(c -> c
+                        .addExecutionInterceptor(tracingInterceptor)
+                        .addExecutionInterceptor(capacityInterceptor));
 
         if (dynamoDbEndpoint != null
                 && !dynamoDbEndpoint.trim().isEmpty()
@@ -45,6 +53,12 @@ public class AwsConfig {
         return builder.build();
     }
 
+    @Bean
+    public DynamoDbCapacityInterceptor dynamoDbCapacityInterceptor(ObservationRegistry observationRegistry,
+                                                                   DynamoDbMetrics dynamoDbMetrics) {
+        return new DynamoDbCapacityInterceptor(observationRegistry, dynamoDbMetrics);
+    }
+
     @Bean
     public DynamoDbEnhancedClient dynamoDbEnhancedClient(DynamoDbClient dynamoDbClient) {
         return DynamoDbEnhancedClient.builder()
@@ -63,9 +77,15 @@ public class AwsConfig {
     }
 
     @Bean
-    public SesClient sesClient() {
+    public String outboxTableName() {
+        return tablePrefix + outboxTableName;
+    }
+
+    @Bean
+    public SesClient sesClient(AwsSdkTracingInterceptor tracingInterceptor) {
         return SesClient.builder()
                 .region(Region.AP_SOUTHEAST_1)
+                .overrideConfiguration(c -> c.addExecutionInterceptor(tracingInterceptor))
                 .build();
     }
 }
\ No newline at end of file
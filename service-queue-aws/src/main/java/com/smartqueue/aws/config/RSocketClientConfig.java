@@ -0,0 +1,26 @@
+package com.smartqueue.aws.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.messaging.rsocket.RSocketRequester;
+
+@Configuration
+public class RSocketClientConfig {
+
+    @Value("${service.eta.rsocket.host:localhost}")
+    private String etaRSocketHost;
+
+    @Value("${service.eta.rsocket.port:7082}")
+    private int etaRSocketPort;
+
+    // Connects lazily on first request; every call then shares (multiplexes over) the one TCP
+    // connection, which is re-established on the next request if it drops
+    @Bean
+    public RSocketRequester etaRSocketRequester(RSocketRequester.Builder builder) {
+        return builder
+                .dataMimeType(MediaType.APPLICATION_CBOR)
+                .tcp(etaRSocketHost, etaRSocketPort);
+    }
+}
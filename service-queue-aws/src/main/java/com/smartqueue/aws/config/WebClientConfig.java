@@ -3,7 +3,10 @@ package com.smartqueue.aws.config;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
 import java.time.Duration;
 
@@ -16,10 +19,21 @@ public class WebClientConfig {
     @Value("${service.eta.timeout:5000}")
     private int timeoutMillis;
     
+    @Value("${service.eta.http.max-connections:100}")
+    private int maxConnections;
+    
+    // Boot's builder carries the observation filter, so every call gets a client span and a traceparent header
+    // Own connection pool with Reactor Netty pool metrics (reactor.netty.connection.provider.*)
     @Bean
-    public WebClient etaServiceWebClient() {
-        return WebClient.builder()
+    public WebClient etaServiceWebClient(WebClient.Builder builder) {
+        ConnectionProvider pool = ConnectionProvider.builder("eta-service")
+                .maxConnections(maxConnections)
+                .metrics(true)
+                .build();
+        HttpClient httpClient = HttpClient.create(pool).metrics(true, uri -> "eta-service");
+        return builder.clone()
                 .baseUrl(etaServiceBaseUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(1024 * 1024)) // 1MB
                 .build();
     }
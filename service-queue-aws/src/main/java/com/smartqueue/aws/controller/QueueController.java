@@ -1,5 +1,6 @@
 package com.smartqueue.aws.controller;
 
+import com.smartqueue.aws.config.HotPathLogFilter;
 import com.smartqueue.aws.dto.request.BulkJoinRequest;
 import com.smartqueue.aws.dto.request.CreateQueueRequest;
 import com.smartqueue.aws.dto.request.JoinQueueRequest;
@@ -9,6 +10,7 @@ import com.smartqueue.aws.dto.response.ProcessNextResponse;
 import com.smartqueue.aws.dto.response.QueueStatusResponse;
 import com.smartqueue.aws.model.QueueInfo;
 import com.smartqueue.aws.model.Ticket;
+import com.smartqueue.aws.repository.OutboxRepository;
 import com.smartqueue.aws.repository.QueueRepository;
 import com.smartqueue.aws.service.QueueService;
 import com.smartqueue.aws.service.TicketService;
@@ -19,10 +21,13 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -38,15 +43,20 @@ public class QueueController {
 
     private final QueueRepository queueRepository;
 
+    private final OutboxRepository outboxRepository;
+
     @Value("${test.api-key}")
     private String testApiKey;
+
+    @Value("${security.api-key.internal}")
+    private String internalApiKey;
     
     @PostMapping("/{queueId}/join")
     public ResponseEntity<JoinQueueResponse> joinQueue(
             @PathVariable @NotBlank String queueId,
             @RequestBody @Valid JoinQueueRequest request) {
         
-        log.info("Join queue request received for queueId: {}", queueId);
+        log.info(HotPathLogFilter.HOT_PATH, "Join queue request received for queueId: {}", queueId);
         
         try {
             JoinQueueResponse response = queueService.joinQueue(queueId, request);
@@ -62,28 +72,82 @@ public class QueueController {
         }
     }
     
+    // Reactive: the ETA lookup must not block the event loop it is served on
     @GetMapping("/{queueId}/status")
-    public ResponseEntity<QueueStatusResponse> getStatus(
+    public Mono<ResponseEntity<QueueStatusResponse>> getStatus(
             @PathVariable @NotBlank String queueId,
             @RequestParam @NotBlank String ticketId) {
         
-        log.info("Status request received for queueId: {}, ticketId: {}", queueId, ticketId);
+        log.info(HotPathLogFilter.HOT_PATH, "Status request received for queueId: {}, ticketId: {}", queueId, ticketId);
         
+        return queueService.getQueueStatus(queueId, ticketId)
+                .map(ResponseEntity::ok)
+                .onErrorResume(e -> Mono.just(ResponseEntity.badRequest().body(
+                    QueueStatusResponse.builder()
+                        .queueId(queueId)
+                        .ticketId(ticketId)
+                        .message("Failed to get status: " + e.getMessage())
+                        .build()
+                )));
+    }
+
+    @GetMapping("/{queueId}/etas")
+    public Mono<ResponseEntity<List<QueueStatusResponse>>> getQueueEtas(@PathVariable @NotBlank String queueId) {
+        log.info(HotPathLogFilter.HOT_PATH, "Queue-wide ETA request received for queueId: {}", queueId);
+
+        return queueService.getQueueEtas(queueId)
+                .map(ResponseEntity::ok)
+                .onErrorResume(e -> {
+                    log.error("Error getting queue ETAs", e);
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
+                });
+    }
+
+    @PostMapping("/{queueId}/tickets/{ticketId}/cancel")
+    public ResponseEntity<QueueStatusResponse> cancelTicket(
+            @PathVariable @NotBlank String queueId,
+            @PathVariable @NotBlank String ticketId) {
+
+        log.info("Cancel request received for queueId: {}, ticketId: {}", queueId, ticketId);
+
         try {
-            QueueStatusResponse response = queueService.getQueueStatus(queueId, ticketId);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(queueService.cancelTicket(queueId, ticketId));
         } catch (Exception e) {
-            log.error("Error getting queue status", e);
+            log.error("Error cancelling ticket", e);
             return ResponseEntity.badRequest().body(
                 QueueStatusResponse.builder()
                     .queueId(queueId)
                     .ticketId(ticketId)
-                    .message("Failed to get status: " + e.getMessage())
+                    .message("Failed to cancel ticket: " + e.getMessage())
                     .build()
             );
         }
     }
 
+    // Internal: redeliver this queue's retained outbox events from the given time
+    @PostMapping("/{queueId}/outbox/replay")
+    public ResponseEntity<?> replayOutbox(
+            @RequestHeader(value = "X-Internal-Key", required = false) String internalKey,
+            @PathVariable @NotBlank String queueId,
+            @RequestParam(defaultValue = "0") long fromEpochMillis) {
+
+        if (internalKey == null || !internalKey.equals(internalApiKey)) {
+            return ResponseEntity.status(403).body(Map.of("error", "Invalid internal key"));
+        }
+
+        try {
+            outboxRepository.resetCursor(queueId, fromEpochMillis);
+            return ResponseEntity.ok(Map.of(
+                "message", "Outbox replay scheduled",
+                "queueId", queueId,
+                "fromEpochMillis", fromEpochMillis
+            ));
+        } catch (Exception e) {
+            log.error("Error resetting outbox cursor", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
     @PostMapping
     public ResponseEntity<QueueInfo> createQueue(@RequestBody @Valid CreateQueueRequest request) {
         log.info("Creating new queue: {}", request.getQueueId());
@@ -127,9 +191,9 @@ public class QueueController {
         }
     }
     
-    // Test endpoint for load testing
+    // Test endpoint for load testing; the joins run on boundedElastic, the batch ETA call reactively
     @PostMapping("/test/join-bulk")
-    public ResponseEntity<?> joinBulk(
+    public Mono<ResponseEntity<?>> joinBulk(
             @RequestHeader(value = "X-Test-Key", required = false) String testKey,
             @RequestBody @Valid BulkJoinRequest request) {
         
@@ -137,31 +201,41 @@ public class QueueController {
         
         // Validate test key
         if (testKey == null || !testKey.equals(testApiKey)) {
-            return ResponseEntity.status(403).body(Map.of("error", "Invalid test key"));
+            return Mono.just(ResponseEntity.status(403).body(Map.of("error", "Invalid test key")));
         }
         
-        try {
-            List<JoinQueueResponse> responses = new ArrayList<>();
-            
-            for (int i = 0; i < request.getBatch(); i++) {
-                JoinQueueRequest joinRequest = JoinQueueRequest.builder()
-                        .userId("test-user-" + i)
-                        .build();
-                
-                JoinQueueResponse response = queueService.joinQueue(request.getQueueId(), joinRequest);
-                responses.add(response);
-            }
-            
-            return ResponseEntity.ok(Map.of(
-                "message", "Bulk join completed",
-                "processed", request.getBatch(),
-                "responses", responses
-            ));
-            
-        } catch (Exception e) {
-            log.error("Error in bulk join", e);
-            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
-        }
+        return Mono.fromCallable(() -> {
+                    List<JoinQueueResponse> responses = new ArrayList<>();
+
+                    for (int i = 0; i < request.getBatch(); i++) {
+                        JoinQueueRequest joinRequest = JoinQueueRequest.builder()
+                                .userId("test-user-" + i)
+                                .build();
+
+                        JoinQueueResponse response = queueService.joinQueue(request.getQueueId(), joinRequest);
+                        responses.add(response);
+                    }
+                    return responses;
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(responses -> {
+                    // One batch ETA call for the whole bulk join
+                    Map<String, Integer> positions = new LinkedHashMap<>();
+                    responses.forEach(r -> positions.put(r.getTicketId(), r.getPosition()));
+                    return queueService.getEstimatedWaitTimes(request.getQueueId(), positions).map(etas -> {
+                        responses.forEach(r -> r.setEstimatedWaitMinutes(etas.get(r.getTicketId())));
+                        return ResponseEntity.ok(Map.of(
+                            "message", "Bulk join completed",
+                            "processed", request.getBatch(),
+                            "responses", responses
+                        ));
+                    });
+                })
+                .<ResponseEntity<?>>map(response -> response)
+                .onErrorResume(e -> {
+                    log.error("Error in bulk join", e);
+                    return Mono.just(ResponseEntity.badRequest().body(Map.of("error", String.valueOf(e.getMessage()))));
+                });
     }
 
     @GetMapping
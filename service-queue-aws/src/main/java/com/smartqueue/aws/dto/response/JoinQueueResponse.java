@@ -13,6 +13,10 @@ public class JoinQueueResponse {
     
     private String ticketId;
     private Integer position;
+    private Integer estimatedWaitMinutes;
     private String queueId;
     private String message;
+    // Passed on to the ETA service's /eta/track so it can text the customer; phone only when opted in
+    private String customerPhone;
+    private boolean smsNotificationEnabled;
 }
\ No newline at end of file
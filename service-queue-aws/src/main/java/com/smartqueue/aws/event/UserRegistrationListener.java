@@ -2,6 +2,7 @@ package com.smartqueue.aws.event;
 
 import com.smartqueue.aws.event.UserRegisteredEvent;
 import com.smartqueue.aws.model.User;
+import io.micrometer.observation.annotation.Observed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.event.EventListener;
@@ -10,6 +11,7 @@ import org.springframework.stereotype.Component;
 import software.amazon.awssdk.services.ses.SesClient;
 import software.amazon.awssdk.services.ses.model.*;
 
+@Observed(name = "notification.ses")
 @Component
 @RequiredArgsConstructor
 @Slf4j
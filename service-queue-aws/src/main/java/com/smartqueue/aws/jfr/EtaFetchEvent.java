@@ -0,0 +1,25 @@
+package com.smartqueue.aws.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.smartqueue.queue.EtaFetch")
+@Label("ETA Fetch")
+@Category({"SmartQueue", "Queue Service"})
+@Description("ETA lookup for one or more tickets of a queue")
+@StackTrace(false)
+public class EtaFetchEvent extends OutcomeEvent {
+
+    @Label("Queue Id")
+    public String queueId;
+
+    @Label("Source")
+    @Description("local (rate snapshot), remote (Service B) or fallback")
+    public String source;
+
+    @Label("Tickets")
+    public int tickets;
+}
@@ -0,0 +1,28 @@
+package com.smartqueue.aws.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.smartqueue.queue.Position")
+@Label("Position Computation")
+@Category({"SmartQueue", "Queue Service"})
+@Description("Waiting tickets read and ordered to find a ticket's position")
+@StackTrace(false)
+public class PositionEvent extends OutcomeEvent {
+
+    @Label("Queue Id")
+    public String queueId;
+
+    @Label("Kind")
+    @Description("current: position of an existing ticket, next: position for a new ticket")
+    public String kind;
+
+    @Label("Waiting Tickets")
+    public int waitingTickets;
+
+    @Label("Position")
+    public int position;
+}
@@ -0,0 +1,24 @@
+package com.smartqueue.aws.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.smartqueue.queue.TicketWrite")
+@Label("Ticket Write")
+@Category({"SmartQueue", "Queue Service"})
+@Description("Ticket writes of one queue operation")
+@StackTrace(false)
+public class TicketWriteEvent extends OutcomeEvent {
+
+    @Label("Queue Id")
+    public String queueId;
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Tickets")
+    public int tickets;
+}
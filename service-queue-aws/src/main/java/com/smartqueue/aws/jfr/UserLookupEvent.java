@@ -0,0 +1,21 @@
+package com.smartqueue.aws.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.smartqueue.queue.UserLookup")
+@Label("User Lookup")
+@Category({"SmartQueue", "Queue Service"})
+@Description("User read while joining a queue")
+@StackTrace(false)
+public class UserLookupEvent extends OutcomeEvent {
+
+    @Label("Queue Id")
+    public String queueId;
+
+    @Label("Found")
+    public boolean found;
+}
@@ -0,0 +1,39 @@
+package com.smartqueue.aws.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSortKey;
+
+import java.time.Instant;
+
+// Relay position for one queue, stored in the outbox table under a sort key that sorts after
+// every event sequence. Events up to and including "delivered" have reached Service B.
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@DynamoDbBean
+public class OutboxCursor {
+
+    public static final String SORT_KEY = "~cursor";
+
+    private String queueId;
+    @Builder.Default
+    private String sequence = SORT_KEY;
+    private String delivered;
+    private Instant updatedAt;
+
+    @DynamoDbPartitionKey
+    public String getQueueId() {
+        return queueId;
+    }
+
+    @DynamoDbSortKey
+    public String getSequence() {
+        return sequence;
+    }
+}
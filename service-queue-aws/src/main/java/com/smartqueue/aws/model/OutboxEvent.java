@@ -0,0 +1,59 @@
+package com.smartqueue.aws.model;
+
+import com.smartqueue.aws.contract.QueueEventType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSortKey;
+
+import java.time.Instant;
+import java.util.UUID;
+
+// One queue state change, written in the same transaction as the ticket mutation.
+// Rows of a queue are ordered by sequence ("<13-digit epoch millis>#<eventId>").
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@DynamoDbBean
+public class OutboxEvent {
+
+    private String queueId;
+    private String sequence;
+    private String eventId;
+    private QueueEventType type; // stored by name, the type the ETA service receives
+    private String ticketId;
+    private Integer position;
+    private Instant occurredAt;
+    private Long expiresAt; // epoch seconds, DynamoDB TTL attribute; bounds the replay window
+
+    @DynamoDbPartitionKey
+    public String getQueueId() {
+        return queueId;
+    }
+
+    @DynamoDbSortKey
+    public String getSequence() {
+        return sequence;
+    }
+
+    public static String sequenceAt(long epochMillis, String eventId) {
+        return String.format("%013d#%s", epochMillis, eventId);
+    }
+
+    public static OutboxEvent of(QueueEventType type, Ticket ticket, Instant now) {
+        String eventId = UUID.randomUUID().toString();
+        return OutboxEvent.builder()
+                .queueId(ticket.getQueueId())
+                .sequence(sequenceAt(now.toEpochMilli(), eventId))
+                .eventId(eventId)
+                .type(type)
+                .ticketId(ticket.getTicketId())
+                .position(ticket.getPosition())
+                .occurredAt(now)
+                .build();
+    }
+}
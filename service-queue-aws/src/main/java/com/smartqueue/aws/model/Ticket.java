@@ -34,6 +34,7 @@ public class Ticket {
     private double estimatedWaitMinutes;
     private boolean emailNotificationEnabled;
     private boolean smsNotificationEnabled;
+    private Long expiresAt; // epoch seconds, DynamoDB TTL attribute; set once the ticket is finished
     
     @DynamoDbPartitionKey
     public String getTicketId() {
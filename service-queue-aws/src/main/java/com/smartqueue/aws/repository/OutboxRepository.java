@@ -0,0 +1,154 @@
+package com.smartqueue.aws.repository;
+
+import com.smartqueue.aws.model.OutboxCursor;
+import com.smartqueue.aws.model.OutboxEvent;
+import io.micrometer.observation.annotation.Observed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Expression;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.PutItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryEnhancedRequest;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+// Queue events and per-queue relay cursors share one table: partition = queueId, sort = sequence.
+// Delivered events are not deleted; they stay until DynamoDB TTL removes them so a consumer can
+// replay by moving the cursor back.
+@Slf4j
+@Observed(name = "repository")
+@Repository
+public class OutboxRepository {
+
+    // Sorts before every real sequence
+    public static final String INITIAL_CURSOR = "0";
+
+    private final DynamoDbEnhancedClient dynamoDbClient;
+    private final String outboxTableName;
+    private final long retentionHours;
+    // queueId -> newest event time (epoch ms) of queues that may have undelivered events; the relay reads
+    // only these. Joins may reference queues missing from the queues table, so this is not a subset of it.
+    private final Map<String, Long> dirtyQueues = new ConcurrentHashMap<>();
+
+    public OutboxRepository(DynamoDbEnhancedClient dynamoDbClient,
+                            @Qualifier("outboxTableName") String outboxTableName,
+                            @Value("${service.outbox.retention-hours:72}") long retentionHours) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.outboxTableName = outboxTableName;
+        this.retentionHours = retentionHours;
+    }
+
+    public DynamoDbTable<OutboxEvent> getEventsTable() {
+        return dynamoDbClient.table(outboxTableName, TableSchema.fromBean(OutboxEvent.class));
+    }
+
+    private DynamoDbTable<OutboxCursor> getCursorTable() {
+        return dynamoDbClient.table(outboxTableName, TableSchema.fromBean(OutboxCursor.class));
+    }
+
+    // Stamps the replay-window TTL; the caller writes the event inside its ticket transaction
+    public OutboxEvent prepare(OutboxEvent event) {
+        event.setExpiresAt(event.getOccurredAt().plus(Duration.ofHours(retentionHours)).getEpochSecond());
+        markDirty(event.getQueueId(), event.getOccurredAt().toEpochMilli());
+        return event;
+    }
+
+    public void markDirty(String queueId, long eventAtMillis) {
+        dirtyQueues.merge(queueId, eventAtMillis, Math::max);
+    }
+
+    public Set<String> getDirtyQueues() {
+        return Set.copyOf(dirtyQueues.keySet());
+    }
+
+    // Called after a read found nothing to send. A queue whose newest event is not settled yet stays dirty,
+    // since that read could not see it.
+    public void clearIfSettled(String queueId, long settledBeforeMillis) {
+        dirtyQueues.computeIfPresent(queueId, (id, eventAt) -> eventAt <= settledBeforeMillis ? null : eventAt);
+    }
+
+    public String findCursor(String queueId) {
+        try {
+            OutboxCursor cursor = getCursorTable().getItem(Key.builder()
+                    .partitionValue(queueId)
+                    .sortValue(OutboxCursor.SORT_KEY)
+                    .build());
+            return cursor != null && cursor.getDelivered() != null ? cursor.getDelivered() : INITIAL_CURSOR;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to read outbox cursor for queue " + queueId, e);
+        }
+    }
+
+    // Events after the cursor up to and including upperBound, oldest first
+    public List<OutboxEvent> findAfter(String queueId, String cursor, String upperBound, int limit) {
+        try {
+            QueryConditional after = QueryConditional.sortGreaterThan(Key.builder()
+                    .partitionValue(queueId)
+                    .sortValue(cursor)
+                    .build());
+            return getEventsTable().query(QueryEnhancedRequest.builder()
+                            .queryConditional(after)
+                            .consistentRead(true)
+                            .limit(limit)
+                            .build())
+                    .items()
+                    .stream()
+                    .takeWhile(event -> event.getSequence().compareTo(upperBound) <= 0)
+                    .limit(limit)
+                    .collect(Collectors.toList());
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to read outbox events for queue " + queueId, e);
+        }
+    }
+
+    // Moves the cursor only if nobody else moved it since we read it; false means another relay did
+    public boolean advanceCursor(String queueId, String expected, String delivered) {
+        Expression condition = INITIAL_CURSOR.equals(expected)
+                ? Expression.builder()
+                        .expression("attribute_not_exists(delivered) OR delivered = :expected")
+                        .putExpressionValue(":expected", AttributeValue.builder().s(expected).build())
+                        .build()
+                : Expression.builder()
+                        .expression("delivered = :expected")
+                        .putExpressionValue(":expected", AttributeValue.builder().s(expected).build())
+                        .build();
+        try {
+            getCursorTable().putItem(PutItemEnhancedRequest.builder(OutboxCursor.class)
+                    .item(OutboxCursor.builder()
+                            .queueId(queueId)
+                            .delivered(delivered)
+                            .updatedAt(Instant.now())
+                            .build())
+                    .conditionExpression(condition)
+                    .build());
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+    }
+
+    // Replay: the relay redelivers every retained event of the queue after fromEpochMillis
+    public void resetCursor(String queueId, long fromEpochMillis) {
+        getCursorTable().putItem(OutboxCursor.builder()
+                .queueId(queueId)
+                .delivered(String.format("%013d", Math.max(0, fromEpochMillis)))
+                .updatedAt(Instant.now())
+                .build());
+        markDirty(queueId, 0);
+        log.info("Outbox cursor for queue {} reset to {}", queueId, fromEpochMillis);
+    }
+}
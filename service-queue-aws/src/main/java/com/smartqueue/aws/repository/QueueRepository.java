@@ -1,6 +1,7 @@
 package com.smartqueue.aws.repository;
 
 import com.smartqueue.aws.model.QueueInfo;
+import io.micrometer.observation.annotation.Observed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Repository;
@@ -15,6 +16,7 @@ import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Slf4j
+@Observed(name = "repository")
 @Repository
 @RequiredArgsConstructor
 public class QueueRepository {
@@ -1,18 +1,27 @@
 package com.smartqueue.aws.repository;
 
+import com.smartqueue.aws.contract.QueueEventType;
+import com.smartqueue.aws.config.HotPathLogFilter;
+import com.smartqueue.aws.model.OutboxEvent;
 import com.smartqueue.aws.model.Ticket;
+import io.micrometer.observation.annotation.Observed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
 import software.amazon.awssdk.enhanced.dynamodb.Expression;
 import software.amazon.awssdk.enhanced.dynamodb.Key;
 import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.BatchWriteItemEnhancedRequest;
 import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
 import software.amazon.awssdk.enhanced.dynamodb.model.ScanEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.TransactWriteItemsEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.WriteBatch;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
@@ -20,12 +29,18 @@ import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Slf4j
+@Observed(name = "repository")
 @Repository
 @RequiredArgsConstructor
 public class TicketRepository {
     
     private final DynamoDbEnhancedClient dynamoDbClient;
     private final String ticketsTableName;
+    private final OutboxRepository outboxRepository;
+
+    // How long finished (SERVED/CANCELLED/EXPIRED) tickets stay readable before TTL removes them
+    @Value("${aws.dynamodb.tickets-retention-hours:24}")
+    private long retentionHours;
     
     private DynamoDbTable<Ticket> getTicketsTable() {
         return dynamoDbClient.table(ticketsTableName, TableSchema.fromBean(Ticket.class));
@@ -37,7 +52,23 @@ public class TicketRepository {
         ticket.setJoinedAt(Instant.now());
         getTicketsTable().putItem(ticket);
         
-        log.info("Ticket saved successfully: {}", ticket.getTicketId());
+        log.info(HotPathLogFilter.HOT_PATH, "Ticket saved successfully: {}", ticket.getTicketId());
+        return ticket;
+    }
+    
+    // Ticket put and its outbox event commit together or not at all
+    public Ticket saveWithEvent(Ticket ticket, QueueEventType eventType) {
+        log.debug("Saving ticket {} with {} event", ticket.getTicketId(), eventType);
+
+        Instant now = Instant.now();
+        ticket.setJoinedAt(now);
+        OutboxEvent event = outboxRepository.prepare(OutboxEvent.of(eventType, ticket, now));
+        dynamoDbClient.transactWriteItems(TransactWriteItemsEnhancedRequest.builder()
+                .addPutItem(getTicketsTable(), ticket)
+                .addPutItem(outboxRepository.getEventsTable(), event)
+                .build());
+
+        log.info(HotPathLogFilter.HOT_PATH, "Ticket saved successfully: {}", ticket.getTicketId());
         return ticket;
     }
     
@@ -96,11 +127,28 @@ public class TicketRepository {
             }
             
             Ticket ticket = existingTicket.get();
+            Instant now = Instant.now();
             ticket.setStatus(newStatus);
+            ticket.setUpdatedAt(now);
+            if (newStatus == Ticket.TicketStatus.SERVED) {
+                ticket.setServedAt(now);
+            }
+            if (isFinished(newStatus)) {
+                ticket.setExpiresAt(now.plus(Duration.ofHours(retentionHours)).getEpochSecond());
+            }
             
-            getTicketsTable().updateItem(ticket);
+            QueueEventType eventType = eventTypeFor(newStatus);
+            if (eventType == null) {
+                getTicketsTable().updateItem(ticket);
+            } else {
+                OutboxEvent event = outboxRepository.prepare(OutboxEvent.of(eventType, ticket, now));
+                dynamoDbClient.transactWriteItems(TransactWriteItemsEnhancedRequest.builder()
+                        .addUpdateItem(getTicketsTable(), ticket)
+                        .addPutItem(outboxRepository.getEventsTable(), event)
+                        .build());
+            }
             
-            log.info("Ticket status updated successfully: {}", ticketId);
+            log.info(HotPathLogFilter.HOT_PATH, "Ticket status updated successfully: {}", ticketId);
             return ticket;
         } catch (Exception e) {
             log.error("Error updating ticket status: {}", ticketId, e);
@@ -117,16 +165,88 @@ public class TicketRepository {
                 Ticket ticket = existingTicket.get();
                 ticket.setLastNotifiedAt(Instant.now());
                 getTicketsTable().updateItem(ticket);
-                log.info("Last notified time updated for ticket: {}", ticketId);
+                log.info(HotPathLogFilter.HOT_PATH, "Last notified time updated for ticket: {}", ticketId);
             }
         } catch (Exception e) {
             log.error("Error updating last notified time: {}", ticketId, e);
         }
     }
     
+    private static QueueEventType eventTypeFor(Ticket.TicketStatus status) {
+        switch (status) {
+            case SERVED:
+                return QueueEventType.SERVED;
+            case CANCELLED:
+                return QueueEventType.CANCELLED;
+            default:
+                return null;
+        }
+    }
+
+    private static boolean isFinished(Ticket.TicketStatus status) {
+        return status == Ticket.TicketStatus.SERVED
+                || status == Ticket.TicketStatus.CANCELLED
+                || status == Ticket.TicketStatus.EXPIRED;
+    }
+
+    // Fallback for environments without DynamoDB TTL; deletes in BatchWriteItem chunks of 25
+    public int deleteExpired(long nowEpochSeconds) {
+        try {
+            Expression filterExpression = Expression.builder()
+                    .expression("expiresAt < :now")
+                    .putExpressionValue(":now", AttributeValue.builder().n(String.valueOf(nowEpochSeconds)).build())
+                    .build();
+
+            List<Ticket> expired = getTicketsTable().scan(ScanEnhancedRequest.builder()
+                            .filterExpression(filterExpression)
+                            .attributesToProject("ticketId")
+                            .build())
+                    .items()
+                    .stream()
+                    .collect(Collectors.toList());
+
+            DynamoDbTable<Ticket> table = getTicketsTable();
+            for (int i = 0; i < expired.size(); i += 25) {
+                WriteBatch.Builder<Ticket> batch = WriteBatch.builder(Ticket.class).mappedTableResource(table);
+                for (Ticket ticket : expired.subList(i, Math.min(i + 25, expired.size()))) {
+                    batch.addDeleteItem(Key.builder().partitionValue(ticket.getTicketId()).build());
+                }
+                dynamoDbClient.batchWriteItem(BatchWriteItemEnhancedRequest.builder()
+                        .writeBatches(batch.build())
+                        .build());
+            }
+            return expired.size();
+        } catch (Exception e) {
+            log.error("Error deleting expired tickets", e);
+            return 0;
+        }
+    }
+
     public int countWaitingTickets(String queueId) {
         return findWaitingTicketsByQueue(queueId).size();
     }
+
+    // queueId -> waiting tickets for every queue in one projected scan (queue gauges), instead of one scan per queue
+    public Map<String, Integer> countWaitingByQueue() {
+        try {
+            Expression filterExpression = Expression.builder()
+                    .expression("#status = :status")
+                    .putExpressionName("#status", "status")
+                    .putExpressionValue(":status", AttributeValue.builder().s(Ticket.TicketStatus.WAITING.name()).build())
+                    .build();
+
+            return getTicketsTable().scan(ScanEnhancedRequest.builder()
+                            .filterExpression(filterExpression)
+                            .attributesToProject("queueId")
+                            .build())
+                    .items()
+                    .stream()
+                    .filter(ticket -> ticket.getQueueId() != null)
+                    .collect(Collectors.groupingBy(Ticket::getQueueId, Collectors.summingInt(ticket -> 1)));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to count waiting tickets", e);
+        }
+    }
     
     public void deleteById(String ticketId) {
         log.debug("Deleting ticket: {}", ticketId);
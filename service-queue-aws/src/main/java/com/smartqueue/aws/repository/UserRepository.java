@@ -1,6 +1,7 @@
 package com.smartqueue.aws.repository;
 
 import com.smartqueue.aws.model.User;
+import io.micrometer.observation.annotation.Observed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -15,6 +16,7 @@ import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 
 import java.util.Optional;
 
+@Observed(name = "repository")
 @Repository
 @RequiredArgsConstructor
 @Slf4j
@@ -0,0 +1,263 @@
+package com.smartqueue.aws.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+// Keeps status requests fast while Service B is degraded. Calls pass three checks:
+//   circuit breaker  opens when, over the last window-size calls, the failure or slow-call rate reaches
+//                    its threshold; stays open for open-ms, then lets half-open-calls trial calls through
+//   bulkhead         at most max-concurrent calls in flight; extra calls are rejected, not queued
+//   call timeout     status lookups give up after call-timeout-ms instead of the transport timeout
+// Optionally a hedged second request is sent once the first has taken longer than the observed p95.
+// Rejected and failed calls surface as errors; callers answer from EtaFallbackEstimator.
+@Slf4j
+@Component
+public class EtaCallGuard {
+
+    private enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final int LATENCY_SAMPLES = 256;
+    private static final int P95_REFRESH_EVERY = 32;
+
+    private final int windowSize;
+    private final int minCalls;
+    private final double failureRateThreshold;
+    private final double slowRateThreshold;
+    private final long slowCallNanos;
+    private final long openMillis;
+    private final int halfOpenCalls;
+    private final Duration callTimeout;
+    private final boolean hedgeEnabled;
+    private final long hedgeMinDelayMillis;
+    private final Semaphore bulkhead;
+
+    // Outcome ring for the breaker; guarded by this
+    private final boolean[] failed;
+    private final boolean[] slow;
+    private int next;
+    private int recorded;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenInFlight;
+    private int halfOpenSucceeded;
+
+    // Successful call latencies for the hedge delay; guarded by this
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int latencyNext;
+    private int latencyCount;
+    private volatile long p95Millis;
+
+    private final Counter rejectedCounter;
+    private final Counter shortCircuitedCounter;
+    private final Counter hedgedCounter;
+
+    public EtaCallGuard(@Value("${service.eta.resilience.window-size:50}") int windowSize,
+                        @Value("${service.eta.resilience.min-calls:20}") int minCalls,
+                        @Value("${service.eta.resilience.failure-rate-threshold:0.5}") double failureRateThreshold,
+                        @Value("${service.eta.resilience.slow-rate-threshold:0.5}") double slowRateThreshold,
+                        @Value("${service.eta.resilience.slow-call-ms:500}") long slowCallMillis,
+                        @Value("${service.eta.resilience.open-ms:10000}") long openMillis,
+                        @Value("${service.eta.resilience.half-open-calls:3}") int halfOpenCalls,
+                        @Value("${service.eta.resilience.max-concurrent:64}") int maxConcurrent,
+                        @Value("${service.eta.resilience.call-timeout-ms:1000}") long callTimeoutMillis,
+                        @Value("${service.eta.resilience.hedge-enabled:false}") boolean hedgeEnabled,
+                        @Value("${service.eta.resilience.hedge-min-delay-ms:50}") long hedgeMinDelayMillis,
+                        MeterRegistry meterRegistry) {
+        this.windowSize = Math.max(1, windowSize);
+        this.minCalls = Math.max(1, Math.min(minCalls, this.windowSize));
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowRateThreshold = slowRateThreshold;
+        this.slowCallNanos = Duration.ofMillis(slowCallMillis).toNanos();
+        this.openMillis = openMillis;
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        this.callTimeout = Duration.ofMillis(callTimeoutMillis);
+        this.hedgeEnabled = hedgeEnabled;
+        this.hedgeMinDelayMillis = hedgeMinDelayMillis;
+        this.bulkhead = new Semaphore(Math.max(1, maxConcurrent));
+        this.failed = new boolean[this.windowSize];
+        this.slow = new boolean[this.windowSize];
+        this.p95Millis = hedgeMinDelayMillis;
+
+        Gauge.builder("eta.client.circuit.state", this, guard -> guard.currentState().ordinal())
+                .description("ETA client circuit breaker state (0 closed, 1 open, 2 half-open)")
+                .register(meterRegistry);
+        Gauge.builder("eta.client.inflight", bulkhead, b -> Math.max(1, maxConcurrent) - b.availablePermits())
+                .description("ETA status calls in flight")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("eta.client.rejected")
+                .description("ETA calls rejected by the bulkhead")
+                .register(meterRegistry);
+        shortCircuitedCounter = Counter.builder("eta.client.short-circuited")
+                .description("ETA calls not attempted because the circuit was open")
+                .register(meterRegistry);
+        hedgedCounter = Counter.builder("eta.client.hedged")
+                .description("Hedged second ETA requests sent")
+                .register(meterRegistry);
+    }
+
+    public <T> Mono<T> call(Supplier<Mono<T>> call, boolean hedge) {
+        return Mono.defer(() -> {
+            RuntimeException rejected = admit();
+            if (rejected != null) return Mono.error(rejected);
+
+            long start = System.nanoTime();
+            Mono<T> attempt = hedge && hedgeEnabled ? hedged(call) : call.get();
+            return attempt
+                    .timeout(callTimeout)
+                    .doOnSuccess(v -> onSuccess(System.nanoTime() - start))
+                    .doOnError(e -> onFailure())
+                    .doFinally(this::release);
+        });
+    }
+
+    // Streams have no hedge and no slow-call accounting (their duration grows with the batch);
+    // the timeout bounds the wait for each element
+    public <T> Flux<T> callMany(Supplier<Flux<T>> call) {
+        return Flux.defer(() -> {
+            RuntimeException rejected = admit();
+            if (rejected != null) return Flux.error(rejected);
+
+            return call.get()
+                    .timeout(callTimeout)
+                    .doOnComplete(() -> onSuccess(-1))
+                    .doOnError(e -> onFailure())
+                    .doFinally(this::release);
+        });
+    }
+
+    private <T> Mono<T> hedged(Supplier<Mono<T>> call) {
+        Mono<T> second = Mono.delay(Duration.ofMillis(Math.max(hedgeMinDelayMillis, p95Millis)))
+                .then(Mono.defer(() -> {
+                    // Never hedge into a degraded service or past the bulkhead
+                    if (currentState() != State.CLOSED || !bulkhead.tryAcquire()) return Mono.<T>empty();
+                    hedgedCounter.increment();
+                    return call.get().doFinally(signal -> bulkhead.release());
+                }));
+        return Mono.firstWithValue(call.get(), second);
+    }
+
+    // Null when the call may proceed (holding a bulkhead permit), otherwise the rejection
+    private RuntimeException admit() {
+        synchronized (this) {
+            if (state == State.OPEN) {
+                if (System.currentTimeMillis() - openedAt < openMillis) {
+                    shortCircuitedCounter.increment();
+                    return new RuntimeException("ETA service circuit open");
+                }
+                state = State.HALF_OPEN;
+                halfOpenInFlight = 0;
+                halfOpenSucceeded = 0;
+                log.info("ETA client circuit half-open, sending trial calls");
+            }
+            if (state == State.HALF_OPEN) {
+                if (halfOpenInFlight >= halfOpenCalls) {
+                    shortCircuitedCounter.increment();
+                    return new RuntimeException("ETA service circuit half-open, trial calls in flight");
+                }
+                halfOpenInFlight++;
+            }
+        }
+        if (!bulkhead.tryAcquire()) {
+            synchronized (this) {
+                if (state == State.HALF_OPEN) halfOpenInFlight--;
+            }
+            rejectedCounter.increment();
+            return new RuntimeException("ETA service bulkhead full");
+        }
+        return null;
+    }
+
+    private void release(SignalType signal) {
+        bulkhead.release();
+        if (signal == SignalType.CANCEL) {
+            // Caller gave up (e.g. the hedge won); a cancelled trial must not hold its half-open slot
+            synchronized (this) {
+                if (state == State.HALF_OPEN) halfOpenInFlight = Math.max(0, halfOpenInFlight - 1);
+            }
+        }
+    }
+
+    // elapsedNanos < 0: duration not comparable to single lookups
+    private synchronized void onSuccess(long elapsedNanos) {
+        if (elapsedNanos >= 0) recordLatency(elapsedNanos);
+        if (state == State.HALF_OPEN) {
+            halfOpenInFlight = Math.max(0, halfOpenInFlight - 1);
+            if (++halfOpenSucceeded >= halfOpenCalls) {
+                state = State.CLOSED;
+                resetWindow();
+                log.info("ETA client circuit closed");
+            }
+            return;
+        }
+        record(false, elapsedNanos >= slowCallNanos);
+    }
+
+    private synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open("trial call failed");
+            return;
+        }
+        record(true, false);
+    }
+
+    private void record(boolean failure, boolean slowCall) {
+        failed[next] = failure;
+        slow[next] = slowCall;
+        next = (next + 1) % windowSize;
+        if (recorded < windowSize) recorded++;
+        if (state != State.CLOSED || recorded < minCalls) return;
+
+        int failures = 0;
+        int slowCalls = 0;
+        for (int i = 0; i < recorded; i++) {
+            if (failed[i]) failures++;
+            if (slow[i]) slowCalls++;
+        }
+        if (failures >= failureRateThreshold * recorded) {
+            open(failures + "/" + recorded + " calls failed");
+        } else if (slowCalls >= slowRateThreshold * recorded) {
+            open(slowCalls + "/" + recorded + " calls slow");
+        }
+    }
+
+    private void open(String reason) {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        resetWindow();
+        log.warn("ETA client circuit opened for {}ms: {}", openMillis, reason);
+    }
+
+    private void resetWindow() {
+        Arrays.fill(failed, false);
+        Arrays.fill(slow, false);
+        next = 0;
+        recorded = 0;
+    }
+
+    private void recordLatency(long nanos) {
+        latencies[latencyNext] = nanos;
+        latencyNext = (latencyNext + 1) % LATENCY_SAMPLES;
+        if (latencyCount < LATENCY_SAMPLES) latencyCount++;
+        if (latencyNext % P95_REFRESH_EVERY == 0) {
+            long[] sorted = Arrays.copyOf(latencies, latencyCount);
+            Arrays.sort(sorted);
+            p95Millis = Duration.ofNanos(sorted[(int) Math.floor(0.95 * (sorted.length - 1))]).toMillis();
+        }
+    }
+
+    private synchronized State currentState() {
+        return state;
+    }
+}
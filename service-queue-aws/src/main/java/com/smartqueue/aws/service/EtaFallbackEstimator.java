@@ -0,0 +1,44 @@
+package com.smartqueue.aws.service;
+
+import com.smartqueue.aws.contract.EtaEstimate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Local ETA when Service B is unavailable or too slow: position / the queue's last service rate
+// reported by Service B, as long as that rate is recent; otherwise the flat 5 minutes per position.
+@Component
+public class EtaFallbackEstimator {
+
+    private final long maxAgeMillis;
+    private final int minutesPerPosition;
+
+    private final Map<String, CachedRate> rates = new ConcurrentHashMap<>();
+
+    public EtaFallbackEstimator(@Value("${service.eta.fallback.rate-max-age-minutes:30}") long maxAgeMinutes,
+                                @Value("${service.eta.fallback.minutes-per-position:5}") int minutesPerPosition) {
+        this.maxAgeMillis = maxAgeMinutes * 60_000L;
+        this.minutesPerPosition = minutesPerPosition;
+    }
+
+    private record CachedRate(double serviceRate, long seenAt) {}
+
+    public void remember(EtaEstimate result) {
+        remember(result.queueId(), result.serviceRate());
+    }
+
+    public void remember(String queueId, Double rate) {
+        if (queueId == null || rate == null || rate <= 0 || rate.isNaN()) return;
+        rates.put(queueId, new CachedRate(rate, System.currentTimeMillis()));
+    }
+
+    public int estimate(String queueId, int position) {
+        CachedRate cached = rates.get(queueId);
+        if (cached == null || System.currentTimeMillis() - cached.seenAt() > maxAgeMillis) {
+            return position * minutesPerPosition;
+        }
+        return Math.max(1, (int) Math.ceil(position / cached.serviceRate()));
+    }
+}
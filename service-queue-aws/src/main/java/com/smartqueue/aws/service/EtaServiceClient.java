@@ -0,0 +1,162 @@
+package com.smartqueue.aws.service;
+
+import com.smartqueue.aws.config.RSocketTracing;
+import com.smartqueue.aws.contract.EtaEstimate;
+import com.smartqueue.aws.contract.EtaQuery;
+import com.smartqueue.aws.contract.EtaQueryBatch;
+import com.smartqueue.aws.contract.QueueEvent;
+import com.smartqueue.aws.contract.QueueEventAck;
+import com.smartqueue.aws.contract.QueueEventBatch;
+import com.smartqueue.aws.contract.RateSnapshot;
+import com.smartqueue.aws.contract.ServedBatchAck;
+import com.smartqueue.aws.contract.ServedWindowBatch;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+// All queue -> ETA service calls. service.eta.transport=rsocket (default) sends CBOR messages over one
+// persistent RSocket connection (routes in the ETA service's EtaRSocketController); http keeps the JSON
+// endpoints for environments where the RSocket port is not reachable. Both transports carry the records of
+// com.smartqueue.aws.contract (smartqueue-common), which the ETA service compiles against as well. Every call carries the ETA timeout;
+// the status lookups additionally go through EtaCallGuard and teach EtaFallbackEstimator each queue's rate.
+// Tracing: WebClient adds a client span and the traceparent header itself; RSocket calls get a client
+// span (eta.rsocket) whose context goes along as RSocket metadata (RSocketTracing).
+@Slf4j
+@Component
+public class EtaServiceClient {
+
+    private final WebClient etaServiceWebClient;
+    private final RSocketRequester etaRSocketRequester;
+    private final Duration etaServiceTimeout;
+    private final EtaCallGuard callGuard;
+    private final EtaFallbackEstimator fallbackEstimator;
+    private final ObservationRegistry observationRegistry;
+    private final boolean rsocket;
+    private final Duration ratesPollInterval;
+
+    public EtaServiceClient(WebClient etaServiceWebClient,
+                            RSocketRequester etaRSocketRequester,
+                            Duration etaServiceTimeout,
+                            EtaCallGuard callGuard,
+                            EtaFallbackEstimator fallbackEstimator,
+                            ObservationRegistry observationRegistry,
+                            @Value("${service.eta.transport:rsocket}") String transport,
+                            @Value("${service.eta.rates.poll-interval-ms:15000}") long ratesPollIntervalMs) {
+        this.etaServiceWebClient = etaServiceWebClient;
+        this.etaRSocketRequester = etaRSocketRequester;
+        this.etaServiceTimeout = etaServiceTimeout;
+        this.callGuard = callGuard;
+        this.fallbackEstimator = fallbackEstimator;
+        this.observationRegistry = observationRegistry;
+        this.rsocket = "rsocket".equalsIgnoreCase(transport);
+        this.ratesPollInterval = Duration.ofMillis(ratesPollIntervalMs);
+        log.info("ETA service client using {} transport", rsocket ? "rsocket" : "http");
+    }
+
+    public Mono<EtaEstimate> getEta(String queueId, String ticketId, int position) {
+        return callGuard.call(() -> requestEta(queueId, ticketId, position), true)
+                .doOnNext(fallbackEstimator::remember);
+    }
+
+    private Mono<EtaEstimate> requestEta(String queueId, String ticketId, int position) {
+        Mono<EtaEstimate> call = rsocket
+                ? RSocketTracing.request(observationRegistry, "eta.rsocket", "eta",
+                        traceContext -> route("eta", traceContext)
+                                .data(new EtaQuery(queueId, ticketId, position))
+                                .retrieveMono(EtaEstimate.class))
+                : etaServiceWebClient
+                        .get()
+                        .uri("/eta?queueId={queueId}&ticketId={ticketId}&position={position}", queueId, ticketId, position)
+                        .retrieve()
+                        .bodyToMono(EtaEstimate.class);
+        return call.timeout(etaServiceTimeout);
+    }
+
+    // Results stream back as they are computed
+    public Flux<EtaEstimate> getEtaBatch(List<EtaQuery> tickets) {
+        return callGuard.callMany(() -> requestEtaBatch(tickets))
+                .doOnNext(fallbackEstimator::remember);
+    }
+
+    private Flux<EtaEstimate> requestEtaBatch(List<EtaQuery> tickets) {
+        EtaQueryBatch request = new EtaQueryBatch(tickets);
+        Flux<EtaEstimate> call = rsocket
+                ? RSocketTracing.requestMany(observationRegistry, "eta.rsocket", "eta.batch",
+                        traceContext -> route("eta.batch", traceContext)
+                                .data(request)
+                                .retrieveFlux(EtaEstimate.class))
+                : etaServiceWebClient
+                        .post()
+                        .uri("/eta/batch")
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .bodyValue(request)
+                        .retrieve()
+                        .bodyToFlux(EtaEstimate.class);
+        return call.timeout(etaServiceTimeout);
+    }
+
+    // A retry must resend the same batch (same batchId) so the ETA service can drop it if it already applied it
+    public Mono<Void> reportServed(ServedWindowBatch request) {
+        Mono<?> call = rsocket
+                ? RSocketTracing.request(observationRegistry, "eta.rsocket", "stats.served.batch",
+                        traceContext -> route("stats.served.batch", traceContext)
+                                .data(request)
+                                .retrieveMono(ServedBatchAck.class))
+                : etaServiceWebClient
+                        .post()
+                        .uri("/stats/served/batch")
+                        .bodyValue(request)
+                        .retrieve()
+                        .toBodilessEntity();
+        return call.timeout(etaServiceTimeout).then();
+    }
+
+    // events: outbox events in delivery order; completes only once the ETA service acknowledged them
+    public Mono<Void> publishEvents(List<QueueEvent> events) {
+        QueueEventBatch request = new QueueEventBatch(events);
+        Mono<?> call = rsocket
+                ? RSocketTracing.request(observationRegistry, "eta.rsocket", "events.batch",
+                        traceContext -> route("events.batch", traceContext)
+                                .data(request)
+                                .retrieveMono(QueueEventAck.class))
+                : etaServiceWebClient
+                        .post()
+                        .uri("/events/batch")
+                        .bodyValue(request)
+                        .retrieve()
+                        .toBodilessEntity();
+        return call.timeout(etaServiceTimeout).then();
+    }
+
+    private RSocketRequester.RequestSpec route(String route, String traceContext) {
+        RSocketRequester.RequestSpec spec = etaRSocketRequester.route(route);
+        return traceContext.isEmpty() ? spec : spec.metadata(traceContext, RSocketTracing.TRACE_CONTEXT);
+    }
+
+    // Endless feed of per-queue rate snapshots: pushed over the RSocket connection, polled from /rates
+    // over http. Errors end the feed; the subscriber resubscribes.
+    public Flux<RateSnapshot> rateSnapshots() {
+        if (rsocket) {
+            return etaRSocketRequester
+                    .route("rates.stream")
+                    .retrieveFlux(RateSnapshot.class);
+        }
+        return Flux.interval(Duration.ZERO, ratesPollInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> etaServiceWebClient
+                        .get()
+                        .uri("/rates")
+                        .retrieve()
+                        .bodyToFlux(RateSnapshot.class)
+                        .timeout(etaServiceTimeout), 1);
+    }
+}
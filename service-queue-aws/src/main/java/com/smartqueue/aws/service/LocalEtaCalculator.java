@@ -0,0 +1,117 @@
+package com.smartqueue.aws.service;
+
+import com.smartqueue.aws.contract.RateSnapshot;
+import com.smartqueue.aws.repository.QueueRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Status ETAs computed in-process from the rate snapshots Service B pushes (EtaServiceClient.rateSnapshots),
+// so a status request needs no remote call. A queue without a valid snapshot (never pushed, or past its
+// validUntil because the feed is down) returns null and the caller asks Service B instead. Received rates
+// also feed EtaFallbackEstimator and are written to QueueInfo.serviceRateEma when they moved noticeably.
+@Slf4j
+@Component
+public class LocalEtaCalculator {
+
+    private final EtaServiceClient etaServiceClient;
+    private final EtaFallbackEstimator fallbackEstimator;
+    private final QueueRepository queueRepository;
+    private final boolean enabled;
+    private final double persistMinChange;
+    private final long persistMinIntervalMillis;
+
+    private final Map<String, RateSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final Map<String, PersistedRate> persisted = new ConcurrentHashMap<>();
+    private volatile Disposable subscription;
+
+    public LocalEtaCalculator(EtaServiceClient etaServiceClient,
+                              EtaFallbackEstimator fallbackEstimator,
+                              QueueRepository queueRepository,
+                              @Value("${service.eta.rates.local-enabled:true}") boolean enabled,
+                              @Value("${service.eta.rates.persist-min-change:0.05}") double persistMinChange,
+                              @Value("${service.eta.rates.persist-min-interval-ms:60000}") long persistMinIntervalMillis) {
+        this.etaServiceClient = etaServiceClient;
+        this.fallbackEstimator = fallbackEstimator;
+        this.queueRepository = queueRepository;
+        this.enabled = enabled;
+        this.persistMinChange = persistMinChange;
+        this.persistMinIntervalMillis = persistMinIntervalMillis;
+    }
+
+    private record PersistedRate(double serviceRate, long savedAt) {}
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            log.info("Local ETA computation disabled, every status ETA goes to service B");
+            return;
+        }
+        subscription = etaServiceClient.rateSnapshots()
+                .doOnSubscribe(s -> log.info("Subscribed to service B rate snapshots"))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(signal -> log.warn("Rate snapshot feed failed, resubscribing: {}",
+                                signal.failure().getMessage())))
+                .subscribe(this::accept, e -> log.error("Rate snapshot feed stopped", e));
+    }
+
+    @PreDestroy
+    public void stop() {
+        Disposable current = subscription;
+        if (current != null) current.dispose();
+    }
+
+    // Null when no valid snapshot is held for the queue
+    public Integer estimate(String queueId, int position) {
+        RateSnapshot snapshot = snapshots.get(queueId);
+        if (snapshot == null || snapshot.validUntil() == null || Instant.now().isAfter(snapshot.validUntil())) {
+            return null;
+        }
+        double minutes = position / snapshot.serviceRate();
+        if (snapshot.longQueueThreshold() != null && position > snapshot.longQueueThreshold()) {
+            minutes *= snapshot.longQueueFactor();
+        }
+        minutes *= snapshot.etaFactor();
+        return Math.max(1, (int) Math.ceil(minutes));
+    }
+
+    private void accept(RateSnapshot snapshot) {
+        Double rate = snapshot.serviceRate();
+        if (snapshot.queueId() == null || rate == null || rate <= 0 || rate.isNaN()
+                || snapshot.etaFactor() == null || snapshot.longQueueFactor() == null) {
+            return;
+        }
+        snapshots.put(snapshot.queueId(), snapshot);
+        fallbackEstimator.remember(snapshot.queueId(), rate);
+        persistIfMoved(snapshot.queueId(), rate);
+    }
+
+    // Off the feed thread; at most one write per queue per interval, and only when the rate moved
+    private void persistIfMoved(String queueId, double rate) {
+        long now = System.currentTimeMillis();
+        PersistedRate last = persisted.get(queueId);
+        if (last != null && (now - last.savedAt() < persistMinIntervalMillis
+                || Math.abs(rate - last.serviceRate()) < persistMinChange * last.serviceRate())) {
+            return;
+        }
+        persisted.put(queueId, new PersistedRate(rate, now));
+        Schedulers.boundedElastic().schedule(() -> {
+            try {
+                queueRepository.updateServiceRate(queueId, rate);
+            } catch (Exception e) {
+                log.debug("Could not store service rate for queue {}: {}", queueId, e.getMessage());
+            }
+        });
+    }
+}
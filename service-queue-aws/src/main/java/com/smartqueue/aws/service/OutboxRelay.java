@@ -0,0 +1,150 @@
+package com.smartqueue.aws.service;
+
+import com.smartqueue.aws.contract.QueueEvent;
+import com.smartqueue.aws.model.OutboxEvent;
+import com.smartqueue.aws.model.QueueInfo;
+import com.smartqueue.aws.repository.OutboxRepository;
+import com.smartqueue.aws.repository.QueueRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Drains the queue-event outbox to Service B (events.batch). Each tick reads the events after the
+// cursor of every dirty queue (written since it was last found drained), sends them oldest-first in one
+// batch, and only then advances the cursors, so delivery is at-least-once and ordered per queue; the
+// consumer must tolerate duplicates. An idle tick costs no reads. Every queue is marked dirty once per
+// service.outbox.queue-refresh-interval-ms to pick up events other replicas or an earlier process wrote.
+// The batch is shared out evenly and the first queue read rotates each tick, so a busy queue cannot
+// starve the others. Events younger than service.outbox.settle-ms are left for the next tick so a
+// transaction that committed late with an earlier timestamp is not skipped. After a failure the relay
+// backs off exponentially and catches up from the cursors once Service B is reachable again.
+@Slf4j
+@Component
+public class OutboxRelay {
+
+    private final OutboxRepository outboxRepository;
+    private final QueueRepository queueRepository;
+    private final EtaServiceClient etaServiceClient;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long settleMillis;
+    private final long queueRefreshMillis;
+    private final long backoffMaxMillis;
+
+    private final AtomicBoolean relaying = new AtomicBoolean();
+    private volatile long queuesRefreshedAt;
+    // Position of the first queue read next tick; only touched by the tick holding relaying
+    private int rotation;
+    private volatile long backoffMillis;
+    private volatile long nextAttemptAt;
+
+    public OutboxRelay(OutboxRepository outboxRepository,
+                       QueueRepository queueRepository,
+                       EtaServiceClient etaServiceClient,
+                       @Value("${service.outbox.relay-enabled:true}") boolean enabled,
+                       @Value("${service.outbox.batch-size:500}") int batchSize,
+                       @Value("${service.outbox.settle-ms:2000}") long settleMillis,
+                       @Value("${service.outbox.queue-refresh-interval-ms:30000}") long queueRefreshMillis,
+                       @Value("${service.outbox.backoff-max-ms:60000}") long backoffMaxMillis) {
+        this.outboxRepository = outboxRepository;
+        this.queueRepository = queueRepository;
+        this.etaServiceClient = etaServiceClient;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.settleMillis = settleMillis;
+        this.queueRefreshMillis = queueRefreshMillis;
+        this.backoffMaxMillis = backoffMaxMillis;
+    }
+
+    @Scheduled(fixedDelayString = "${service.outbox.relay-interval-ms:1000}")
+    public void relay() {
+        if (!enabled || System.currentTimeMillis() < nextAttemptAt) return;
+        if (!relaying.compareAndSet(false, true)) return;
+        try {
+            int delivered = relayOnce();
+            backoffMillis = 0;
+            if (delivered > 0) {
+                log.debug("Relayed {} queue events to service B", delivered);
+            }
+        } catch (Exception e) {
+            backoffMillis = backoffMillis == 0 ? 1000 : Math.min(backoffMaxMillis, backoffMillis * 2);
+            nextAttemptAt = System.currentTimeMillis() + backoffMillis;
+            log.warn("Outbox relay failed, retrying in {}ms: {}", backoffMillis, e.getMessage());
+        } finally {
+            relaying.set(false);
+        }
+    }
+
+    private int relayOnce() {
+        long settledBefore = System.currentTimeMillis() - settleMillis;
+        String upperBound = OutboxEvent.sequenceAt(settledBefore, "~");
+        List<String> queues = dirtyQueues();
+        if (queues.isEmpty()) return 0;
+
+        // An even share of the batch per queue, at least one event; queues left unread stay dirty
+        int share = Math.max(1, batchSize / queues.size());
+        int start = Math.floorMod(rotation, queues.size());
+        // queueId -> cursor read this tick, and the events found after it
+        Map<String, String> cursors = new LinkedHashMap<>();
+        Map<String, List<OutboxEvent>> pending = new LinkedHashMap<>();
+        int total = 0;
+        int read = 0;
+        for (; read < queues.size() && total < batchSize; read++) {
+            String queueId = queues.get((start + read) % queues.size());
+            String cursor = outboxRepository.findCursor(queueId);
+            List<OutboxEvent> events = outboxRepository.findAfter(queueId, cursor, upperBound,
+                    Math.min(share, batchSize - total));
+            if (events.isEmpty()) {
+                outboxRepository.clearIfSettled(queueId, settledBefore);
+                continue;
+            }
+            cursors.put(queueId, cursor);
+            pending.put(queueId, events);
+            total += events.size();
+        }
+        // Next tick starts after the last queue read, so queues the budget did not reach go first
+        rotation = start + read;
+        if (total == 0) return 0;
+
+        List<QueueEvent> batch = new ArrayList<>(total);
+        pending.values().forEach(events -> events.forEach(event -> batch.add(toPayload(event))));
+
+        etaServiceClient.publishEvents(batch).block();
+
+        pending.forEach((queueId, events) -> {
+            String last = events.get(events.size() - 1).getSequence();
+            if (!outboxRepository.advanceCursor(queueId, cursors.get(queueId), last)) {
+                // Another relay or a replay moved it; its position wins and we may have sent duplicates
+                log.info("Outbox cursor for queue {} moved concurrently, keeping the newer position", queueId);
+            }
+        });
+        return total;
+    }
+
+    private List<String> dirtyQueues() {
+        long now = System.currentTimeMillis();
+        if (now - queuesRefreshedAt >= queueRefreshMillis) {
+            // Time 0: each stays dirty only until one read finds it drained
+            for (QueueInfo queue : queueRepository.findAll()) {
+                outboxRepository.markDirty(queue.getQueueId(), 0);
+            }
+            queuesRefreshedAt = now;
+        }
+        // Sorted so the rotation walks a stable order
+        List<String> queues = new ArrayList<>(outboxRepository.getDirtyQueues());
+        queues.sort(null);
+        return queues;
+    }
+
+    private static QueueEvent toPayload(OutboxEvent event) {
+        return new QueueEvent(event.getEventId(), event.getType(), event.getQueueId(), event.getTicketId(),
+                event.getPosition(), event.getOccurredAt());
+    }
+}
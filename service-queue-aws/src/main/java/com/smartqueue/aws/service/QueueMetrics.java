@@ -0,0 +1,81 @@
+package com.smartqueue.aws.service;
+
+import com.smartqueue.aws.model.QueueInfo;
+import com.smartqueue.aws.repository.QueueRepository;
+import com.smartqueue.aws.repository.TicketRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Per-queue gauges (tag queueId): queue.waiting and queue.open.slots. Scrapes read cached values; a
+// scheduled refresh does one queues scan and one projected tickets scan, whatever the scrape rate.
+// Gauges of queues that disappeared are removed.
+@Slf4j
+@Component
+public class QueueMetrics {
+
+    private final QueueRepository queueRepository;
+    private final TicketRepository ticketRepository;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, QueueGauges> gauges = new ConcurrentHashMap<>();
+
+    public QueueMetrics(QueueRepository queueRepository, TicketRepository ticketRepository, MeterRegistry meterRegistry) {
+        this.queueRepository = queueRepository;
+        this.ticketRepository = ticketRepository;
+        this.meterRegistry = meterRegistry;
+    }
+
+    private record QueueGauges(AtomicInteger waiting, AtomicInteger openSlots, List<Meter> meters) {}
+
+    @Scheduled(fixedDelayString = "${service.metrics.queue-refresh-interval-ms:30000}")
+    public void refresh() {
+        try {
+            Map<String, Integer> waiting = ticketRepository.countWaitingByQueue();
+            Set<String> seen = new HashSet<>();
+            for (QueueInfo queue : queueRepository.findAll()) {
+                QueueGauges g = gaugesFor(queue.getQueueId());
+                g.waiting().set(waiting.getOrDefault(queue.getQueueId(), 0));
+                g.openSlots().set(queue.getOpenSlots() != null ? queue.getOpenSlots() : 0);
+                seen.add(queue.getQueueId());
+            }
+            // Joins may reference queues missing from the queues table
+            waiting.forEach((queueId, count) -> {
+                if (seen.add(queueId)) gaugesFor(queueId).waiting().set(count);
+            });
+            gauges.keySet().removeIf(queueId -> {
+                if (seen.contains(queueId)) return false;
+                gauges.get(queueId).meters().forEach(meterRegistry::remove);
+                return true;
+            });
+        } catch (Exception e) {
+            log.warn("Queue gauge refresh failed: {}", e.getMessage());
+        }
+    }
+
+    private QueueGauges gaugesFor(String queueId) {
+        return gauges.computeIfAbsent(queueId, id -> {
+            AtomicInteger waiting = new AtomicInteger();
+            AtomicInteger openSlots = new AtomicInteger();
+            Meter waitingGauge = Gauge.builder("queue.waiting", waiting, AtomicInteger::get)
+                    .tag("queueId", id)
+                    .description("Tickets waiting in the queue")
+                    .register(meterRegistry);
+            Meter slotsGauge = Gauge.builder("queue.open.slots", openSlots, AtomicInteger::get)
+                    .tag("queueId", id)
+                    .description("Open service slots of the queue")
+                    .register(meterRegistry);
+            return new QueueGauges(waiting, openSlots, List.of(waitingGauge, slotsGauge));
+        });
+    }
+}
@@ -1,10 +1,18 @@
 package com.smartqueue.aws.service;
 
+import com.smartqueue.aws.config.HotPathLogFilter;
+import com.smartqueue.aws.contract.EtaQuery;
+import com.smartqueue.aws.contract.QueueEventType;
 import com.smartqueue.aws.dto.request.JoinQueueRequest;
 import com.smartqueue.aws.dto.request.ProcessNextRequest;
 import com.smartqueue.aws.dto.response.JoinQueueResponse;
 import com.smartqueue.aws.dto.response.ProcessNextResponse;
 import com.smartqueue.aws.dto.response.QueueStatusResponse;
+import com.smartqueue.aws.jfr.EtaFetchEvent;
+import com.smartqueue.aws.jfr.OutcomeEvent;
+import com.smartqueue.aws.jfr.PositionEvent;
+import com.smartqueue.aws.jfr.TicketWriteEvent;
+import com.smartqueue.aws.jfr.UserLookupEvent;
 import com.smartqueue.aws.model.QueueInfo;
 import com.smartqueue.aws.model.Ticket;
 import com.smartqueue.aws.model.User;
@@ -14,11 +22,14 @@ import com.smartqueue.aws.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
 
-import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -31,15 +42,22 @@ public class QueueService {
     private final TicketRepository ticketRepository;
     private final QueueRepository queueRepository;
     private final UserRepository userRepository;
-    private final WebClient etaServiceWebClient;
-    private final Duration etaServiceTimeout;
+    private final EtaServiceClient etaServiceClient;
+    private final EtaFallbackEstimator etaFallbackEstimator;
+    private final LocalEtaCalculator localEtaCalculator;
+    private final ServedCountAccumulator servedCountAccumulator;
     
     public JoinQueueResponse joinQueue(String queueId, JoinQueueRequest request) {
-        log.info("Processing join queue request for queueId: {} by user: {}", queueId, request.getUserId());
+        log.info(HotPathLogFilter.HOT_PATH, "Processing join queue request for queueId: {} by user: {}", queueId, request.getUserId());
         
         try {
             // Get user information
-            Optional<User> userOpt = userRepository.findById(request.getUserId());
+            Optional<User> userOpt = OutcomeEvent.call(new UserLookupEvent(), lookup -> {
+                lookup.queueId = queueId;
+                Optional<User> found = userRepository.findById(request.getUserId());
+                lookup.found = found.isPresent();
+                return found;
+            });
             if (userOpt.isEmpty()) {
                 throw new RuntimeException("User not found: " + request.getUserId());
             }
@@ -47,7 +65,7 @@ public class QueueService {
             User user = userOpt.get();
             
             // Create ticket with full user information
-            Ticket ticket = Ticket.builder()
+            Ticket created = Ticket.builder()
                     .ticketId(Ticket.generateTicketId())
                     .queueId(queueId)
                     .status(Ticket.TicketStatus.WAITING)
@@ -62,20 +80,32 @@ public class QueueService {
                     .build();
             
             // Save ticket
-            ticket = ticketRepository.save(ticket);
+            Ticket ticket = OutcomeEvent.call(new TicketWriteEvent(), write -> {
+                write.queueId = queueId;
+                write.operation = "join";
+                write.tickets = 1;
+                return ticketRepository.save(created);
+            });
             
-            // Calculate position
+            // Calculate position; the final write carries the JOINED outbox event
             int position = calculatePosition(queueId, ticket.getTicketId());
             ticket.setPosition(position);
-            ticketRepository.save(ticket);
+            OutcomeEvent.run(new TicketWriteEvent(), joined -> {
+                joined.queueId = queueId;
+                joined.operation = "join.position";
+                joined.tickets = 1;
+                ticketRepository.saveWithEvent(ticket, QueueEventType.JOINED);
+            });
             
-            log.info("User joined queue successfully. TicketId: {}, Position: {}", ticket.getTicketId(), position);
+            log.info(HotPathLogFilter.HOT_PATH, "User joined queue successfully. TicketId: {}, Position: {}", ticket.getTicketId(), position);
             
             return JoinQueueResponse.builder()
                     .ticketId(ticket.getTicketId())
                     .queueId(queueId)
                     .position(position)
                     .message("Successfully joined queue")
+                    .customerPhone(ticket.isSmsNotificationEnabled() ? ticket.getUserPhone() : null)
+                    .smsNotificationEnabled(ticket.isSmsNotificationEnabled())
                     .build();
                     
         } catch (Exception e) {
@@ -84,40 +114,42 @@ public class QueueService {
         }
     }
     
-    public QueueStatusResponse getQueueStatus(String queueId, String ticketId) {
-        log.info("Getting queue status for queueId: {}, ticketId: {}", queueId, ticketId);
-        
-        try {
-            Optional<Ticket> ticketOpt = ticketRepository.findById(ticketId);
-            if (ticketOpt.isEmpty()) {
-                throw new RuntimeException("Ticket not found: " + ticketId);
-            }
-            
-            Ticket ticket = ticketOpt.get();
-            if (!ticket.getQueueId().equals(queueId)) {
-                throw new RuntimeException("Ticket does not belong to this queue");
-            }
-            
-            // Calculate current position
-            int currentPosition = calculatePosition(queueId, ticketId);
-            
-            // Get ETA from Service B
-            Integer estimatedWaitMinutes = getEstimatedWaitTime(queueId, ticketId, currentPosition);
-            
-            return QueueStatusResponse.builder()
-                    .ticketId(ticketId)
-                    .queueId(queueId)
-                    .position(currentPosition)
-                    .estimatedWaitMinutes(estimatedWaitMinutes)
-                    .status(ticket.getStatus().name())
-                    .message("Queue status retrieved successfully")
-                    .build();
-                    
-        } catch (Exception e) {
-            log.error("Error getting queue status", e);
-            throw new RuntimeException("Failed to get queue status", e);
-        }
+    // The ticket reads are blocking DynamoDB calls and run on boundedElastic; the ETA lookup stays
+    // reactive, so status requests never block a Netty event-loop thread
+    public Mono<QueueStatusResponse> getQueueStatus(String queueId, String ticketId) {
+        log.info(HotPathLogFilter.HOT_PATH, "Getting queue status for queueId: {}, ticketId: {}", queueId, ticketId);
+
+        return Mono.fromCallable(() -> {
+                    Optional<Ticket> ticketOpt = ticketRepository.findById(ticketId);
+                    if (ticketOpt.isEmpty()) {
+                        throw new RuntimeException("Ticket not found: " + ticketId);
+                    }
+
+                    Ticket ticket = ticketOpt.get();
+                    if (!ticket.getQueueId().equals(queueId)) {
+                        throw new RuntimeException("Ticket does not belong to this queue");
+                    }
+
+                    // Calculate current position
+                    return new PositionedTicket(ticket, calculatePosition(queueId, ticketId));
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(found -> getEstimatedWaitTime(queueId, ticketId, found.position())
+                        .map(estimatedWaitMinutes -> QueueStatusResponse.builder()
+                                .ticketId(ticketId)
+                                .queueId(queueId)
+                                .position(found.position())
+                                .estimatedWaitMinutes(estimatedWaitMinutes)
+                                .status(found.ticket().getStatus().name())
+                                .message("Queue status retrieved successfully")
+                                .build()))
+                .onErrorMap(e -> {
+                    log.error("Error getting queue status", e);
+                    return new RuntimeException("Failed to get queue status", e);
+                });
     }
+
+    private record PositionedTicket(Ticket ticket, int position) {}
     
     public ProcessNextResponse processNext(String queueId, ProcessNextRequest request) {
         log.info("Processing next {} customers for queueId: {}", request.getCount(), queueId);
@@ -126,21 +158,24 @@ public class QueueService {
             List<Ticket> waitingTickets = ticketRepository.findWaitingTicketsByQueue(queueId);
             
             int processCount = Math.min(request.getCount(), waitingTickets.size());
-            int processed = 0;
             
-            for (int i = 0; i < processCount; i++) {
-                Ticket ticket = waitingTickets.get(i);
-                ticketRepository.updateStatus(ticket.getTicketId(), Ticket.TicketStatus.SERVED);
-                processed++;
-            }
+            int processed = OutcomeEvent.call(new TicketWriteEvent(), write -> {
+                write.queueId = queueId;
+                write.operation = "serve";
+                for (int i = 0; i < processCount; i++) {
+                    ticketRepository.updateStatus(waitingTickets.get(i).getTicketId(), Ticket.TicketStatus.SERVED);
+                    write.tickets++;
+                }
+                return write.tickets;
+            });
             
             // Update open slots
             Optional<QueueInfo> queueInfoOpt = queueRepository.findById(queueId);
             int newOpenSlots = queueInfoOpt.map(QueueInfo::getOpenSlots).orElse(0) + processed;
             queueRepository.updateOpenSlots(queueId, newOpenSlots);
             
-            // Notify Service B about the processing
-            notifyServiceB(queueId, processed);
+            // Reported to Service B with the next served-count flush
+            servedCountAccumulator.record(queueId, processed);
             
             log.info("Processed {} customers for queueId: {}", processed, queueId);
             
@@ -157,60 +192,174 @@ public class QueueService {
         }
     }
     
-    private int calculatePosition(String queueId, String ticketId) {
-        List<Ticket> waitingTickets = ticketRepository.findWaitingTicketsByQueue(queueId);
-        
-        // Sort by joinedAt timestamp
-        waitingTickets.sort((t1, t2) -> t1.getJoinedAt().compareTo(t2.getJoinedAt()));
-        
-        // Find position of current ticket
-        for (int i = 0; i < waitingTickets.size(); i++) {
-            if (waitingTickets.get(i).getTicketId().equals(ticketId)) {
-                return i + 1; // 1-based position
+    public QueueStatusResponse cancelTicket(String queueId, String ticketId) {
+        log.info("Cancelling ticket {} in queueId: {}", ticketId, queueId);
+
+        try {
+            Optional<Ticket> ticketOpt = ticketRepository.findById(ticketId);
+            if (ticketOpt.isEmpty() || !ticketOpt.get().getQueueId().equals(queueId)) {
+                throw new RuntimeException("Ticket not found in queue: " + ticketId);
+            }
+            if (ticketOpt.get().getStatus() != Ticket.TicketStatus.WAITING) {
+                throw new RuntimeException("Ticket is no longer waiting: " + ticketOpt.get().getStatus());
             }
+
+            // Writes the CANCELLED outbox event with the status change
+            Ticket ticket = ticketRepository.updateStatus(ticketId, Ticket.TicketStatus.CANCELLED);
+
+            return QueueStatusResponse.builder()
+                    .ticketId(ticketId)
+                    .queueId(queueId)
+                    .status(ticket.getStatus().name())
+                    .message("Ticket cancelled successfully")
+                    .build();
+
+        } catch (Exception e) {
+            log.error("Error cancelling ticket: {}", ticketId, e);
+            throw new RuntimeException("Failed to cancel ticket", e);
         }
-        
-        return waitingTickets.size() + 1; // If not found, put at end
     }
     
-    private Integer getEstimatedWaitTime(String queueId, String ticketId, int position) {
-        try {
-            return etaServiceWebClient
-                    .get()
-                    .uri("/eta?queueId={queueId}&ticketId={ticketId}&position={position}", queueId, ticketId, position)
-                    .retrieve()
-                    .bodyToMono(Integer.class)
-                    .timeout(etaServiceTimeout)
-                    .onErrorReturn(position * 5) // Fallback: 5 minutes per position
-                    .block();
-        } catch (Exception e) {
-            log.warn("Failed to get ETA from service B, using fallback calculation", e);
-            return position * 5; // Fallback calculation
-        }
+    private int calculatePosition(String queueId, String ticketId) {
+        return OutcomeEvent.call(new PositionEvent(), event -> {
+            event.queueId = queueId;
+            event.kind = "current";
+            List<Ticket> waitingTickets = ticketRepository.findWaitingTicketsByQueue(queueId);
+            
+            // Sort by joinedAt timestamp
+            waitingTickets.sort((t1, t2) -> t1.getJoinedAt().compareTo(t2.getJoinedAt()));
+            
+            // Find position of current ticket
+            int position = waitingTickets.size() + 1; // If not found, put at end
+            for (int i = 0; i < waitingTickets.size(); i++) {
+                if (waitingTickets.get(i).getTicketId().equals(ticketId)) {
+                    position = i + 1; // 1-based position
+                    break;
+                }
+            }
+            
+            event.waitingTickets = waitingTickets.size();
+            event.position = position;
+            return position;
+        });
     }
     
-    private void notifyServiceB(String queueId, int servedCount) {
-        try {
-            etaServiceWebClient
-                    .post()
-                    .uri("/stats/served")
-                    .bodyValue(Map.of("queueId", queueId, "count", servedCount, "windowSec", 60))
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .timeout(etaServiceTimeout)
-                    .subscribe(
-                        response -> log.debug("Successfully notified service B: {}", response),
-                        error -> log.warn("Failed to notify service B", error)
-                    );
-        } catch (Exception e) {
-            log.warn("Error notifying service B", e);
+    // Local snapshot, else Service B through EtaCallGuard, else the fallback estimate; never fails
+    private Mono<Integer> getEstimatedWaitTime(String queueId, String ticketId, int position) {
+        return Mono.defer(() -> {
+            EtaFetchEvent event = new EtaFetchEvent();
+            event.begin();
+            event.queueId = queueId;
+            event.tickets = 1;
+            Integer local = localEtaCalculator.estimate(queueId, position);
+            if (local != null) {
+                event.source = "local";
+                event.finish(SignalType.ON_COMPLETE);
+                return Mono.just(local);
+            }
+            return etaServiceClient.getEta(queueId, ticketId, position)
+                    .filter(eta -> eta.estimatedWaitMinutes() != null)
+                    .map(eta -> {
+                        event.source = "remote";
+                        return eta.estimatedWaitMinutes();
+                    })
+                    .onErrorResume(e -> {
+                        // Breaker/bulkhead rejections land here too; keep the log line short
+                        log.warn("Failed to get ETA from service B, using fallback calculation: {}", e.getMessage());
+                        return Mono.empty();
+                    })
+                    .switchIfEmpty(Mono.fromSupplier(() -> {
+                        event.source = "fallback";
+                        return etaFallbackEstimator.estimate(queueId, position);
+                    }))
+                    .doFinally(event::finish);
+        });
+    }
+    
+    // Queue-wide view: every waiting ticket with its ETA, computed locally or fetched in one batch call
+    public Mono<List<QueueStatusResponse>> getQueueEtas(String queueId) {
+        return Mono.fromCallable(() -> {
+                    List<Ticket> waitingTickets = new ArrayList<>(ticketRepository.findWaitingTicketsByQueue(queueId));
+                    waitingTickets.sort((t1, t2) -> t1.getJoinedAt().compareTo(t2.getJoinedAt()));
+                    return waitingTickets;
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(waitingTickets -> {
+                    Map<String, Integer> positions = new LinkedHashMap<>();
+                    for (int i = 0; i < waitingTickets.size(); i++) {
+                        positions.put(waitingTickets.get(i).getTicketId(), i + 1);
+                    }
+                    return getEstimatedWaitTimes(queueId, positions).map(etas -> {
+                        List<QueueStatusResponse> result = new ArrayList<>(waitingTickets.size());
+                        for (Ticket ticket : waitingTickets) {
+                            result.add(QueueStatusResponse.builder()
+                                    .ticketId(ticket.getTicketId())
+                                    .queueId(queueId)
+                                    .position(positions.get(ticket.getTicketId()))
+                                    .estimatedWaitMinutes(etas.get(ticket.getTicketId()))
+                                    .status(ticket.getStatus().name())
+                                    .build());
+                        }
+                        return result;
+                    });
+                });
+    }
+
+    // ticketId -> position in, ticketId -> ETA minutes out; local snapshot first, otherwise one batch
+    // call instead of N single lookups. Tickets the batch does not answer keep the fallback estimate;
+    // never fails.
+    public Mono<Map<String, Integer>> getEstimatedWaitTimes(String queueId, Map<String, Integer> positions) {
+        if (positions.isEmpty()) {
+            return Mono.just(new HashMap<>());
         }
+        return Mono.defer(() -> {
+            EtaFetchEvent event = new EtaFetchEvent();
+            event.begin();
+            event.queueId = queueId;
+            event.tickets = positions.size();
+            Map<String, Integer> etas = new HashMap<>();
+            if (localEtaCalculator.estimate(queueId, 1) != null) {
+                positions.forEach((ticketId, position) -> etas.put(ticketId, localEtaCalculator.estimate(queueId, position)));
+                if (!etas.containsValue(null)) {
+                    event.source = "local";
+                    event.finish(SignalType.ON_COMPLETE);
+                    return Mono.just(etas);
+                }
+            }
+            positions.forEach((ticketId, position) -> etas.put(ticketId, etaFallbackEstimator.estimate(queueId, position)));
+
+            List<EtaQuery> tickets = new ArrayList<>(positions.size());
+            positions.forEach((ticketId, position) -> tickets.add(new EtaQuery(queueId, ticketId, position)));
+
+            return etaServiceClient.getEtaBatch(tickets)
+                    .doOnNext(eta -> {
+                        if (eta.ticketId() != null && eta.estimatedWaitMinutes() != null) {
+                            etas.put(eta.ticketId(), eta.estimatedWaitMinutes());
+                        }
+                    })
+                    .then(Mono.fromSupplier(() -> {
+                        event.source = "remote";
+                        return etas;
+                    }))
+                    .onErrorResume(e -> {
+                        log.warn("Failed to get batch ETA from service B, using fallback calculation: {}", e.getMessage());
+                        event.source = "fallback";
+                        return Mono.just(etas);
+                    })
+                    .doFinally(event::finish);
+        });
     }
 
     private int getNextPosition(String queueId) {
         try {
-            List<Ticket> waitingTickets = ticketRepository.findByQueueIdAndStatus(queueId, Ticket.TicketStatus.WAITING);
-            return waitingTickets.size() + 1;
+            return OutcomeEvent.call(new PositionEvent(), event -> {
+                event.queueId = queueId;
+                event.kind = "next";
+                List<Ticket> waitingTickets = ticketRepository.findByQueueIdAndStatus(queueId, Ticket.TicketStatus.WAITING);
+                event.waitingTickets = waitingTickets.size();
+                event.position = waitingTickets.size() + 1;
+                return event.position;
+            });
         } catch (Exception e) {
             log.error("Error calculating next position for queue: {}", queueId, e);
             return 1; // Fallback to position 1
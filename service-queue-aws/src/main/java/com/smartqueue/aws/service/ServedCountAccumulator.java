@@ -0,0 +1,155 @@
+package com.smartqueue.aws.service;
+
+import com.smartqueue.aws.contract.ServedWindow;
+import com.smartqueue.aws.contract.ServedWindowBatch;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Schedulers;
+
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Coalesces served counts from processNext per queue and reports them to Service B as one
+// batched report per flush. Each entry carries the real window it covers (from the
+// queue's previous report to the flush), so the ETA service sees actual service rates rather
+// than a fixed 60s window. Flushes run every service.eta.served-flush-interval-ms or early once
+// served-flush-max-pending customers are waiting. Each flush closes the open windows into one
+// batch with a fresh batchId. A batch that fails to send is kept as is, up to
+// served-max-buffered-windows windows in total, and resent with the same batchId ahead of newer
+// batches on the next flush: when only the acknowledgement was lost, the ETA service recognises
+// the id and does not count those customers again.
+@Slf4j
+@Component
+public class ServedCountAccumulator {
+
+    private final EtaServiceClient etaServiceClient;
+    private final int maxPending;
+    private final int maxBufferedWindows;
+    private final long maxWindowMillis;
+    private final long startedAt = System.currentTimeMillis();
+
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+    // Start of the next window per queue = end of the last one we reported
+    private final Map<String, Long> lastReportedAt = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    // Unacknowledged batches, oldest first; only touched by the flushing thread
+    private final Deque<ServedWindowBatch> retryBuffer = new ArrayDeque<>();
+    private int bufferedWindows;
+
+    public ServedCountAccumulator(EtaServiceClient etaServiceClient,
+                                  @Value("${service.eta.served-flush-max-pending:500}") int maxPending,
+                                  @Value("${service.eta.served-max-buffered-windows:1000}") int maxBufferedWindows,
+                                  @Value("${service.eta.served-max-window-sec:300}") long maxWindowSec) {
+        this.etaServiceClient = etaServiceClient;
+        this.maxPending = maxPending;
+        this.maxBufferedWindows = maxBufferedWindows;
+        this.maxWindowMillis = maxWindowSec * 1000;
+    }
+
+    private static final class Window {
+        private final long startMillis;
+        // Only mutated inside windows.compute, so a close never races an add
+        private int count;
+
+        private Window(long startMillis) {
+            this.startMillis = startMillis;
+        }
+    }
+
+    public void record(String queueId, int servedCount) {
+        if (servedCount <= 0) return;
+        windows.compute(queueId, (id, window) -> {
+            Window current = window != null ? window : openWindow(id);
+            current.count += servedCount;
+            return current;
+        });
+        if (pending.addAndGet(servedCount) >= maxPending) {
+            // Size trigger: flush off the request thread
+            Schedulers.boundedElastic().schedule(this::flush);
+        }
+    }
+
+    private Window openWindow(String queueId) {
+        long now = System.currentTimeMillis();
+        // Never reported since startup: the window opened when we started. Long idle queues are
+        // capped at maxWindow so one late customer does not read as a near-zero rate.
+        long last = lastReportedAt.getOrDefault(queueId, startedAt);
+        return new Window(Math.max(last, now - maxWindowMillis));
+    }
+
+    @Scheduled(fixedDelayString = "${service.eta.served-flush-interval-ms:5000}")
+    public void flush() {
+        if (!flushing.compareAndSet(false, true)) return;
+        try {
+            List<ServedWindow> closed = closeWindows();
+            if (!closed.isEmpty()) {
+                buffer(new ServedWindowBatch(UUID.randomUUID().toString(), closed));
+            }
+
+            // In order; stop at the first failure and keep the rest for the next flush
+            while (!retryBuffer.isEmpty()) {
+                ServedWindowBatch batch = retryBuffer.peekFirst();
+                try {
+                    etaServiceClient.reportServed(batch).block();
+                } catch (Exception e) {
+                    log.warn("Failed to report served counts to service B, {} windows in {} batches buffered for retry: {}",
+                            bufferedWindows, retryBuffer.size(), e.getMessage());
+                    return;
+                }
+                retryBuffer.pollFirst();
+                bufferedWindows -= batch.entries().size();
+                log.debug("Reported {} served-count windows to service B (batch {})", batch.entries().size(), batch.batchId());
+            }
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    private List<ServedWindow> closeWindows() {
+        long now = System.currentTimeMillis();
+        List<ServedWindow> closed = new ArrayList<>();
+        for (String queueId : List.copyOf(windows.keySet())) {
+            lastReportedAt.put(queueId, now);
+            Window window = windows.remove(queueId);
+            if (window == null) continue;
+            int count = window.count;
+            pending.addAndGet(-count);
+
+            int windowSec = (int) Math.max(1, Math.round((now - window.startMillis) / 1000.0));
+            // windowEnd lets the ETA service file a window retried later under the hour it measured
+            closed.add(new ServedWindow(queueId, count, windowSec, now));
+        }
+        return closed;
+    }
+
+    // Oldest batches are dropped first once the buffer is full
+    private void buffer(ServedWindowBatch batch) {
+        retryBuffer.addLast(batch);
+        bufferedWindows += batch.entries().size();
+        int dropped = 0;
+        while (bufferedWindows > maxBufferedWindows && retryBuffer.size() > 1) {
+            int size = retryBuffer.pollFirst().entries().size();
+            bufferedWindows -= size;
+            dropped += size;
+        }
+        if (dropped > 0) {
+            log.warn("Served-count retry buffer full, dropped {} oldest windows", dropped);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
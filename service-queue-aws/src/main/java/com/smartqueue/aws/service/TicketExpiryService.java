@@ -0,0 +1,84 @@
+package com.smartqueue.aws.service;
+
+import com.smartqueue.aws.repository.TicketRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.DescribeTimeToLiveRequest;
+import software.amazon.awssdk.services.dynamodb.model.TimeToLiveSpecification;
+import software.amazon.awssdk.services.dynamodb.model.TimeToLiveStatus;
+import software.amazon.awssdk.services.dynamodb.model.UpdateTimeToLiveRequest;
+
+import java.time.Instant;
+
+// Finished tickets carry an expiresAt; DynamoDB TTL deletes them without using table capacity.
+// Where TTL is not available (LocalStack, DynamoDB Local) set aws.dynamodb.ttl-enabled=false and
+// this service sweeps expired rows itself.
+@Slf4j
+@Service
+public class TicketExpiryService {
+
+    private final DynamoDbClient dynamoDbClient;
+    private final TicketRepository ticketRepository;
+    private final String ticketsTableName;
+    private final String outboxTableName;
+    private final boolean ttlEnabled;
+
+    public TicketExpiryService(DynamoDbClient dynamoDbClient,
+                               TicketRepository ticketRepository,
+                               @Qualifier("ticketsTableName") String ticketsTableName,
+                               @Qualifier("outboxTableName") String outboxTableName,
+                               @Value("${aws.dynamodb.ttl-enabled:true}") boolean ttlEnabled) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.ticketRepository = ticketRepository;
+        this.ticketsTableName = ticketsTableName;
+        this.outboxTableName = outboxTableName;
+        this.ttlEnabled = ttlEnabled;
+    }
+
+    @PostConstruct
+    public void ensureTimeToLive() {
+        if (!ttlEnabled) {
+            log.info("DynamoDB TTL disabled, expired tickets in {} will be swept locally", ticketsTableName);
+            return;
+        }
+        enableTimeToLive(ticketsTableName);
+        // Outbox events expire the same way once their replay window has passed
+        enableTimeToLive(outboxTableName);
+    }
+
+    private void enableTimeToLive(String tableName) {
+        try {
+            TimeToLiveStatus status = dynamoDbClient.describeTimeToLive(DescribeTimeToLiveRequest.builder()
+                            .tableName(tableName)
+                            .build())
+                    .timeToLiveDescription()
+                    .timeToLiveStatus();
+            if (status == TimeToLiveStatus.ENABLED || status == TimeToLiveStatus.ENABLING) return;
+
+            dynamoDbClient.updateTimeToLive(UpdateTimeToLiveRequest.builder()
+                    .tableName(tableName)
+                    .timeToLiveSpecification(TimeToLiveSpecification.builder()
+                            .attributeName("expiresAt")
+                            .enabled(true)
+                            .build())
+                    .build());
+            log.info("Enabled TTL on expiresAt for table {}", tableName);
+        } catch (Exception e) {
+            log.warn("Could not enable TTL on table {} (possibly local dev): {}", tableName, e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${aws.dynamodb.expiry-sweep-interval-ms:300000}")
+    public void sweepExpiredTickets() {
+        if (ttlEnabled) return;
+        int deleted = ticketRepository.deleteExpired(Instant.now().getEpochSecond());
+        if (deleted > 0) {
+            log.info("Swept {} expired tickets from {}", deleted, ticketsTableName);
+        }
+    }
+}
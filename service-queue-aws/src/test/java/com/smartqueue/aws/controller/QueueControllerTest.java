@@ -0,0 +1,142 @@
+package com.smartqueue.aws.controller;
+
+import com.smartqueue.aws.contract.EtaEstimate;
+import com.smartqueue.aws.model.Ticket;
+import com.smartqueue.aws.repository.OutboxRepository;
+import com.smartqueue.aws.repository.QueueRepository;
+import com.smartqueue.aws.repository.TicketRepository;
+import com.smartqueue.aws.repository.UserRepository;
+import com.smartqueue.aws.service.EtaFallbackEstimator;
+import com.smartqueue.aws.service.EtaServiceClient;
+import com.smartqueue.aws.service.LocalEtaCalculator;
+import com.smartqueue.aws.service.QueueService;
+import com.smartqueue.aws.service.ServedCountAccumulator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class QueueControllerTest {
+
+    private static final Instant JOINED = Instant.parse("2024-05-06T09:00:00Z");
+
+    private final TicketRepository ticketRepository = mock(TicketRepository.class);
+    private final QueueRepository queueRepository = mock(QueueRepository.class);
+    private final EtaServiceClient etaServiceClient = mock(EtaServiceClient.class);
+    private final EtaFallbackEstimator fallbackEstimator = mock(EtaFallbackEstimator.class);
+    // No rate snapshot held: estimate() answers null and every lookup goes to Service B
+    private final LocalEtaCalculator localEtaCalculator = mock(LocalEtaCalculator.class);
+    private WebTestClient client;
+
+    @BeforeEach
+    void setUp() {
+        QueueService queueService = new QueueService(ticketRepository, queueRepository, mock(UserRepository.class),
+                etaServiceClient, fallbackEstimator, localEtaCalculator, mock(ServedCountAccumulator.class));
+        client = WebTestClient.bindToController(new QueueController(queueService, queueRepository, mock(OutboxRepository.class)))
+                // Handle requests on a non-blocking thread like Netty's event loop, where block() throws
+                .webFilter((exchange, chain) -> chain.filter(exchange).subscribeOn(Schedulers.parallel()))
+                .build();
+
+        Ticket first = ticket("t1", 0);
+        Ticket second = ticket("t2", 1);
+        when(ticketRepository.findById("t2")).thenReturn(Optional.of(second));
+        when(ticketRepository.findWaitingTicketsByQueue("q1")).thenAnswer(invocation -> new ArrayList<>(List.of(second, first)));
+        when(fallbackEstimator.estimate(anyString(), anyInt())).thenReturn(99);
+    }
+
+    private static Ticket ticket(String ticketId, int joinedMinute) {
+        return Ticket.builder()
+                .ticketId(ticketId)
+                .queueId("q1")
+                .status(Ticket.TicketStatus.WAITING)
+                .joinedAt(JOINED.plusSeconds(joinedMinute * 60L))
+                .build();
+    }
+
+    private static EtaEstimate estimate(String ticketId, int minutes) {
+        return new EtaEstimate("q1", ticketId, minutes, null, null, 1.0, JOINED, null);
+    }
+
+    @Test
+    void statusAnswersWithTheRemoteEta() {
+        // Emitted on another thread, as the RSocket/WebClient reply would be
+        when(etaServiceClient.getEta("q1", "t2", 2))
+                .thenReturn(Mono.just(estimate("t2", 42)).delayElement(Duration.ofMillis(10)));
+
+        client.get().uri("/api/queues/q1/status?ticketId=t2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.position").isEqualTo(2)
+                .jsonPath("$.estimatedWaitMinutes").isEqualTo(42)
+                .jsonPath("$.status").isEqualTo("WAITING");
+        verify(fallbackEstimator, never()).estimate(anyString(), anyInt());
+    }
+
+    @Test
+    void statusFallsBackWhenServiceBFails() {
+        when(etaServiceClient.getEta("q1", "t2", 2)).thenReturn(Mono.error(new IllegalStateException("ETA service circuit open")));
+
+        client.get().uri("/api/queues/q1/status?ticketId=t2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.estimatedWaitMinutes").isEqualTo(99);
+    }
+
+    @Test
+    void statusOfUnknownTicketIsBadRequest() {
+        when(ticketRepository.findById("missing")).thenReturn(Optional.empty());
+
+        client.get().uri("/api/queues/q1/status?ticketId=missing")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.ticketId").isEqualTo("missing");
+    }
+
+    @Test
+    void queueEtasUseOneBatchCall() {
+        when(etaServiceClient.getEtaBatch(anyList()))
+                .thenReturn(Flux.just(estimate("t1", 5), estimate("t2", 10)).delayElements(Duration.ofMillis(5)));
+
+        client.get().uri("/api/queues/q1/etas")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].ticketId").isEqualTo("t1")
+                .jsonPath("$[0].estimatedWaitMinutes").isEqualTo(5)
+                .jsonPath("$[1].ticketId").isEqualTo("t2")
+                .jsonPath("$[1].position").isEqualTo(2)
+                .jsonPath("$[1].estimatedWaitMinutes").isEqualTo(10);
+        verify(etaServiceClient, never()).getEta(anyString(), anyString(), anyInt());
+    }
+
+    @Test
+    void queueEtasKeepTheFallbackForTicketsTheBatchMissed() {
+        when(etaServiceClient.getEtaBatch(anyList())).thenReturn(Flux.just(estimate("t1", 5)));
+
+        client.get().uri("/api/queues/q1/etas")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].estimatedWaitMinutes").isEqualTo(5)
+                .jsonPath("$[1].estimatedWaitMinutes").isEqualTo(99);
+    }
+}
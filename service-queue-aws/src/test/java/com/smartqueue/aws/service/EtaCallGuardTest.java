@@ -0,0 +1,149 @@
+package com.smartqueue.aws.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EtaCallGuardTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    // Window of 4 calls, opens at 50% failures; slow calls never count unless slowCallMs is small
+    private EtaCallGuard guard(long openMs, int maxConcurrent, long slowCallMs, long callTimeoutMs) {
+        return new EtaCallGuard(4, 4, 0.5, 0.5, slowCallMs, openMs, 1, maxConcurrent, callTimeoutMs,
+                false, 50, registry);
+    }
+
+    private double circuitState() {
+        return registry.get("eta.client.circuit.state").gauge().value();
+    }
+
+    private static void fail(EtaCallGuard guard) {
+        assertThatThrownBy(() -> guard.call(() -> Mono.error(new IllegalStateException("down")), false).block())
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private static void succeed(EtaCallGuard guard) {
+        assertThat(guard.call(() -> Mono.just("ok"), false).block()).isEqualTo("ok");
+    }
+
+    @Test
+    void opensOnceFailureRateReachesThresholdAndShortCircuits() {
+        EtaCallGuard guard = guard(60_000, 8, 10_000, 1_000);
+        succeed(guard);
+        fail(guard);
+        succeed(guard);
+        assertThat(circuitState()).isZero();
+
+        fail(guard);
+        assertThat(circuitState()).isEqualTo(1);
+
+        AtomicInteger attempts = new AtomicInteger();
+        assertThatThrownBy(() -> guard.call(() -> {
+            attempts.incrementAndGet();
+            return Mono.just("ok");
+        }, false).block()).hasMessageContaining("circuit open");
+        assertThat(attempts).hasValue(0);
+        assertThat(registry.get("eta.client.short-circuited").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void staysClosedBelowMinCalls() {
+        EtaCallGuard guard = guard(60_000, 8, 10_000, 1_000);
+        fail(guard);
+        fail(guard);
+        fail(guard);
+        assertThat(circuitState()).isZero();
+    }
+
+    @Test
+    void opensOnSlowCalls() {
+        EtaCallGuard guard = guard(60_000, 8, 0, 1_000);
+        for (int i = 0; i < 4; i++) succeed(guard);
+        assertThat(circuitState()).isEqualTo(1);
+    }
+
+    @Test
+    void successfulTrialClosesCircuit() {
+        EtaCallGuard guard = guard(0, 8, 10_000, 1_000);
+        for (int i = 0; i < 4; i++) fail(guard);
+        assertThat(circuitState()).isEqualTo(1);
+
+        Sinks.One<String> trial = Sinks.one();
+        guard.call(trial::asMono, false).subscribe();
+        assertThat(circuitState()).isEqualTo(2);
+
+        trial.tryEmitValue("ok");
+        assertThat(circuitState()).isZero();
+    }
+
+    @Test
+    void failedTrialReopensCircuit() {
+        EtaCallGuard guard = guard(0, 8, 10_000, 1_000);
+        for (int i = 0; i < 4; i++) fail(guard);
+
+        Sinks.One<String> trial = Sinks.one();
+        guard.call(trial::asMono, false).subscribe(value -> {}, error -> {});
+        assertThat(circuitState()).isEqualTo(2);
+
+        trial.tryEmitError(new IllegalStateException("still down"));
+        assertThat(circuitState()).isEqualTo(1);
+    }
+
+    @Test
+    void halfOpenAdmitsOnlyConfiguredTrialCalls() {
+        EtaCallGuard guard = guard(0, 8, 10_000, 60_000);
+        for (int i = 0; i < 4; i++) fail(guard);
+
+        Disposable trial = guard.call(Mono::never, false).subscribe();
+        assertThatThrownBy(() -> guard.call(() -> Mono.just("ok"), false).block())
+                .hasMessageContaining("half-open");
+
+        // A cancelled trial gives its slot back
+        trial.dispose();
+        succeed(guard);
+        assertThat(circuitState()).isZero();
+    }
+
+    @Test
+    void bulkheadRejectsPastMaxConcurrentAndReleasesOnCancel() {
+        EtaCallGuard guard = guard(60_000, 1, 10_000, 60_000);
+        Disposable inFlight = guard.call(Mono::never, false).subscribe();
+        assertThat(registry.get("eta.client.inflight").gauge().value()).isEqualTo(1);
+
+        assertThatThrownBy(() -> guard.call(() -> Mono.just("ok"), false).block())
+                .hasMessageContaining("bulkhead full");
+        assertThat(registry.get("eta.client.rejected").counter().count()).isEqualTo(1);
+
+        inFlight.dispose();
+        assertThat(registry.get("eta.client.inflight").gauge().value()).isZero();
+        succeed(guard);
+    }
+
+    @Test
+    void timesOutSlowCalls() {
+        EtaCallGuard guard = guard(60_000, 8, 10_000, 50);
+        assertThatThrownBy(() -> guard.call(() -> Mono.delay(Duration.ofSeconds(5)), false).block())
+                .hasCauseInstanceOf(TimeoutException.class);
+    }
+
+    @Test
+    void streamFailuresCountTowardsTheBreaker() {
+        EtaCallGuard guard = guard(60_000, 8, 10_000, 1_000);
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> guard.callMany(() -> Flux.error(new IllegalStateException("down"))).blockLast())
+                    .isInstanceOf(IllegalStateException.class);
+        }
+        assertThat(circuitState()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,50 @@
+package com.smartqueue.aws.config;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+
+// One span per AWS SDK call (e.g. "DynamoDb.GetItem", "SES.SendEmail"), retries included, as a child of
+// whatever span is current when the call starts. Works for the async client too: the span is started on
+// the subscribing thread and stopped from the SDK's completion thread.
+public class AwsSdkTracingInterceptor implements ExecutionInterceptor {
+
+    private static final ExecutionAttribute<Observation> OBSERVATION = new ExecutionAttribute<>("SmartQueueObservation");
+
+    private final ObservationRegistry observationRegistry;
+
+    public AwsSdkTracingInterceptor(ObservationRegistry observationRegistry) {
+        this.observationRegistry = observationRegistry;
+    }
+
+    @Override
+    public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes executionAttributes) {
+        String service = String.valueOf(executionAttributes.getAttribute(SdkExecutionAttribute.SERVICE_NAME));
+        String operation = String.valueOf(executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME));
+        Observation observation = Observation.createNotStarted("aws.sdk", observationRegistry)
+                .contextualName(service + "." + operation)
+                .lowCardinalityKeyValue("aws.service", service)
+                .lowCardinalityKeyValue("aws.operation", operation)
+                .start();
+        executionAttributes.putAttribute(OBSERVATION, observation);
+    }
+
+    @Override
+    public void afterExecution(Context.AfterExecution context, ExecutionAttributes executionAttributes) {
+        Observation observation = executionAttributes.getAttribute(OBSERVATION);
+        if (observation != null) observation.stop();
+    }
+
+    @Override
+    public void onExecutionFailure(Context.FailedExecution context, ExecutionAttributes executionAttributes) {
+        Observation observation = executionAttributes.getAttribute(OBSERVATION);
+        if (observation != null) {
+            observation.error(context.exception());
+            observation.stop();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.smartqueue.aws.config;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Logback's AsyncAppender, never blocking the logging thread (neverBlock) for INFO and below, with counts:
+//   discarded   INFO and below, dropped once less than discardingThreshold of the queue is free (logback's rule)
+//   queue_full  INFO and below, dropped because the queue is full
+//   sync        WARN/ERROR that found the queue full and were written on the calling thread instead
+// WARN and ERROR are never dropped: when there is no room they go straight to the attached appenders,
+// which is slower for that one line but keeps every warning and error. The last discardingThreshold
+// slots only ever take WARN/ERROR, so the queue filling between the check and the enqueue needs a
+// burst of warnings to race it. Counts are exact up to races with the worker draining the queue.
+// Exposed by LoggingMetrics.
+public class CountingAsyncAppender extends AsyncAppender {
+
+    // Static so counts survive logging re-initialisation
+    static final LongAdder DISCARDED = new LongAdder();
+    static final LongAdder QUEUE_FULL = new LongAdder();
+    static final LongAdder WRITTEN_SYNC = new LongAdder();
+
+    private static volatile CountingAsyncAppender current;
+
+    public CountingAsyncAppender() {
+        setNeverBlock(true);
+    }
+
+    @Override
+    public void start() {
+        super.start();
+        if (isStarted()) current = this;
+    }
+
+    @Override
+    public void stop() {
+        if (current == this) current = null;
+        super.stop();
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        int remaining = getRemainingCapacity();
+        if (remaining < getDiscardingThreshold() && isDiscardable(event)) {
+            DISCARDED.increment();
+            return;
+        }
+        if (remaining == 0 && isNeverBlock()) {
+            if (event.getLevel().isGreaterOrEqual(Level.WARN)) {
+                WRITTEN_SYNC.increment();
+                Iterator<Appender<ILoggingEvent>> appenders = iteratorForAppenders();
+                while (appenders.hasNext()) {
+                    appenders.next().doAppend(event);
+                }
+                return;
+            }
+            QUEUE_FULL.increment();
+            return;
+        }
+        super.append(event);
+    }
+
+    static int queued() {
+        CountingAsyncAppender appender = current;
+        return appender != null ? appender.getNumberOfElementsInQueue() : 0;
+    }
+}
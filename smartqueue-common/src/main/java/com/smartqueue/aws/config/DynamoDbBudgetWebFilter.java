@@ -0,0 +1,62 @@
+package com.smartqueue.aws.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.http.server.reactive.observation.ServerRequestObservationContext;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.reactive.ServerHttpObservationFilter;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+
+// Gives every HTTP request a DynamoDbCallBudget (on its server observation, where the capacity interceptor
+// finds it), publishes it per endpoint when the request ends and, when enabled, reports it in the
+// X-DynamoDB-Budget response header: calls=...;scans=...;rcu=...;wcu=...;returned=...;scanned=...
+@Component
+public class DynamoDbBudgetWebFilter implements WebFilter, Ordered {
+
+    public static final String HEADER = "X-DynamoDB-Budget";
+
+    private final DynamoDbMetrics metrics;
+    private final boolean headerEnabled;
+
+    public DynamoDbBudgetWebFilter(DynamoDbMetrics metrics,
+                                   @Value("${aws.dynamodb.budget.header-enabled:false}") boolean headerEnabled) {
+        this.metrics = metrics;
+        this.headerEnabled = headerEnabled;
+    }
+
+    // Right after the observation filter, so the server observation already exists
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 10;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        Optional<ServerRequestObservationContext> observation = ServerHttpObservationFilter.findObservationContext(exchange);
+        if (observation.isEmpty()) {
+            return chain.filter(exchange);
+        }
+        DynamoDbCallBudget budget = new DynamoDbCallBudget();
+        observation.get().put(DynamoDbCallBudget.KEY, budget);
+        if (headerEnabled) {
+            exchange.getResponse().beforeCommit(() -> {
+                exchange.getResponse().getHeaders().set(HEADER, budget.summary());
+                return Mono.empty();
+            });
+        }
+        return chain.filter(exchange)
+                .doFinally(signal -> budget.publish(metrics, endpointOf(exchange)));
+    }
+
+    private static String endpointOf(ServerWebExchange exchange) {
+        PathPattern pattern = exchange.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return exchange.getRequest().getMethod().name() + " " + (pattern != null ? pattern.getPatternString() : "UNKNOWN");
+    }
+}
@@ -0,0 +1,68 @@
+package com.smartqueue.aws.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+// DynamoDB usage of one HTTP request. DynamoDbCapacityInterceptor adds to it (possibly from SDK threads)
+// and DynamoDbBudgetWebFilter publishes it with the request's endpoint once the response is done.
+public class DynamoDbCallBudget {
+
+    public static final String KEY = DynamoDbCallBudget.class.getName();
+
+    private static final Set<String> READ_OPERATIONS =
+            Set.of("GetItem", "Query", "Scan", "BatchGetItem", "TransactGetItems");
+
+    private record Key(String operation, String table) {}
+
+    private static final class Usage {
+        int calls;
+        double capacity;
+        long returned;
+        long scanned;
+    }
+
+    // Guarded by this
+    private final Map<Key, Usage> usage = new LinkedHashMap<>();
+
+    public static boolean isRead(String operation) {
+        return READ_OPERATIONS.contains(operation);
+    }
+
+    public synchronized void add(String operation, String table, double capacity, long returned, long scanned) {
+        Usage u = usage.computeIfAbsent(new Key(operation, table), k -> new Usage());
+        u.calls++;
+        u.capacity += capacity;
+        u.returned += returned;
+        u.scanned += scanned;
+    }
+
+    public synchronized int calls() {
+        return usage.values().stream().mapToInt(u -> u.calls).sum();
+    }
+
+    // Header value, e.g. "calls=3;scans=0;rcu=1.5;wcu=2.0;returned=12;scanned=12"
+    public synchronized String summary() {
+        int calls = 0;
+        int scans = 0;
+        double rcu = 0;
+        double wcu = 0;
+        long returned = 0;
+        long scanned = 0;
+        for (Map.Entry<Key, Usage> entry : usage.entrySet()) {
+            Usage u = entry.getValue();
+            calls += u.calls;
+            if ("Scan".equals(entry.getKey().operation())) scans += u.calls;
+            if (isRead(entry.getKey().operation())) rcu += u.capacity; else wcu += u.capacity;
+            returned += u.returned;
+            scanned += u.scanned;
+        }
+        return String.format("calls=%d;scans=%d;rcu=%.1f;wcu=%.1f;returned=%d;scanned=%d",
+                calls, scans, rcu, wcu, returned, scanned);
+    }
+
+    public synchronized void publish(DynamoDbMetrics metrics, String endpoint) {
+        usage.forEach((key, u) -> metrics.record(endpoint, key.operation(), key.table(), u.calls, u.capacity, u.returned, u.scanned));
+        metrics.recordRequest(endpoint, calls());
+    }
+}
@@ -0,0 +1,176 @@
+package com.smartqueue.aws.config;
+
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.ObservationView;
+import software.amazon.awssdk.core.SdkRequest;
+import software.amazon.awssdk.core.SdkResponse;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.ReturnConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactGetItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactGetItemsResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsResponse;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Makes every data-plane DynamoDB call ask for ReturnConsumedCapacity=TOTAL and accounts for what it cost,
+// so repositories need no per-call changes. Inside an HTTP request the usage goes to that request's
+// DynamoDbCallBudget (found on the server observation); otherwise straight to DynamoDbMetrics.
+public class DynamoDbCapacityInterceptor implements ExecutionInterceptor {
+
+    private static final ExecutionAttribute<DynamoDbCallBudget> BUDGET = new ExecutionAttribute<>("SmartQueueDynamoDbBudget");
+
+    private final ObservationRegistry observationRegistry;
+    private final DynamoDbMetrics metrics;
+
+    public DynamoDbCapacityInterceptor(ObservationRegistry observationRegistry, DynamoDbMetrics metrics) {
+        this.observationRegistry = observationRegistry;
+        this.metrics = metrics;
+    }
+
+    private record Usage(List<ConsumedCapacity> capacities, String table, long returned, long scanned) {}
+
+    // Runs on the calling thread, where the request's observation is current
+    @Override
+    public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes executionAttributes) {
+        DynamoDbCallBudget budget = currentBudget();
+        if (budget != null) executionAttributes.putAttribute(BUDGET, budget);
+    }
+
+    @Override
+    public SdkRequest modifyRequest(Context.ModifyRequest context, ExecutionAttributes executionAttributes) {
+        SdkRequest request = context.request();
+        ReturnConsumedCapacity total = ReturnConsumedCapacity.TOTAL;
+        if (request instanceof GetItemRequest r && r.returnConsumedCapacity() == null) {
+            return r.toBuilder().returnConsumedCapacity(total).build();
+        } else if (request instanceof PutItemRequest r && r.returnConsumedCapacity() == null) {
+            return r.toBuilder().returnConsumedCapacity(total).build();
+        } else if (request instanceof UpdateItemRequest r && r.returnConsumedCapacity() == null) {
+            return r.toBuilder().returnConsumedCapacity(total).build();
+        } else if (request instanceof DeleteItemRequest r && r.returnConsumedCapacity() == null) {
+            return r.toBuilder().returnConsumedCapacity(total).build();
+        } else if (request instanceof QueryRequest r && r.returnConsumedCapacity() == null) {
+            return r.toBuilder().returnConsumedCapacity(total).build();
+        } else if (request instanceof ScanRequest r && r.returnConsumedCapacity() == null) {
+            return r.toBuilder().returnConsumedCapacity(total).build();
+        } else if (request instanceof BatchGetItemRequest r && r.returnConsumedCapacity() == null) {
+            return r.toBuilder().returnConsumedCapacity(total).build();
+        } else if (request instanceof BatchWriteItemRequest r && r.returnConsumedCapacity() == null) {
+            return r.toBuilder().returnConsumedCapacity(total).build();
+        } else if (request instanceof TransactGetItemsRequest r && r.returnConsumedCapacity() == null) {
+            return r.toBuilder().returnConsumedCapacity(total).build();
+        } else if (request instanceof TransactWriteItemsRequest r && r.returnConsumedCapacity() == null) {
+            return r.toBuilder().returnConsumedCapacity(total).build();
+        }
+        return request;
+    }
+
+    @Override
+    public void afterExecution(Context.AfterExecution context, ExecutionAttributes executionAttributes) {
+        Usage usage = usageOf(context.request(), context.response());
+        if (usage == null) return;
+
+        String operation = String.valueOf(executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME));
+        DynamoDbCallBudget budget = executionAttributes.getAttribute(BUDGET);
+
+        // One call per table touched; items are counted once, against the first table
+        List<ConsumedCapacity> capacities = usage.capacities().isEmpty()
+                ? List.of(ConsumedCapacity.builder().tableName(usage.table()).capacityUnits(0.0).build())
+                : usage.capacities();
+        boolean first = true;
+        for (ConsumedCapacity capacity : capacities) {
+            String table = capacity.tableName() != null ? capacity.tableName() : usage.table();
+            double units = capacity.capacityUnits() != null ? capacity.capacityUnits() : 0.0;
+            long returned = first ? usage.returned() : 0;
+            long scanned = first ? usage.scanned() : 0;
+            if (budget != null) {
+                budget.add(operation, table, units, returned, scanned);
+            } else {
+                metrics.record(DynamoDbMetrics.BACKGROUND, operation, table, 1, units, returned, scanned);
+            }
+            first = false;
+        }
+    }
+
+    private DynamoDbCallBudget currentBudget() {
+        ObservationView view = observationRegistry.getCurrentObservation();
+        while (view != null) {
+            DynamoDbCallBudget budget = view.getContextView().get(DynamoDbCallBudget.KEY);
+            if (budget != null) return budget;
+            view = view.getContextView().getParentObservation();
+        }
+        return null;
+    }
+
+    // Null for control-plane calls (DescribeTable, UpdateTimeToLive, ...)
+    private static Usage usageOf(SdkRequest request, SdkResponse response) {
+        if (response instanceof GetItemResponse r) {
+            long found = r.hasItem() ? 1 : 0;
+            return new Usage(single(r.consumedCapacity()), ((GetItemRequest) request).tableName(), found, found);
+        } else if (response instanceof PutItemResponse r) {
+            return new Usage(single(r.consumedCapacity()), ((PutItemRequest) request).tableName(), 1, 0);
+        } else if (response instanceof UpdateItemResponse r) {
+            return new Usage(single(r.consumedCapacity()), ((UpdateItemRequest) request).tableName(), 1, 0);
+        } else if (response instanceof DeleteItemResponse r) {
+            return new Usage(single(r.consumedCapacity()), ((DeleteItemRequest) request).tableName(), 1, 0);
+        } else if (response instanceof QueryResponse r) {
+            return new Usage(single(r.consumedCapacity()), ((QueryRequest) request).tableName(),
+                    count(r.count()), count(r.scannedCount()));
+        } else if (response instanceof ScanResponse r) {
+            return new Usage(single(r.consumedCapacity()), ((ScanRequest) request).tableName(),
+                    count(r.count()), count(r.scannedCount()));
+        } else if (response instanceof BatchGetItemResponse r) {
+            long returned = r.responses().values().stream().mapToLong(List::size).sum();
+            return new Usage(r.consumedCapacity(), firstTable(((BatchGetItemRequest) request).requestItems().keySet()),
+                    returned, returned);
+        } else if (response instanceof BatchWriteItemResponse r) {
+            BatchWriteItemRequest batch = (BatchWriteItemRequest) request;
+            long written = batch.requestItems().values().stream().mapToLong(List::size).sum()
+                    - r.unprocessedItems().values().stream().mapToLong(List::size).sum();
+            return new Usage(r.consumedCapacity(), firstTable(batch.requestItems().keySet()), written, 0);
+        } else if (response instanceof TransactGetItemsResponse r) {
+            return new Usage(r.consumedCapacity(), "transaction", r.responses().size(), r.responses().size());
+        } else if (response instanceof TransactWriteItemsResponse r) {
+            return new Usage(r.consumedCapacity(), "transaction",
+                    ((TransactWriteItemsRequest) request).transactItems().size(), 0);
+        }
+        return null;
+    }
+
+    private static List<ConsumedCapacity> single(ConsumedCapacity capacity) {
+        List<ConsumedCapacity> list = new ArrayList<>(1);
+        if (capacity != null) list.add(capacity);
+        return list;
+    }
+
+    private static long count(Integer count) {
+        return count != null ? count : 0;
+    }
+
+    private static String firstTable(Iterable<String> tables) {
+        for (String table : tables) return table;
+        return "unknown";
+    }
+}
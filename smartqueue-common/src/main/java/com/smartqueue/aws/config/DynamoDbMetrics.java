@@ -0,0 +1,55 @@
+package com.smartqueue.aws.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// DynamoDB cost per endpoint, operation and table. Calls made outside an HTTP request (schedulers,
+// relays, listeners) are recorded under endpoint "background".
+//   dynamodb.calls              calls
+//   dynamodb.capacity.consumed  capacity units (ReturnConsumedCapacity=TOTAL), tagged read/write
+//   dynamodb.items.returned     items returned or written
+//   dynamodb.items.scanned      items evaluated by Query/Scan before filters; scanned >> returned is a scan smell
+//   dynamodb.request.calls      calls per HTTP request, per endpoint
+@Slf4j
+@Component
+public class DynamoDbMetrics {
+
+    public static final String BACKGROUND = "background";
+
+    private final MeterRegistry meterRegistry;
+    private final int maxCallsPerRequest;
+
+    public DynamoDbMetrics(MeterRegistry meterRegistry,
+                           @Value("${aws.dynamodb.budget.max-calls-per-request:20}") int maxCallsPerRequest) {
+        this.meterRegistry = meterRegistry;
+        this.maxCallsPerRequest = maxCallsPerRequest;
+    }
+
+    public void record(String endpoint, String operation, String table, int calls, double capacity,
+                       long returned, long scanned) {
+        String[] tags = {"endpoint", endpoint, "operation", operation, "table", table};
+        Counter.builder("dynamodb.calls").tags(tags).register(meterRegistry).increment(calls);
+        Counter.builder("dynamodb.capacity.consumed")
+                .tags(tags)
+                .tag("kind", DynamoDbCallBudget.isRead(operation) ? "read" : "write")
+                .baseUnit("capacity_units")
+                .register(meterRegistry)
+                .increment(capacity);
+        Counter.builder("dynamodb.items.returned").tags(tags).register(meterRegistry).increment(returned);
+        Counter.builder("dynamodb.items.scanned").tags(tags).register(meterRegistry).increment(scanned);
+    }
+
+    public void recordRequest(String endpoint, int calls) {
+        DistributionSummary.builder("dynamodb.request.calls")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry)
+                .record(calls);
+        if (calls > maxCallsPerRequest) {
+            log.warn("{} made {} DynamoDB calls (budget {})", endpoint, calls, maxCallsPerRequest);
+        }
+    }
+}
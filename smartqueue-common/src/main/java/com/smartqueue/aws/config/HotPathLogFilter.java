@@ -0,0 +1,71 @@
+package com.smartqueue.aws.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Rate limit plus sampling, per logger, for routine lines on the request hot path (log.info(HOT_PATH, ...)).
+// A logger's first rate-per-second HOT_PATH lines in each second pass; past that only every sample-every-th
+// does, so a burst still leaves a trace. Suppressed lines are counted per logger (see LoggingMetrics).
+// Only DEBUG and INFO lines carrying the marker are ever held back: lines without it, and TRACE, WARN and
+// ERROR whatever their marker, always pass. Configured in logback-spring.xml.
+public class HotPathLogFilter extends TurboFilter {
+
+    public static final Marker HOT_PATH = MarkerFactory.getMarker("HOT_PATH");
+
+    // Static so counts survive logging re-initialisation
+    static final Map<String, LongAdder> SUPPRESSED = new ConcurrentHashMap<>();
+
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+    private int ratePerSecond = 20;
+    private int sampleEvery = 100;
+
+    public void setRatePerSecond(int ratePerSecond) {
+        this.ratePerSecond = Math.max(0, ratePerSecond);
+    }
+
+    // 0 drops everything past the rate
+    public void setSampleEvery(int sampleEvery) {
+        this.sampleEvery = Math.max(0, sampleEvery);
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (marker == null || (level != Level.INFO && level != Level.DEBUG) || !marker.contains(HOT_PATH)) {
+            return FilterReply.NEUTRAL;
+        }
+        // isInfoEnabled(HOT_PATH)-style checks carry no message; only the log call itself takes a slot
+        if (format == null) return FilterReply.NEUTRAL;
+        // Lines below the logger's level are dropped anyway and must not use up the rate
+        if (!level.isGreaterOrEqual(logger.getEffectiveLevel())) return FilterReply.NEUTRAL;
+
+        long second = System.currentTimeMillis() / 1000;
+        if (windows.computeIfAbsent(logger.getName(), name -> new Window()).admit(second, ratePerSecond, sampleEvery)) {
+            return FilterReply.NEUTRAL;
+        }
+        SUPPRESSED.computeIfAbsent(logger.getName(), name -> new LongAdder()).increment();
+        return FilterReply.DENY;
+    }
+
+    private static final class Window {
+        private long second;
+        private int count;
+
+        synchronized boolean admit(long now, int rate, int sampleEvery) {
+            if (now != second) {
+                second = now;
+                count = 0;
+            }
+            int n = count++;
+            if (n < rate) return true;
+            return sampleEvery > 0 && (n - rate + 1) % sampleEvery == 0;
+        }
+    }
+}
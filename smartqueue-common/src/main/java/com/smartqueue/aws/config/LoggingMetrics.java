@@ -0,0 +1,55 @@
+package com.smartqueue.aws.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Meters for the logging pipeline configured in logback-spring.xml:
+//   logging.async.dropped (tag reason discarded|queue_full)  events CountingAsyncAppender dropped
+//   logging.async.sync                                       WARN/ERROR written synchronously, queue full
+//   logging.async.queue.size                                 events waiting to be written
+//   logging.hot-path.suppressed (tag logger)                 HOT_PATH lines HotPathLogFilter held back
+// A logger's suppressed counter is registered on the first refresh after it suppressed something.
+@Component
+public class LoggingMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final Set<String> registeredLoggers = ConcurrentHashMap.newKeySet();
+
+    public LoggingMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+
+        FunctionCounter.builder("logging.async.dropped", CountingAsyncAppender.DISCARDED, LongAdder::sum)
+                .tag("reason", "discarded")
+                .description("Log events below WARN discarded because the async queue was nearly full")
+                .register(meterRegistry);
+        FunctionCounter.builder("logging.async.dropped", CountingAsyncAppender.QUEUE_FULL, LongAdder::sum)
+                .tag("reason", "queue_full")
+                .description("Log events below WARN dropped because the async queue was full")
+                .register(meterRegistry);
+        FunctionCounter.builder("logging.async.sync", CountingAsyncAppender.WRITTEN_SYNC, LongAdder::sum)
+                .description("WARN/ERROR events written on the calling thread because the async queue was full")
+                .register(meterRegistry);
+        Gauge.builder("logging.async.queue.size", CountingAsyncAppender::queued)
+                .description("Log events waiting in the async queue")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${logging.hot-path.metrics-refresh-ms:30000}")
+    public void registerSuppressedCounters() {
+        HotPathLogFilter.SUPPRESSED.forEach((logger, count) -> {
+            if (registeredLoggers.add(logger)) {
+                FunctionCounter.builder("logging.hot-path.suppressed", count, LongAdder::sum)
+                        .tag("logger", logger)
+                        .description("Hot-path log lines suppressed by rate limiting and sampling")
+                        .register(meterRegistry);
+            }
+        });
+    }
+}
@@ -0,0 +1,16 @@
+package com.smartqueue.aws.config;
+
+import org.springframework.boot.web.embedded.netty.NettyServerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    // Reactor Netty server metrics (connections, bytes, data-path timings) on top of http.server.requests.
+    // The URI tag is collapsed: per-route latency already comes from http.server.requests.
+    @Bean
+    public NettyServerCustomizer nettyServerMetrics() {
+        return httpServer -> httpServer.metrics(true, uri -> "/");
+    }
+}
@@ -0,0 +1,114 @@
+package com.smartqueue.aws.config;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import io.micrometer.observation.transport.ReceiverContext;
+import io.micrometer.observation.transport.SenderContext;
+import org.reactivestreams.Publisher;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Trace context across the queue -> ETA RSocket hop. RSocket has no headers, so the propagation fields
+// (traceparent, tracestate) travel as one composite-metadata entry, "key=value" per line. The requester side
+// is a sender observation and the responder side a receiver observation: the tracing bridge's propagating
+// handlers write the fields on start and read them back, so the ETA span joins the caller's trace.
+// Both observations also time the call (eta.rsocket / eta.rsocket.server, tag route).
+public final class RSocketTracing {
+
+    public static final MimeType TRACE_CONTEXT = new MimeType("message", "x.smartqueue.trace-context");
+    // Message header the responder extracts the entry into (see the ETA service's RSocketServerConfig)
+    public static final String TRACE_CONTEXT_HEADER = "traceContext";
+
+    private RSocketTracing() {
+    }
+
+    // call gets the encoded trace context to send as TRACE_CONTEXT metadata; empty when tracing is off
+    public static <T> Mono<T> request(ObservationRegistry registry, String name, String route,
+                                      Function<String, Mono<T>> call) {
+        return Mono.deferContextual(ctx -> {
+            SenderContext<Map<String, String>> context = new SenderContext<>((carrier, key, value) -> carrier.put(key, value));
+            context.setCarrier(new LinkedHashMap<>());
+            Observation observation = start(registry, name, route, context, ctx);
+            return call.apply(encode(context.getCarrier()))
+                    .doOnError(observation::error)
+                    .doFinally(signal -> observation.stop())
+                    .contextWrite(c -> c.put(ObservationThreadLocalAccessor.KEY, observation));
+        });
+    }
+
+    public static <T> Flux<T> requestMany(ObservationRegistry registry, String name, String route,
+                                          Function<String, Flux<T>> call) {
+        return Flux.deferContextual(ctx -> {
+            SenderContext<Map<String, String>> context = new SenderContext<>((carrier, key, value) -> carrier.put(key, value));
+            context.setCarrier(new LinkedHashMap<>());
+            Observation observation = start(registry, name, route, context, ctx);
+            return call.apply(encode(context.getCarrier()))
+                    .doOnError(observation::error)
+                    .doFinally(signal -> observation.stop())
+                    .contextWrite(c -> c.put(ObservationThreadLocalAccessor.KEY, observation));
+        });
+    }
+
+    // traceContext is the TRACE_CONTEXT_HEADER value; null (an older caller) starts a new trace
+    public static <T> Mono<T> respond(ObservationRegistry registry, String name, String route, String traceContext,
+                                      Supplier<Mono<T>> handler) {
+        return Mono.deferContextual(ctx -> {
+            Observation observation = start(registry, name, route, receiverContext(traceContext), ctx);
+            return handler.get()
+                    .doOnError(observation::error)
+                    .doFinally(signal -> observation.stop())
+                    .contextWrite(c -> c.put(ObservationThreadLocalAccessor.KEY, observation));
+        });
+    }
+
+    public static <T> Flux<T> respondMany(ObservationRegistry registry, String name, String route, String traceContext,
+                                          Supplier<Flux<T>> handler) {
+        return Flux.deferContextual(ctx -> {
+            Observation observation = start(registry, name, route, receiverContext(traceContext), ctx);
+            return handler.get()
+                    .doOnError(observation::error)
+                    .doFinally(signal -> observation.stop())
+                    .contextWrite(c -> c.put(ObservationThreadLocalAccessor.KEY, observation));
+        });
+    }
+
+    private static Observation start(ObservationRegistry registry, String name, String route,
+                                     Observation.Context context, ContextView ctx) {
+        Observation parent = ctx.getOrDefault(ObservationThreadLocalAccessor.KEY, null);
+        return Observation.createNotStarted(name, () -> context, registry)
+                .lowCardinalityKeyValue("route", route)
+                .parentObservation(parent)
+                .start();
+    }
+
+    private static ReceiverContext<Map<String, String>> receiverContext(String traceContext) {
+        ReceiverContext<Map<String, String>> context = new ReceiverContext<>((carrier, key) -> carrier.get(key));
+        context.setCarrier(decode(traceContext));
+        return context;
+    }
+
+    static String encode(Map<String, String> fields) {
+        StringJoiner lines = new StringJoiner("\n");
+        fields.forEach((key, value) -> lines.add(key + "=" + value));
+        return lines.toString();
+    }
+
+    static Map<String, String> decode(String traceContext) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        if (traceContext == null) return fields;
+        for (String line : traceContext.split("\n")) {
+            int separator = line.indexOf('=');
+            if (separator > 0) fields.put(line.substring(0, separator), line.substring(separator + 1));
+        }
+        return fields;
+    }
+}
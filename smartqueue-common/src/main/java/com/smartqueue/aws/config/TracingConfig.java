@@ -0,0 +1,24 @@
+package com.smartqueue.aws.config;
+
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.aop.ObservedAspect;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// Spans are exported over OTLP (management.otlp.tracing.endpoint); traceId/spanId reach the log MDC
+// through the tracing bridge, and across reactive operators via Hooks.enableAutomaticContextPropagation
+@Configuration
+public class TracingConfig {
+
+    // Turns @Observed on the repositories and senders into spans. Methods returning Mono only cover
+    // assembly; the DynamoDB time of those shows up in the AWS SDK span
+    @Bean
+    public ObservedAspect observedAspect(ObservationRegistry observationRegistry) {
+        return new ObservedAspect(observationRegistry);
+    }
+
+    @Bean
+    public AwsSdkTracingInterceptor awsSdkTracingInterceptor(ObservationRegistry observationRegistry) {
+        return new AwsSdkTracingInterceptor(observationRegistry);
+    }
+}
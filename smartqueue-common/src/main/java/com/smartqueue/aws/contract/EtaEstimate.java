@@ -0,0 +1,7 @@
+package com.smartqueue.aws.contract;
+
+import java.time.Instant;
+
+// Reply of eta, eta.batch and eta.stream. serviceRate is customers/minute the ETA was based on.
+public record EtaEstimate(String queueId, String ticketId, Integer estimatedWaitMinutes, Integer p90WaitMinutes,
+                          Integer p50WaitMinutes, Double serviceRate, Instant updatedAt, Integer remainingMinutes) {}
@@ -0,0 +1,4 @@
+package com.smartqueue.aws.contract;
+
+// Route eta; also one entry of eta.batch and of the eta.stream channel
+public record EtaQuery(String queueId, String ticketId, Integer position) {}
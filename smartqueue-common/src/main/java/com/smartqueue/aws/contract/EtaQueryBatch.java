@@ -0,0 +1,6 @@
+package com.smartqueue.aws.contract;
+
+import java.util.List;
+
+// Route eta.batch: one EtaEstimate is streamed back per ticket
+public record EtaQueryBatch(List<EtaQuery> tickets) {}
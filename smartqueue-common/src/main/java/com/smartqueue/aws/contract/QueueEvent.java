@@ -0,0 +1,7 @@
+package com.smartqueue.aws.contract;
+
+import java.time.Instant;
+
+// One outbox event of the queue service; eventId is unique, delivery is at-least-once
+public record QueueEvent(String eventId, QueueEventType type, String queueId, String ticketId,
+                         Integer position, Instant occurredAt) {}
@@ -0,0 +1,5 @@
+package com.smartqueue.aws.contract;
+
+// Reply of events.batch. notFound counts served/cancelled tickets that were never tracked for an ETA,
+// which is expected for customers who never opened the countdown.
+public record QueueEventAck(int accepted, int applied, int alreadyFinished, int notFound) {}
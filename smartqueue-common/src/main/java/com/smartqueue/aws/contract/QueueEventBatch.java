@@ -0,0 +1,6 @@
+package com.smartqueue.aws.contract;
+
+import java.util.List;
+
+// Route events.batch; events are ordered per queue
+public record QueueEventBatch(List<QueueEvent> events) {}
@@ -0,0 +1,7 @@
+package com.smartqueue.aws.contract;
+
+public enum QueueEventType {
+    JOINED,
+    SERVED,
+    CANCELLED
+}
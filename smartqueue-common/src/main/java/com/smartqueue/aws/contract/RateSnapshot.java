@@ -0,0 +1,10 @@
+package com.smartqueue.aws.contract;
+
+import java.time.Instant;
+
+// Route rates.stream (and GET /rates): everything the ETA formula needs for one queue except the
+// ticket's position, so the queue service can compute ETAs locally while the snapshot is valid:
+//     minutes = ceil(position / serviceRate * (position > longQueueThreshold ? longQueueFactor : 1) * etaFactor), at least 1
+public record RateSnapshot(String queueId, Double serviceRate, Double etaFactor, Integer longQueueThreshold,
+                           Double longQueueFactor, Integer p90WaitMinutes, Integer p50WaitMinutes,
+                           Instant computedAt, Instant validUntil) {}
@@ -0,0 +1,4 @@
+package com.smartqueue.aws.contract;
+
+// Reply of stats.served.batch; duplicate means the batch id had already been applied and nothing was counted
+public record ServedBatchAck(int applied, boolean duplicate) {}
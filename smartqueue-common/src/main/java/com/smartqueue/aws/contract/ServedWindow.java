@@ -0,0 +1,5 @@
+package com.smartqueue.aws.contract;
+
+// Customers served in one queue over windowSec seconds ending at windowEnd (epoch millis; null means
+// the window closed when the ETA service received it)
+public record ServedWindow(String queueId, int count, int windowSec, Long windowEnd) {}
@@ -0,0 +1,8 @@
+package com.smartqueue.aws.contract;
+
+import java.util.List;
+
+// Route stats.served.batch; entries are applied in order. batchId is chosen by the sender and kept
+// across retries of the same batch, so a retry of a batch that was applied but not acknowledged is
+// recognised and skipped instead of counting its customers twice.
+public record ServedWindowBatch(String batchId, List<ServedWindow> entries) {}
@@ -0,0 +1,4 @@
+// Messages exchanged between the queue service and the ETA service over RSocket (CBOR) and the
+// matching JSON endpoints. Both services compile against these records, so a contract change that
+// one side does not follow fails the build instead of a request at runtime.
+package com.smartqueue.aws.contract;
@@ -0,0 +1,62 @@
+package com.smartqueue.aws.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import reactor.core.publisher.SignalType;
+
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// Base of the SmartQueue JFR events. Every event records how the timed work ended, and the helpers
+// commit it on every path, so a call that throws or a pipeline that is cancelled still shows up in
+// the recording instead of silently vanishing from it.
+//   blocking:  OutcomeEvent.call(new XEvent(), event -> { ...; event.field = ...; return result; })
+//   reactive:  event.begin() on subscribe, then .doOnError(event::failed).doFinally(event::finish)
+public abstract class OutcomeEvent extends Event {
+
+    @Label("Outcome")
+    @Description("ok, error or cancelled")
+    public String outcome;
+
+    @Label("Error")
+    @Description("Exception class when the outcome is error")
+    public String error;
+
+    public static <E extends OutcomeEvent, T> T call(E event, Function<? super E, T> work) {
+        event.begin();
+        try {
+            T result = work.apply(event);
+            event.outcome = "ok";
+            return result;
+        } catch (RuntimeException | Error e) {
+            event.failed(e);
+            throw e;
+        } finally {
+            event.commit();
+        }
+    }
+
+    public static <E extends OutcomeEvent> void run(E event, Consumer<? super E> work) {
+        call(event, e -> {
+            work.accept(e);
+            return null;
+        });
+    }
+
+    public void failed(Throwable e) {
+        outcome = "error";
+        error = e.getClass().getName();
+    }
+
+    public void finish(SignalType signal) {
+        if (outcome == null) {
+            outcome = switch (signal) {
+                case CANCEL -> "cancelled";
+                case ON_ERROR -> "error";
+                default -> "ok";
+            };
+        }
+        commit();
+    }
+}